@@ -0,0 +1,121 @@
+package bench;
+
+import ds.ParkingHistoryBuffer;
+import ds.ParkingHistoryLinkedList;
+import ds.ParkingRecord;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Compares building and walking a history in ParkingHistoryBuffer against the old
+ * ParkingHistoryLinkedList. Each operation is warmed up and then timed as the best of several
+ * runs. Building the linked list is quadratic, so it is skipped above listLimit records.
+ *
+ * Usage: java bench.HistoryBufferBenchmark [listLimit] [sizes...]
+ *        (defaults: 100000, then 10000 100000 1000000)
+ */
+public final class HistoryBufferBenchmark {
+
+    private static final int RUNS = 5;
+
+    // Keeps results alive so the JIT cannot drop the work being timed.
+    private static long sink;
+
+    private HistoryBufferBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int listLimit = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-10s | %-30s | %12s%n", "Records", "Operation", "Best (ms)");
+        System.out.println("----------------------------------------------------------------");
+        for (int n : sizes) {
+            ParkingRecord[] records = makeRecords(n);
+
+            report(n, "buffer: append all", time(() -> {
+                ParkingHistoryBuffer buffer = new ParkingHistoryBuffer();
+                for (ParkingRecord record : records) {
+                    buffer.add(record);
+                }
+                sink += buffer.size();
+            }));
+
+            ParkingHistoryBuffer buffer = new ParkingHistoryBuffer();
+            for (ParkingRecord record : records) {
+                buffer.add(record);
+            }
+            report(n, "buffer: indexed get (all)", time(() -> {
+                long total = 0;
+                for (int i = 0; i < buffer.size(); i++) {
+                    total += buffer.get(i).getSlotId();
+                }
+                sink += total;
+            }));
+            report(n, "buffer: reverse iterate", time(() -> {
+                long total = 0;
+                for (Iterator<ParkingRecord> it = buffer.descendingIterator(); it.hasNext(); ) {
+                    total += it.next().getSlotId();
+                }
+                sink += total;
+            }));
+            report(n, "buffer: filter guest", time(() -> sink += buffer.filter(r -> r.getSlotId() > 1200).size()));
+            report(n, "buffer: sort by charge", time(() ->
+                    sink += buffer.sorted(Comparator.comparingLong(ParkingRecord::getChargePaise)).get(0).getSlotId()));
+
+            if (n <= listLimit) {
+                report(n, "linked list: insertAtLast all", time(() -> sink += buildList(records).hashCode()));
+            } else {
+                System.out.printf("%-10s | %-30s | %12s%n", String.format("%,d", n), "linked list: insertAtLast all", "skipped");
+            }
+            System.out.println("----------------------------------------------------------------");
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    @SuppressWarnings("deprecation")
+    private static ParkingHistoryLinkedList buildList(ParkingRecord[] records) {
+        ParkingHistoryLinkedList list = new ParkingHistoryLinkedList();
+        for (ParkingRecord record : records) {
+            list.insertAtLast(record);
+        }
+        return list;
+    }
+
+    private static ParkingRecord[] makeRecords(int n) {
+        ParkingRecord[] records = new ParkingRecord[n];
+        String[] brands = {"Honda", "Maruti", "Hyundai", "Tata", "Bajaj"};
+        for (int i = 0; i < n; i++) {
+            int slot = 1 + i % 1350;
+            records[i] = new ParkingRecord(i + 1, "Owner " + (i % 500), slot, String.format("GJ05AB%04d", i % 10000),
+                    brands[i % brands.length], i % 3 == 0 ? "Two-Wheeler" : "Four-Wheeler",
+                    1_704_096_000_000L + i * 60_000L, 1_704_132_000_000L + i * 60_000L,
+                    (i % 48) * 100L, (i * 37L) % 100_000, slot > 1200 ? "Guest" : "Resident");
+        }
+        return records;
+    }
+
+    // Two warm-up runs, then the best of RUNS, in milliseconds.
+    private static double time(Runnable work) {
+        work.run();
+        work.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long started = System.nanoTime();
+            work.run();
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        return best / 1e6;
+    }
+
+    private static void report(int n, String operation, double millis) {
+        System.out.printf("%-10s | %-30s | %12.3f%n", String.format("%,d", n), operation, millis);
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+import journal.EventJournal;
+import journal.JournalEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the event journal with group commit. Every thread plays a gate that records a
+ * park or unpark and waits for it to be durable, as the application does. Afterwards the journal
+ * is reopened, to check recovery picks up the sequence where it ended, and replayed, to check
+ * every event comes back in order. Uses small segments so rolling over is exercised too. Runs in
+ * a temporary directory, so no database is needed.
+ *
+ * Usage: java bench.JournalBenchmark [threads] [seconds] [segmentBytes]
+ */
+public final class JournalBenchmark {
+
+    private JournalBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int segmentBytes = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 20;
+
+        Path dir = Files.createTempDirectory("aptparkx-journal-bench");
+        EventJournal journal = EventJournal.open(dir, segmentBytes, 200);
+        AtomicLong recorded = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        Thread[] gates = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            gates[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    String plate = String.format("GJ%02dAB%04d", random.nextInt(100), random.nextInt(10_000));
+                    JournalEvent.Type type = random.nextBoolean() ? JournalEvent.Type.PARK : JournalEvent.Type.UNPARK;
+                    try {
+                        long sequence = journal.append(type, plate, random.nextInt(1, 1351), 0, "R" + random.nextInt(1000), "A", 0);
+                        journal.awaitDurable(sequence);
+                        recorded.incrementAndGet();
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }, "gate-" + (t + 1));
+            gates[t].start();
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        EventJournal.Stats stats = journal.getStats();
+        journal.close();
+
+        EventJournal reopened = EventJournal.open(dir, segmentBytes, 200);
+        long resumedAt = reopened.getStats().lastSequence;
+        reopened.close();
+
+        long[] replayed = {0, 0, 0}; // count, last sequence, out-of-order events
+        long start2 = System.nanoTime();
+        EventJournal.replay(dir, 0, event -> {
+            if (event.sequence != replayed[1] + 1) {
+                replayed[2]++;
+            }
+            replayed[0]++;
+            replayed[1] = event.sequence;
+        });
+        double replayMillis = (System.nanoTime() - start2) / 1e6;
+
+        System.out.printf("threads=%d, durable events=%d (%.0f/s), failures=%d%n", threads, recorded.get(), recorded.get() / elapsedSeconds, failures.get());
+        System.out.println("journal: " + stats);
+        System.out.printf("reopened at sequence %d; replayed %d events in %.1f ms, out of order=%d%n", resumedAt, replayed[0], replayMillis, replayed[2]);
+        System.out.println(replayed[0] == recorded.get() && resumedAt == recorded.get() && replayed[2] == 0 ? "OK" : "MISMATCH");
+        System.out.println("journal files left in " + dir);
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import services.SlotOccupancy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test for the compare-and-set slot claims in SlotOccupancy.
+ * Every thread plays a parking gate: it claims the slot nearest a random anchor (or one random slot
+ * directly, like a manual choice) and releases it straight away, so slots churn as fast as possible.
+ * An owner array checks that no slot is ever held by two threads at once: a gate marks itself as the
+ * owner on claiming and clears only its own mark on releasing, so a clash on either side is counted. Runs against a detached table, so no database is needed.
+ *
+ * Usage: java bench.SlotClaimBenchmark [threads] [seconds]
+ */
+public final class SlotClaimBenchmark {
+
+    private SlotClaimBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SlotOccupancy occupancy = SlotOccupancy.createDetached();
+        AtomicIntegerArray owners = new AtomicIntegerArray(SlotOccupancy.TOTAL_SLOTS + 1);
+        AtomicLong successfulClaims = new AtomicLong();
+        AtomicLong doubleBookings = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        Thread[] gates = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int gateId = t + 1;
+            gates[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    int slot;
+                    if (random.nextInt(4) == 0) {
+                        slot = random.nextInt(1, SlotOccupancy.TOTAL_SLOTS + 1);
+                        if (!occupancy.tryClaim(slot)) {
+                            continue;
+                        }
+                    } else {
+                        slot = occupancy.claimNearest(random.nextInt(1, SlotOccupancy.TOTAL_SLOTS + 1), 1, SlotOccupancy.TOTAL_SLOTS);
+                        if (slot < 0) {
+                            continue;
+                        }
+                    }
+                    boolean owned = owners.compareAndSet(slot, 0, gateId);
+                    if (!owned) {
+                        doubleBookings.incrementAndGet();
+                    }
+                    successfulClaims.incrementAndGet();
+                    // Someone else's mark here means they claimed the slot while this gate held it.
+                    if (owned && !owners.compareAndSet(slot, gateId, 0)) {
+                        doubleBookings.incrementAndGet();
+                    }
+                    occupancy.release(slot);
+                }
+            }, "gate-" + gateId);
+            gates[t].start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        double elapsed = (System.nanoTime() - began) / 1_000_000_000.0;
+
+        long attempts = occupancy.getClaimCount();
+        long conflicts = occupancy.getClaimConflictCount();
+        System.out.println("Threads:          " + threads);
+        System.out.printf("Duration:         %.2f s%n", elapsed);
+        System.out.println("Claims:           " + successfulClaims.get());
+        System.out.printf("Claims/sec:       %,.0f%n", successfulClaims.get() / elapsed);
+        System.out.println("Claim attempts:   " + attempts);
+        System.out.printf("Conflict rate:    %.2f%%%n", attempts == 0 ? 0.0 : 100.0 * conflicts / attempts);
+        System.out.println("Double bookings:  " + doubleBookings.get());
+        System.out.println("Slots left taken: " + occupancy.occupiedCount(1, SlotOccupancy.TOTAL_SLOTS));
+    }
+}
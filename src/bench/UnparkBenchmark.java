@@ -0,0 +1,103 @@
+package bench;
+
+import dao.ParkingDAO;
+import dao.VehicleDAO;
+import database.DatabaseManager;
+import database.TransactionManager;
+import model.Vehicle;
+import services.ParkingService;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * Compares gate-exit latency of the old five-statement unpark with the single round-trip
+ * ParkingDAO.archiveAndRemove. Each iteration registers a throwaway guest vehicle under the
+ * given resident, parks it in the last guest slot, and times only the unpark.
+ *
+ * It writes to the configured database (guest vehicles and parking_records rows), so point it
+ * at a test copy, with the app closed and the last guest slot free.
+ *
+ * Usage: java bench.UnparkBenchmark <hostResidentId> [iterations]
+ */
+public final class UnparkBenchmark {
+
+    private UnparkBenchmark() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 1) {
+            System.err.println("Usage: java bench.UnparkBenchmark <hostResidentId> [iterations]");
+            return;
+        }
+        String residentId = args[0];
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        // The set-based unpark needs a connection that accepts statement groups, as at the gate.
+        try (Connection conn = DatabaseManager.getMultiStatementConnection()) {
+            int warmup = Math.max(10, iterations / 10);
+            run(conn, residentId, warmup, false);
+            run(conn, residentId, warmup, true);
+
+            long[] sequential = run(conn, residentId, iterations, false);
+            long[] setBased = run(conn, residentId, iterations, true);
+            report("Sequential (5 statements)", sequential);
+            report("Set-based (1 round trip) ", setBased);
+        } finally {
+            DatabaseManager.closeConnection();
+        }
+    }
+
+    private static long[] run(Connection conn, String residentId, int iterations, boolean setBased) throws SQLException {
+        long[] nanos = new long[iterations];
+        ParkingDAO parkingDAO = new ParkingDAO(conn);
+        VehicleDAO vehicleDAO = new VehicleDAO(conn);
+        int slotId = ParkingService.SPARE_END_SLOT; // every iteration frees it again
+        if (parkingDAO.isSlotTaken(ParkingDAO.GUEST_TABLE, slotId)) {
+            throw new SQLException("Guest slot " + slotId + " is occupied; free it before benchmarking.");
+        }
+        for (int i = 0; i < iterations; i++) {
+            String plate = String.format("ZZ99ZZ%04d", i % 10_000);
+            Vehicle guest = new Vehicle(plate, residentId, "4-wheeler", "Bench", "Guest");
+            vehicleDAO.addVehicle(guest);
+            parkingDAO.insertParkedVehicle(ParkingDAO.GUEST_TABLE, slotId, plate);
+
+            long start = System.nanoTime();
+            if (setBased) {
+                parkingDAO.archiveAndRemove(ParkingDAO.GUEST_TABLE, plate, true);
+            } else {
+                unparkSequentially(conn, parkingDAO, vehicleDAO, guest, slotId);
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    // The unpark as it was before: five statements in a JDBC-managed transaction.
+    private static void unparkSequentially(Connection conn, ParkingDAO parkingDAO, VehicleDAO vehicleDAO, Vehicle guest, int slotId) throws SQLException {
+        try {
+            TransactionManager.beginTransaction(conn);
+            Timestamp timeIn = parkingDAO.getTimeIn(ParkingDAO.GUEST_TABLE, guest.getVehicleNumber());
+            long recordId = parkingDAO.archiveParking(slotId, guest, timeIn);
+            parkingDAO.deleteParkedVehicle(ParkingDAO.GUEST_TABLE, guest.getVehicleNumber());
+            vehicleDAO.deleteVehicle(guest.getVehicleNumber());
+            parkingDAO.getCharge(recordId);
+            TransactionManager.commitTransaction(conn);
+        } catch (SQLException e) {
+            TransactionManager.rollbackTransaction(conn);
+            throw e;
+        } finally {
+            TransactionManager.endTransaction(conn);
+        }
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+        System.out.printf("%s  n=%d  mean=%.3f ms  p50=%.3f ms  p99=%.3f ms%n", label, sorted.length, mean,
+                sorted[sorted.length / 2] / 1_000_000.0, sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1_000_000.0);
+    }
+}
@@ -0,0 +1,33 @@
+package dao;
+
+// A point-in-time copy of a lookup cache's counters.
+public final class CacheStats {
+    public final boolean enabled;
+    public final int size;
+    public final long hits;
+    public final long misses;
+    public final long evictions;
+    public final long expirations;
+    public final long invalidations;
+
+    CacheStats(boolean enabled, int size, long hits, long misses, long evictions, long expirations, long invalidations) {
+        this.enabled = enabled;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+    }
+
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("enabled=%b, size=%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, expired=%d, invalidations=%d",
+                enabled, size, hits, misses, hitRate() * 100, evictions, expirations, invalidations);
+    }
+}
@@ -0,0 +1,148 @@
+package dao;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * The read-through lookup cache behind ResidentCache and VehicleOwnerCache. Entries expire after
+ * a TTL and the least recently used one is dropped once the maximum size is reached.
+ *
+ * A read that started before an invalidation is not stored afterwards (see {@link #stamp()}), so a
+ * slow reader cannot put back a value that was just replaced. Values that callers could edit are
+ * copied on the way in and on the way out; pass UnaryOperator.identity() for immutable ones.
+ *
+ * Settings are read from system properties under the given prefix: .maxSize, .ttlMillis, .enabled.
+ */
+public class LruTtlCache<K, V> {
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Function<? super V, ? extends K> keyOf;
+    private final UnaryOperator<V> copy;
+
+    // Access-ordered, so the first entry is always the least recently used. Guarded by itself.
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private volatile boolean enabled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    protected LruTtlCache(String propertyPrefix, int defaultMaxSize, long defaultTtlMillis,
+                          Function<? super V, ? extends K> keyOf, UnaryOperator<V> copy) {
+        this.maxSize = Integer.getInteger(propertyPrefix + ".maxSize", defaultMaxSize);
+        this.ttlMillis = Long.getLong(propertyPrefix + ".ttlMillis", defaultTtlMillis);
+        this.enabled = Boolean.parseBoolean(System.getProperty(propertyPrefix + ".enabled", "true"));
+        this.keyOf = keyOf;
+        this.copy = copy;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches the cache off (every lookup goes to the database) or back on. Switching it off
+     * also empties it, so turning it on again never serves values from before.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * @return the cached value (a copy, if the cache copies), or null on a miss (including when disabled).
+     */
+    public V get(K key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy.apply(entry.value);
+    }
+
+    /**
+     * Take a stamp before reading a value from the database and pass it to {@link #put}.
+     */
+    public long stamp() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Caches a value read from the database, unless something was invalidated since the stamp
+     * was taken (the read may then be older than that write).
+     */
+    public void put(V value, long stamp) {
+        if (!enabled || value == null) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(copy.apply(value), System.currentTimeMillis() + ttlMillis);
+        K key = keyOf.apply(value);
+        synchronized (entries) {
+            if (invalidationCount.get() != stamp) {
+                return;
+            }
+            entries.put(key, entry);
+            Iterator<Map.Entry<K, Entry<V>>> oldest = entries.entrySet().iterator();
+            while (entries.size() > maxSize && oldest.hasNext()) {
+                oldest.next();
+                oldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            invalidationCount.incrementAndGet();
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidationCount.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(enabled, size, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidationCount.get());
+    }
+}
@@ -0,0 +1,300 @@
+package dao;
+
+import model.Vehicle;
+import model.WaitingListEntry;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL for the parked_vehicle / spare_parked_vehicle tables, the parking_records archive and
+ * the guest waiting list. Table names are only ever one of the two constants below.
+ */
+public class ParkingDAO {
+
+    public static final String RESIDENT_TABLE = "parked_vehicle";
+    public static final String GUEST_TABLE = "spare_parked_vehicle";
+    public static final String WAITING_LIST_MARK_QUERY = "SELECT COUNT(*), COALESCE(MAX(waitlist_id), 0) FROM guest_waiting_list";
+    // Reads back the parking_records row this session inserted last.
+    private static final String ARCHIVED_STAY_QUERY = "SELECT pr.record_id, pr.Slot_id, pr.time_in, pr.charge_amount, r.wing "
+            + "FROM parking_records pr LEFT JOIN residents r ON r.resident_id = pr.resident_id WHERE pr.record_id = LAST_INSERT_ID()";
+
+    // What archiveAndRemove read back about the stay it archived.
+    public static class ArchivedStay {
+        public final long recordId;
+        public final int slotId;
+        public final Timestamp timeIn;
+        public final BigDecimal charge;
+        public final String ownerWing;
+
+        public ArchivedStay(long recordId, int slotId, Timestamp timeIn, BigDecimal charge, String ownerWing) {
+            this.recordId = recordId;
+            this.slotId = slotId;
+            this.timeIn = timeIn;
+            this.charge = charge;
+            this.ownerWing = ownerWing;
+        }
+    }
+
+    private final Connection connection;
+
+    public ParkingDAO(Connection connection) {
+        this.connection = connection;
+    }
+
+    public static String tableForSlot(int slotId, int firstGuestSlot) {
+        return slotId >= firstGuestSlot ? GUEST_TABLE : RESIDENT_TABLE;
+    }
+
+    public boolean insertParkedVehicle(String table, int slotId, String vehicleNumber) throws SQLException {
+        String query = "INSERT INTO " + table + " (Slot_id, vehicle_number, time_in) VALUES (?, ?, NOW())";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setInt(1, slotId);
+            ps.setString(2, vehicleNumber);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    public boolean isSlotTaken(String table, int slotId) throws SQLException {
+        String query = "SELECT 1 FROM " + table + " WHERE Slot_id = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setInt(1, slotId);
+            ResultSet rs = ps.executeQuery();
+            return rs.next();
+        }
+    }
+
+    /**
+     * @return the slot the vehicle is parked in (resident or guest), or -1 if it is not parked.
+     */
+    public int findParkedSlot(String vehicleNumber) throws SQLException {
+        String query = "SELECT Slot_id FROM " + RESIDENT_TABLE + " WHERE vehicle_number = ? " +
+                "UNION ALL SELECT Slot_id FROM " + GUEST_TABLE + " WHERE vehicle_number = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, vehicleNumber);
+            ps.setString(2, vehicleNumber);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    /**
+     * Moves a parked vehicle into parking_records: an INSERT ... SELECT copies the stay (time_in,
+     * owner, brand, type) straight from the parking and vehicle tables, the parking row is deleted,
+     * optionally the vehicle row too (guests), and the new record is read back with its charge and
+     * the owner's wing.
+     *
+     * On an auto-commit connection all of that goes to the server as one statement group in its own
+     * transaction, a single round trip. That needs a connection from
+     * DatabaseManager.getMultiStatementConnection(). Inside a caller's transaction the statements run
+     * one after the other and just join it, so any pooled connection will do.
+     * @return the archived stay, or null if the vehicle was not parked in that table.
+     */
+    public ArchivedStay archiveAndRemove(String table, String vehicleNumber, boolean alsoDeleteVehicle) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            return archiveAndRemoveInTransaction(table, vehicleNumber, alsoDeleteVehicle);
+        }
+        StringBuilder sql = new StringBuilder("START TRANSACTION; ")
+                .append(archiveQuery(table)).append("; ")
+                .append("SET @archived = ROW_COUNT(); ")
+                .append("DELETE FROM ").append(table).append(" WHERE vehicle_number = ? AND @archived = 1; ");
+        if (alsoDeleteVehicle) {
+            sql.append("DELETE FROM vehicle WHERE vehicle_number = ? AND @archived = 1; ");
+        }
+        // LAST_INSERT_ID() is per session and survives a zero-row insert, hence the @archived guard.
+        sql.append(ARCHIVED_STAY_QUERY).append(" AND @archived = 1; COMMIT");
+
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            int parameterCount = alsoDeleteVehicle ? 3 : 2;
+            for (int i = 1; i <= parameterCount; i++) {
+                ps.setString(i, vehicleNumber);
+            }
+            ArchivedStay stay = null;
+            boolean isResultSet = ps.execute();
+            while (true) {
+                if (isResultSet) {
+                    try (ResultSet rs = ps.getResultSet()) {
+                        if (rs.next()) {
+                            stay = mapArchivedStay(rs);
+                        }
+                    }
+                } else if (ps.getUpdateCount() == -1) {
+                    break;
+                }
+                isResultSet = ps.getMoreResults();
+            }
+            if (alsoDeleteVehicle && stay != null) {
+                VehicleDAO.invalidate(connection, vehicleNumber);
+            }
+            return stay;
+        } catch (SQLException e) {
+            // The server stops at the failing statement, which can leave our START TRANSACTION open.
+            try (Statement st = connection.createStatement()) {
+                st.execute("ROLLBACK");
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        }
+    }
+
+    // The same steps as separate statements, for a connection that is already in a transaction.
+    private ArchivedStay archiveAndRemoveInTransaction(String table, String vehicleNumber, boolean alsoDeleteVehicle) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(archiveQuery(table))) {
+            ps.setString(1, vehicleNumber);
+            if (ps.executeUpdate() != 1) {
+                return null;
+            }
+        }
+        ArchivedStay stay;
+        try (PreparedStatement ps = connection.prepareStatement(ARCHIVED_STAY_QUERY)) {
+            ResultSet rs = ps.executeQuery();
+            stay = rs.next() ? mapArchivedStay(rs) : null;
+        }
+        deleteParkedVehicle(table, vehicleNumber);
+        if (alsoDeleteVehicle) {
+            new VehicleDAO(connection).deleteVehicle(vehicleNumber);
+        }
+        return stay;
+    }
+
+    private static String archiveQuery(String table) {
+        return "INSERT INTO parking_records (Slot_id, vehicle_number, resident_id, vehicle_brand, vehicle_type, time_in, time_out) "
+                + "SELECT p.Slot_id, p.vehicle_number, v.resident_id, v.vehicle_brand, v.vehicle_type, p.time_in, NOW() FROM "
+                + table + " p JOIN vehicle v ON v.vehicle_number = p.vehicle_number WHERE p.vehicle_number = ?";
+    }
+
+    private static ArchivedStay mapArchivedStay(ResultSet rs) throws SQLException {
+        return new ArchivedStay(rs.getLong("record_id"), rs.getInt("Slot_id"), rs.getTimestamp("time_in"),
+                rs.getBigDecimal("charge_amount"), rs.getString("wing"));
+    }
+
+    public Timestamp getTimeIn(String table, String vehicleNumber) throws SQLException {
+        String query = "SELECT time_in FROM " + table + " WHERE vehicle_number = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, vehicleNumber);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getTimestamp("time_in") : null;
+        }
+    }
+
+    /**
+     * Copies a finished stay into parking_records.
+     * @return the new record_id, or 0 if the driver returned no key.
+     */
+    public long archiveParking(int slotId, Vehicle vehicle, Timestamp timeIn) throws SQLException {
+        String query = "INSERT INTO parking_records (Slot_id, vehicle_number, resident_id, vehicle_brand, vehicle_type, time_in, time_out) VALUES(?, ?, ?, ?, ?, ?, NOW())";
+        try (PreparedStatement ps = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, slotId);
+            ps.setString(2, vehicle.getVehicleNumber());
+            ps.setString(3, vehicle.getResidentId());
+            ps.setString(4, vehicle.getVehicleBrand());
+            ps.setString(5, vehicle.getVehicleType());
+            ps.setTimestamp(6, timeIn);
+            ps.executeUpdate();
+            ResultSet rs = ps.getGeneratedKeys();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    public boolean deleteParkedVehicle(String table, String vehicleNumber) throws SQLException {
+        String query = "DELETE FROM " + table + " WHERE vehicle_number = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, vehicleNumber);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    // The charge is filled in by the database when a record is archived.
+    public BigDecimal getCharge(long recordId) throws SQLException {
+        String query = "SELECT charge_amount FROM parking_records WHERE record_id = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setLong(1, recordId);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getBigDecimal("charge_amount") : null;
+        }
+    }
+
+    /**
+     * Adds all the vehicles with one multi-row INSERT, all stamped with the same time_added.
+     * @param tiers the host resident's subscription tier for each vehicle, carried into the entries.
+     * @return the new entries, in the same order as the vehicles.
+     */
+    public List<WaitingListEntry> addAllToWaitingList(List<Vehicle> vehicles, List<String> tiers) throws SQLException {
+        List<WaitingListEntry> added = new ArrayList<>(vehicles.size());
+        if (vehicles.isEmpty()) {
+            return added;
+        }
+        StringBuilder query = new StringBuilder("INSERT INTO guest_waiting_list (resident_id, vehicle_number, vehicle_brand, vehicle_type, time_added) VALUES ");
+        for (int i = 0; i < vehicles.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?)");
+        }
+        // Our own clock, so the in-memory entry and the row agree on the order within a tier.
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement ps = connection.prepareStatement(query.toString(), Statement.RETURN_GENERATED_KEYS)) {
+            int index = 1;
+            for (Vehicle vehicle : vehicles) {
+                ps.setString(index++, vehicle.getResidentId());
+                ps.setString(index++, vehicle.getVehicleNumber());
+                ps.setString(index++, vehicle.getVehicleBrand());
+                ps.setString(index++, vehicle.getVehicleType());
+                ps.setTimestamp(index++, now);
+            }
+            ps.executeUpdate();
+            ResultSet rs = ps.getGeneratedKeys();
+            for (int i = 0; i < vehicles.size(); i++) {
+                if (!rs.next()) {
+                    throw new SQLException("Driver returned fewer waitlist ids than rows inserted");
+                }
+                added.add(new WaitingListEntry(rs.getInt(1), vehicles.get(i), now, tiers.get(i)));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * The waiting list entries with an id above afterId, oldest first, each with its host's
+     * subscription tier. afterId 0 reads the whole list.
+     */
+    public List<WaitingListEntry> getWaitingListAfter(int afterId) throws SQLException {
+        List<WaitingListEntry> entries = new ArrayList<>();
+        String query = "SELECT w.waitlist_id, w.resident_id, w.vehicle_number, w.vehicle_brand, w.vehicle_type, w.time_added, " +
+                "r.subscription_tier FROM guest_waiting_list w LEFT JOIN residents r ON r.resident_id = w.resident_id " +
+                "WHERE w.waitlist_id > ? ORDER BY w.waitlist_id";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setInt(1, afterId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                Vehicle vehicle = new Vehicle(rs.getString("vehicle_number"), rs.getString("resident_id"),
+                        rs.getString("vehicle_type"), rs.getString("vehicle_brand"), "Guest");
+                entries.add(new WaitingListEntry(rs.getInt("waitlist_id"), vehicle, rs.getTimestamp("time_added"),
+                        rs.getString("subscription_tier")));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return {number of rows, highest waitlist_id (0 if empty)}, read in one query.
+     */
+    public int[] getWaitingListMark() throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(WAITING_LIST_MARK_QUERY)) {
+            rs.next();
+            return new int[]{rs.getInt(1), rs.getInt(2)};
+        }
+    }
+
+    /**
+     * @return 1 if the entry was deleted, 0 if it was already gone.
+     */
+    public int removeFromWaitingList(int waitlistId) throws SQLException {
+        String query = "DELETE FROM guest_waiting_list WHERE waitlist_id = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setInt(1, waitlistId);
+            return ps.executeUpdate();
+        }
+    }
+}
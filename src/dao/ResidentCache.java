@@ -0,0 +1,25 @@
+package dao;
+
+import model.Resident;
+
+/**
+ * Read-through cache of residents by resident_id, used by ResidentDAO.getResidentById.
+ * Callers always get their own copy, so editing a returned Resident never changes the cache.
+ *
+ * Only reads on auto-commit connections use the cache: a read inside a transaction may see that
+ * transaction's own uncommitted writes, and is usually the re-check that must see the database.
+ * Every write through ResidentDAO invalidates the resident right away and again when its
+ * transaction ends.
+ */
+public final class ResidentCache extends LruTtlCache<String, Resident> {
+
+    private static final ResidentCache INSTANCE = new ResidentCache();
+
+    private ResidentCache() {
+        super("aptparkx.residentCache", 1024, 60_000L, Resident::getResidentId, Resident::new);
+    }
+
+    public static ResidentCache getInstance() {
+        return INSTANCE;
+    }
+}
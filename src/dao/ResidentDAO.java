@@ -1,6 +1,6 @@
 package dao;
 
-import database.DatabaseManager;
+import database.TransactionManager;
 import model.Resident;
 
 import java.math.BigDecimal;
@@ -12,22 +12,44 @@ public class ResidentDAO {
 
     private final Connection connection;
 
-    public ResidentDAO() {
-        try {
-            this.connection = DatabaseManager.getConnection();
-        } catch (SQLException e) {
-            System.err.println("Database connection failed in ResidentDAO.");
-            throw new RuntimeException(e);
-        }
-    }
-
-
     public ResidentDAO(Connection connection) {
         this.connection = connection;
     }
 
+    // Served from ResidentCache when the connection is not inside a transaction.
     public Resident getResidentById(String residentId) throws SQLException {
+        ResidentCache cache = ResidentCache.getInstance();
+        boolean cacheable = cache.isEnabled() && connection.getAutoCommit();
+        long stamp = 0;
+        if (cacheable) {
+            Resident cached = cache.get(residentId);
+            if (cached != null) {
+                return cached;
+            }
+            stamp = cache.stamp();
+        }
         String query = "SELECT * FROM residents WHERE resident_id = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, residentId);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                Resident resident = mapResultSetToResident(rs);
+                if (cacheable) {
+                    cache.put(resident, stamp);
+                }
+                return resident;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the resident and locks the row until the caller's transaction ends, so another admin's
+     * edit, upgrade or vehicle add for the same resident waits here instead of racing the re-check.
+     * Never served from the cache. Only useful inside a transaction.
+     */
+    public Resident lockResident(String residentId) throws SQLException {
+        String query = "SELECT * FROM residents WHERE resident_id = ? FOR UPDATE";
         try (PreparedStatement ps = connection.prepareStatement(query)) {
             ps.setString(1, residentId);
             ResultSet rs = ps.executeQuery();
@@ -87,7 +109,9 @@ public class ResidentDAO {
             ps.setString(4, resident.getUsername());
             ps.setString(5, resident.getPassword());
             ps.setString(6, resident.getResidentId());
-            return ps.executeUpdate() > 0;
+            boolean updated = ps.executeUpdate() > 0;
+            invalidate(resident.getResidentId());
+            return updated;
         }
     }
 
@@ -100,7 +124,9 @@ public class ResidentDAO {
             ps.setDate(3, startDate);
             ps.setDate(4, validUntil);
             ps.setString(5, residentId);
-            return ps.executeUpdate() > 0;
+            boolean updated = ps.executeUpdate() > 0;
+            invalidate(residentId);
+            return updated;
         }
     }
 
@@ -108,7 +134,14 @@ public class ResidentDAO {
         String query = "DELETE FROM residents WHERE resident_id = ?";
         try (PreparedStatement ps = connection.prepareStatement(query)) {
             ps.setString(1, residentId);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            invalidate(residentId);
+            // Their vehicles are deleted with them and we don't know the plates
+            // here, so forget every cached vehicle. Deleting a resident is rare enough for that.
+            VehicleOwnerCache vehicles = VehicleOwnerCache.getInstance();
+            vehicles.clear();
+            TransactionManager.afterCompletion(connection, vehicles::clear);
+            return deleted;
         }
     }
 
@@ -118,11 +151,21 @@ public class ResidentDAO {
             ps.setInt(1, change);
             ps.setString(2, residentId);
             ps.executeUpdate();
+            invalidate(residentId);
         }
     }
 
+    // Drops the cached copy now, and again when the surrounding transaction (if any) ends, because
+    // another thread may re-cache the old committed row before this write is committed.
+    private void invalidate(String residentId) throws SQLException {
+        ResidentCache cache = ResidentCache.getInstance();
+        cache.invalidate(residentId);
+        TransactionManager.afterCompletion(connection, () -> cache.invalidate(residentId));
+    }
+
     // MODIFIED: The core mapping logic is updated to read all new fields.
-    private Resident mapResultSetToResident(ResultSet rs) throws SQLException {
+    // Also used by VehicleDAO for the residents half of its vehicle/owner join.
+    static Resident mapResultSetToResident(ResultSet rs) throws SQLException {
         return new Resident(
                 rs.getString("resident_id"),
                 rs.getString("first_name"),
@@ -178,15 +221,12 @@ public class ResidentDAO {
     }
 
     public boolean phoneNumberExists(String phoneNumber) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM residents WHERE contact_number = ?";
+        String sql = "SELECT 1 FROM residents WHERE contact_number = ? LIMIT 1";
         try (PreparedStatement pstmt = this.connection.prepareStatement(sql)) {
             pstmt.setString(1, phoneNumber);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1) > 0;
-                }
+                return rs.next();
             }
         }
-        return false;
     }
 }
\ No newline at end of file
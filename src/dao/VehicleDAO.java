@@ -1,6 +1,6 @@
 package dao;
 
-import database.DatabaseManager;
+import database.TransactionManager;
 import model.Resident;
 import model.Vehicle;
 
@@ -11,17 +11,19 @@ import java.util.List;
 
 public class VehicleDAO {
 
-    private final Connection connection;
+    // A vehicle and its owner, as read by findVehicleWithOwner. owner is null if the resident row is gone.
+    public static class VehicleOwner {
+        public final Vehicle vehicle;
+        public final Resident owner;
 
-    public VehicleDAO() {
-        try {
-            this.connection = DatabaseManager.getConnection();
-        } catch (SQLException e) {
-            System.err.println("Database connection failed in VehicleDAO.");
-            throw new RuntimeException(e);
+        public VehicleOwner(Vehicle vehicle, Resident owner) {
+            this.vehicle = vehicle;
+            this.owner = owner;
         }
     }
 
+    private final Connection connection;
+
     public VehicleDAO(Connection connection) {
         this.connection = connection;
     }
@@ -58,16 +60,60 @@ public class VehicleDAO {
         return parked;
     }
 
+    // Served from VehicleOwnerCache when the connection is not inside a transaction.
     public Vehicle getVehicleByNumber(String vehicleNumber) throws SQLException {
-        String query = "SELECT * FROM vehicle WHERE vehicle_number = ?";
+        boolean cacheable = connection.getAutoCommit();
+        if (cacheable) {
+            Vehicle cached = VehicleOwnerCache.getInstance().get(vehicleNumber);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        VehicleOwner found = loadWithOwner(vehicleNumber, cacheable);
+        return found == null ? null : found.vehicle;
+    }
+
+    /**
+     * The vehicle with this plate and the resident who owns it, or null if the plate is not
+     * registered. Outside a transaction both halves come from the caches when they can; otherwise
+     * (or on a miss) it is one join query, whose result is cached for the next lookup.
+     */
+    public VehicleOwner findVehicleWithOwner(String vehicleNumber) throws SQLException {
+        boolean cacheable = connection.getAutoCommit();
+        if (cacheable) {
+            Vehicle cached = VehicleOwnerCache.getInstance().get(vehicleNumber);
+            if (cached != null) {
+                // The owner may have been edited or evicted since; getResidentById re-reads it if so.
+                Resident owner = cached.getResidentId() == null ? null
+                        : new ResidentDAO(connection).getResidentById(cached.getResidentId());
+                return new VehicleOwner(cached, owner);
+            }
+        }
+        return loadWithOwner(vehicleNumber, cacheable);
+    }
+
+    private VehicleOwner loadWithOwner(String vehicleNumber, boolean cacheable) throws SQLException {
+        VehicleOwnerCache vehicles = VehicleOwnerCache.getInstance();
+        ResidentCache residents = ResidentCache.getInstance();
+        long vehicleStamp = vehicles.stamp();
+        long residentStamp = residents.stamp();
+        String query = "SELECT v.vehicle_number, v.resident_id, v.vehicle_type, v.vehicle_brand, v.owner_type, " +
+                "r.resident_id AS owner_id, r.* FROM vehicle v LEFT JOIN residents r ON r.resident_id = v.resident_id " +
+                "WHERE v.vehicle_number = ?";
         try (PreparedStatement ps = connection.prepareStatement(query)) {
             ps.setString(1, vehicleNumber);
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return mapResultSetToVehicle(rs);
+            if (!rs.next()) {
+                return null;
+            }
+            Vehicle vehicle = mapResultSetToVehicle(rs);
+            Resident owner = rs.getString("owner_id") == null ? null : ResidentDAO.mapResultSetToResident(rs);
+            if (cacheable) {
+                vehicles.put(vehicle, vehicleStamp);
+                residents.put(owner, residentStamp);
             }
+            return new VehicleOwner(vehicle, owner);
         }
-        return null;
     }
 
     public List<Vehicle> getAllVehicles(String sortBy) throws SQLException {
@@ -104,7 +150,9 @@ public class VehicleDAO {
             ps.setString(3, vehicle.getVehicleType());
             ps.setString(4, vehicle.getVehicleBrand());
             ps.setString(5, vehicle.getOwnerType());
-            return ps.executeUpdate() > 0;
+            boolean added = ps.executeUpdate() > 0;
+            invalidate(connection, vehicle.getVehicleNumber());
+            return added;
         }
     }
 
@@ -112,10 +160,20 @@ public class VehicleDAO {
         String query = "DELETE FROM vehicle WHERE vehicle_number = ?";
         try (PreparedStatement ps = connection.prepareStatement(query)) {
             ps.setString(1, vehicleNumber);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            invalidate(connection, vehicleNumber);
+            return deleted;
         }
     }
 
+    // Drops the cached vehicle now and again when the surrounding transaction (if any) ends,
+    // like ResidentDAO does. Also used by ParkingDAO when a guest vehicle is archived away.
+    static void invalidate(Connection connection, String vehicleNumber) throws SQLException {
+        VehicleOwnerCache cache = VehicleOwnerCache.getInstance();
+        cache.invalidate(vehicleNumber);
+        TransactionManager.afterCompletion(connection, () -> cache.invalidate(vehicleNumber));
+    }
+
     public boolean vehicleExists(String vehicleNumber) throws SQLException {
         String query = "SELECT 1 FROM vehicle WHERE vehicle_number = ?";
         try (PreparedStatement ps = connection.prepareStatement(query)) {
@@ -125,6 +183,21 @@ public class VehicleDAO {
         }
     }
 
+    public List<Integer> getParkedSlotsForResident(String residentId) throws SQLException {
+        List<Integer> slots = new ArrayList<>();
+        String query = "SELECT ap.Slot_id FROM (SELECT Slot_id, vehicle_number FROM parked_vehicle " +
+                "UNION ALL SELECT Slot_id, vehicle_number FROM spare_parked_vehicle) AS ap " +
+                "JOIN vehicle v ON ap.vehicle_number = v.vehicle_number WHERE v.resident_id = ?";
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, residentId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                slots.add(rs.getInt(1));
+            }
+        }
+        return slots;
+    }
+
     // MODIFIED: This method now uses your suggested logic to ignore guest vehicles.
     public int[] getResidentVehicleCounts(String residentId) throws SQLException {
         int[] counts = new int[2]; // [0] for 4-wheelers, [1] for 2-wheelers
@@ -148,30 +221,13 @@ public class VehicleDAO {
     }
 
     public String getResidentIdForVehicle(String vehicleNumber) throws SQLException {
-        String query = "SELECT resident_id FROM vehicle WHERE vehicle_number = ?";
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, vehicleNumber);
-            ResultSet rs = ps.executeQuery();
-            return rs.next() ? rs.getString("resident_id") : null;
-        }
+        Vehicle vehicle = getVehicleByNumber(vehicleNumber);
+        return vehicle == null ? null : vehicle.getResidentId();
     }
 
     public Resident findResidentByVehicleNumber(String vehicleNumber) throws SQLException {
-        String query = "SELECT r.* FROM residents r JOIN vehicle v ON r.resident_id = v.resident_id WHERE v.vehicle_number = ?";
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, vehicleNumber);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new Resident(
-                        rs.getString("resident_id"), rs.getString("first_name"), rs.getString("last_name"),
-                        rs.getString("contact_number"), rs.getString("wing"), rs.getInt("house_number"),
-                        rs.getString("subscription_tier"), rs.getBigDecimal("subscription_cost"),
-                        rs.getDate("subscription_start_date"), rs.getDate("subscription_valid_until"),
-                        rs.getInt("vehicle_count"), rs.getString("username"), rs.getString("password")
-                );
-            }
-        }
-        return null;
+        VehicleOwner found = findVehicleWithOwner(vehicleNumber);
+        return found == null ? null : found.owner;
     }
 
     private Vehicle mapResultSetToVehicle(ResultSet rs) throws SQLException {
@@ -0,0 +1,26 @@
+package dao;
+
+import model.Vehicle;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache of vehicles by plate, used by VehicleDAO.findVehicleWithOwner. Only the
+ * vehicle row is kept here; the owner is looked up in ResidentCache by the vehicle's resident_id,
+ * so resident edits (which invalidate ResidentCache) never leave a stale owner behind a plate.
+ * A gate lookup where both are cached does not touch the database at all.
+ *
+ * Same rules as ResidentCache. Vehicle is immutable, so entries are handed out as they are.
+ */
+public final class VehicleOwnerCache extends LruTtlCache<String, Vehicle> {
+
+    private static final VehicleOwnerCache INSTANCE = new VehicleOwnerCache();
+
+    private VehicleOwnerCache() {
+        super("aptparkx.vehicleCache", 4096, 300_000L, Vehicle::getVehicleNumber, UnaryOperator.identity());
+    }
+
+    public static VehicleOwnerCache getInstance() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,403 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of physical JDBC connections.
+ * Callers receive a proxy from {@link #borrow()}; closing that proxy hands the
+ * physical connection back to the pool instead of closing the socket.
+ * Each physical connection keeps its own {@link StatementCache}.
+ */
+public final class ConnectionPool {
+
+    // A connection that was returned less than this long ago is trusted without a ping.
+    private static final long VALIDATION_INTERVAL_MILLIS = 1000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    // One permit per connection that may be handed out at the same time.
+    private final Semaphore permits;
+    // Most recently returned connections sit at the front, so the tail holds the longest idle ones.
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger physicalCount = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+
+    // --- Metrics ---
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    // A point-in-time copy of the pool's counters.
+    public static final class Stats {
+        public final int active;
+        public final int idle;
+        public final int maxSize;
+        public final long borrows;
+        public final long borrowTimeouts;
+        public final double averageWaitMillis;
+        public final double maxWaitMillis;
+        public final long created;
+        public final long destroyed;
+        public final long validationFailures;
+        public final long leaksDetected;
+        public final long statementCacheHits;
+        public final long statementCacheMisses;
+        public final long statementCacheEvictions;
+
+        Stats(int active, int idle, int maxSize, long borrows, long borrowTimeouts, double averageWaitMillis, double maxWaitMillis,
+              long created, long destroyed, long validationFailures, long leaksDetected,
+              long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.borrows = borrows;
+            this.borrowTimeouts = borrowTimeouts;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.validationFailures = validationFailures;
+            this.leaksDetected = leaksDetected;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public double statementCacheHitRate() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d, idle=%d, max=%d, borrows=%d, timeouts=%d, avgWait=%.3f ms, maxWait=%.3f ms, created=%d, destroyed=%d, validationFailures=%d, leaks=%d, "
+                            + "stmtCache[hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%]",
+                    active, idle, maxSize, borrows, borrowTimeouts, averageWaitMillis, maxWaitMillis, created, destroyed, validationFailures, leaksDetected,
+                    statementCacheHits, statementCacheMisses, statementCacheEvictions, statementCacheHitRate() * 100);
+        }
+    }
+
+    // Bookkeeping for one physical connection.
+    private static final class PooledConnection {
+        final Connection physical;
+        final StatementCache statementCache; // null when statement caching is switched off
+        volatile long lastReturnedAt;
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical, StatementCache statementCache) {
+            this.physical = physical;
+            this.statementCache = statementCache;
+            this.lastReturnedAt = System.currentTimeMillis();
+        }
+    }
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis, long housekeepingIntervalMillis,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aptparkx-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingIntervalMillis, housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured borrow timeout for one to become free.
+     * The returned connection is in auto-commit mode; close it to give it back.
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("The connection pool has been shut down.");
+        }
+
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+        recordWait(System.nanoTime() - waitStart);
+
+        if (!acquired) {
+            borrowTimeouts.incrementAndGet();
+            throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection (all " + maxSize + " are in use).");
+        }
+
+        try {
+            PooledConnection entry = takeValidIdleConnection();
+            if (entry == null) {
+                entry = createConnection();
+            }
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            entry.leakReported = false;
+            borrowed.add(entry);
+            borrowCount.incrementAndGet();
+            return wrap(entry);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats getStats() {
+        long borrows = borrowCount.get();
+        double averageWait = borrows == 0 ? 0 : totalWaitNanos.get() / (double) borrows / 1_000_000.0;
+        return new Stats(borrowed.size(), idle.size(), maxSize, borrows, borrowTimeouts.get(), averageWait, maxWaitNanos.get() / 1_000_000.0,
+                createdCount.get(), destroyedCount.get(), validationFailures.get(), leaksDetected.get(),
+                statementHits.get(), statementMisses.get(), statementEvictions.get());
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeping thread.
+     * Connections that are still borrowed are closed when they are returned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - entry.lastReturnedAt < VALIDATION_INTERVAL_MILLIS) {
+                return entry;
+            }
+            try {
+                if (entry.physical.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return entry;
+                }
+            } catch (SQLException ignored) {
+                // Treated the same as an invalid connection below.
+            }
+            validationFailures.incrementAndGet();
+            destroy(entry);
+        }
+        return null;
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        physical.setAutoCommit(true);
+        physicalCount.incrementAndGet();
+        createdCount.incrementAndGet();
+        StatementCache cache = statementCacheSize > 0
+                ? new StatementCache(physical, statementCacheSize, statementHits, statementMisses, statementEvictions)
+                : null;
+        return new PooledConnection(physical, cache);
+    }
+
+    private void release(PooledConnection entry) {
+        borrowed.remove(entry);
+        boolean reusable = !shutdown;
+        if (entry.statementCache != null) {
+            entry.statementCache.checkInAll();
+        }
+        try {
+            // Never hand the next borrower someone else's half-finished transaction.
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            entry.physical.clearWarnings();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            entry.lastReturnedAt = System.currentTimeMillis();
+            entry.borrowSite = null;
+            // Park the connection before releasing the permit so the pool never grows past maxSize.
+            idle.offerFirst(entry);
+        } else {
+            destroy(entry);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection entry) {
+        if (entry.statementCache != null) {
+            entry.statementCache.closeAll();
+        }
+        try {
+            entry.physical.close();
+        } catch (SQLException ignored) {
+            // The connection is being discarded anyway.
+        }
+        physicalCount.decrementAndGet();
+        destroyedCount.incrementAndGet();
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> snapshot = new ArrayList<>(idle);
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            PooledConnection entry = snapshot.get(i);
+            if (physicalCount.get() <= minSize) {
+                return;
+            }
+            if (now - entry.lastReturnedAt > idleTimeoutMillis && idle.remove(entry)) {
+                destroy(entry);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!shutdown && physicalCount.get() < minSize) {
+            try {
+                idle.offerLast(createConnection());
+            } catch (SQLException e) {
+                return; // The database is unreachable; try again on the next run.
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection entry : borrowed) {
+            long heldFor = now - entry.borrowedAt;
+            if (!entry.leakReported && heldFor > leakThresholdMillis) {
+                entry.leakReported = true;
+                leaksDetected.incrementAndGet();
+                System.err.println("Warning: a database connection has been held for " + heldFor + " ms without being returned to the pool.");
+                Throwable site = entry.borrowSite;
+                if (site != null) {
+                    site.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private Connection wrap(PooledConnection entry) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandle(entry));
+    }
+
+    // The handle a single borrower sees. Once closed it can no longer reach the physical connection.
+    private final class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection entry;
+        private boolean closed = false;
+
+        ConnectionHandle(PooledConnection entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("This connection has already been returned to the pool.");
+            }
+            if (entry.statementCache != null && "prepareStatement".equals(method.getName())) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return entry.statementCache.prepare((Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return entry.statementCache.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
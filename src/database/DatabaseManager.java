@@ -1,48 +1,120 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public final class DatabaseManager {
 
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/vehicle_parking_manager";
+    // Server-side prepared statements, so the per-connection statement cache saves a real parse.
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/vehicle_parking_manager?useServerPrepStmts=true&useCursorFetch=true";
+    // The same database with several statements allowed per execute. Only the separate pool behind
+    // getMultiStatementConnection() uses it, so a query built from strings anywhere else can never
+    // have a second statement stacked onto it.
+    private static final String MULTI_STATEMENT_URL = DB_URL + "&allowMultiQueries=true";
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = ""; // Add your database password here if you have one
 
+    // Pool settings. Each one can be overridden at launch, e.g. -Daptparkx.pool.maxSize=20
+    private static final int POOL_MIN_SIZE = Integer.getInteger("aptparkx.pool.minSize", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("aptparkx.pool.maxSize", 10);
+    private static final long BORROW_TIMEOUT_MILLIS = Long.getLong("aptparkx.pool.borrowTimeoutMillis", 5_000L);
+    private static final long IDLE_TIMEOUT_MILLIS = Long.getLong("aptparkx.pool.idleTimeoutMillis", 300_000L);
+    private static final long LEAK_THRESHOLD_MILLIS = Long.getLong("aptparkx.pool.leakThresholdMillis", 300_000L);
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = Long.getLong("aptparkx.pool.housekeepingIntervalMillis", 30_000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("aptparkx.pool.statementCacheSize", 64); // 0 turns caching off
+    private static final int MULTI_STATEMENT_POOL_MAX_SIZE = Integer.getInteger("aptparkx.pool.multiStatementMaxSize", 4);
 
-
-    private static Connection connectionInstance = null;
+    private static volatile ConnectionPool pool = null;
+    private static volatile ConnectionPool multiStatementPool = null;
 
     private DatabaseManager() {
 
     }
 
-    public static synchronized Connection getConnection() throws SQLException {
-        if (connectionInstance == null || connectionInstance.isClosed()) {
+    /**
+     * Borrows a connection from the shared pool. Callers must close it (try-with-resources
+     * or {@link #releaseConnection}) to hand it back; it starts out in auto-commit mode.
+     */
+    public static Connection getConnection() throws SQLException {
+        try {
+            return getPool().borrow();
+        } catch (SQLException e) {
+            System.err.println("Failed to obtain a database connection.");
+            throw e; // Re-throw the exception to be handled by the caller
+        }
+    }
+
+    /**
+     * Borrows a connection that may run several statements in one execute, from its own small pool.
+     * Only for the fixed statement groups that need it (ParkingDAO.archiveAndRemove on the gate exit,
+     * StateSnapshot.install); never run SQL built from user input on one. Close it like any other.
+     */
+    public static Connection getMultiStatementConnection() throws SQLException {
+        try {
+            return getMultiStatementPool().borrow();
+        } catch (SQLException e) {
+            System.err.println("Failed to obtain a database connection.");
+            throw e;
+        }
+    }
+
+    // Null-safe counterpart of getConnection() for the finally blocks in the service layer.
+    public static void releaseConnection(Connection connection) {
+        if (connection != null) {
             try {
-                connectionInstance = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-                connectionInstance.setAutoCommit(false); // Disable auto-commit for transaction management
+                connection.close();
             } catch (SQLException e) {
-                System.err.println("Failed to establish a new database connection.");
-                throw e; // Re-throw the exception to be handled by the caller
+                System.err.println("Failed to return the database connection to the pool: " + e.getMessage());
             }
         }
-        return connectionInstance;
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
     }
 
     public static synchronized void closeConnection() {
-        if (connectionInstance != null) {
-            try {
-                if (!connectionInstance.isClosed()) {
-                    connectionInstance.close();
-                    System.out.println("Database connection closed successfully.");
+        if (multiStatementPool != null) {
+            multiStatementPool.shutdown();
+            multiStatementPool = null;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            System.out.println("Database connection pool closed successfully.");
+        }
+    }
+
+    private static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                            BORROW_TIMEOUT_MILLIS, IDLE_TIMEOUT_MILLIS, LEAK_THRESHOLD_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS,
+                            STATEMENT_CACHE_SIZE);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ConnectionPool getMultiStatementPool() {
+        ConnectionPool current = multiStatementPool;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = multiStatementPool;
+                if (current == null) {
+                    // No minimum: nothing is opened until the first gate exit or snapshot check.
+                    current = new ConnectionPool(MULTI_STATEMENT_URL, DB_USER, DB_PASSWORD, 0, MULTI_STATEMENT_POOL_MAX_SIZE,
+                            BORROW_TIMEOUT_MILLIS, IDLE_TIMEOUT_MILLIS, LEAK_THRESHOLD_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS,
+                            STATEMENT_CACHE_SIZE);
+                    multiStatementPool = current;
                 }
-            } catch (SQLException e) {
-                System.err.println("Failed to close the database connection: " + e.getMessage());
-            } finally {
-                connectionInstance = null;
             }
         }
+        return current;
     }
 }
@@ -0,0 +1,241 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An LRU cache of prepared statements that belongs to one physical connection.
+ * Statements are keyed by their SQL text. Closing a statement handed out by the cache
+ * only clears its parameters, so the next prepare of the same SQL skips the server-side parse.
+ */
+final class StatementCache {
+
+    // Key prefix that keeps RETURN_GENERATED_KEYS statements apart from plain ones with the same SQL.
+    private static final String GENERATED_KEYS_PREFIX = "KEYS:";
+
+    private final Connection physical;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final LinkedHashMap<String, CachedStatement> entries;
+    // Checked-out statements that are no longer in entries (throwaway duplicates, or evicted while
+    // in use). They are closed on check-in, so a caller that never closes one must not leak it.
+    private final List<CachedStatement> detached = new ArrayList<>();
+
+    private static final class CachedStatement {
+        final PreparedStatement physical;
+        boolean inUse;
+        boolean evicted;
+        long generation; // bumped on every checkout, so a handle from an earlier one can tell it is stale
+        ResultSet lastResultSet;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+    }
+
+    StatementCache(Connection physical, int capacity, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        // Access order turns the map into an LRU list; the eldest entry is the least recently prepared.
+        this.entries = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a statement for the given SQL, reusing a cached one when it is free.
+     * If the cached statement is already checked out (the same SQL is open twice at once)
+     * a throwaway statement is prepared instead.
+     */
+    synchronized PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        boolean wantsKeys = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS;
+        String key = wantsKeys ? GENERATED_KEYS_PREFIX + sql : sql;
+
+        CachedStatement entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            PreparedStatement ps = wantsKeys ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : physical.prepareStatement(sql);
+            if (entry != null) {
+                CachedStatement throwaway = new CachedStatement(ps);
+                throwaway.evicted = true; // Closed for real when the caller closes it
+                detached.add(throwaway);
+                entry = throwaway;
+            } else {
+                entry = new CachedStatement(ps);
+                entries.put(key, entry);
+            }
+        }
+        entry.inUse = true;
+        entry.generation++;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new StatementHandle(owner, entry, entry.generation));
+    }
+
+    // Called when the owning connection goes back to the pool, in case a caller never closed a statement.
+    // Any handle still held for them goes stale and refuses further use.
+    synchronized void checkInAll() {
+        for (CachedStatement entry : new ArrayList<>(entries.values())) {
+            if (entry.inUse) {
+                checkIn(entry);
+            }
+        }
+        for (CachedStatement entry : new ArrayList<>(detached)) {
+            checkIn(entry);
+        }
+    }
+
+    synchronized void closeAll() {
+        List<CachedStatement> all = new ArrayList<>(entries.values());
+        entries.clear();
+        all.addAll(detached);
+        detached.clear();
+        for (CachedStatement entry : all) {
+            closeQuietly(entry.physical);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    // Checks the entry in only if the handle's checkout is still the current one.
+    private synchronized void checkIn(CachedStatement entry, long generation) {
+        if (isCurrent(entry, generation)) {
+            checkIn(entry);
+        }
+    }
+
+    private synchronized boolean isCurrent(CachedStatement entry, long generation) {
+        return entry.inUse && entry.generation == generation;
+    }
+
+    private synchronized void checkIn(CachedStatement entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            detached.remove(entry);
+            closeQuietly(entry.physical);
+            return;
+        }
+        try {
+            if (entry.lastResultSet != null) {
+                entry.lastResultSet.close();
+                entry.lastResultSet = null;
+            }
+            entry.physical.clearParameters();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not safe to hand out again.
+            removeEntry(entry);
+            closeQuietly(entry.physical);
+        }
+    }
+
+    private void evict(CachedStatement entry) {
+        evictions.incrementAndGet();
+        entry.evicted = true;
+        if (entry.inUse) {
+            detached.add(entry);
+        } else {
+            closeQuietly(entry.physical);
+        }
+    }
+
+    private void removeEntry(CachedStatement target) {
+        Iterator<CachedStatement> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() == target) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // Nothing useful can be done with a statement that fails to close.
+        }
+    }
+
+    // The view of a cached statement that one caller sees between prepare and close.
+    private final class StatementHandle implements InvocationHandler {
+        private final Connection owner;
+        private final CachedStatement entry;
+        private final long generation;
+        private boolean closed = false;
+
+        StatementHandle(Connection owner, CachedStatement entry, long generation) {
+            this.owner = owner;
+            this.entry = entry;
+            this.generation = generation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkIn(entry, generation);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || !isCurrent(entry, generation) || entry.physical.isClosed();
+                case "getConnection":
+                    return owner; // Never leak the physical connection to callers
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("This statement has already been closed.");
+            }
+            if (!isCurrent(entry, generation)) {
+                // The connection went back to the pool without this statement being closed.
+                closed = true;
+                throw new SQLException("This statement was closed when its connection was returned to the pool.");
+            }
+            try {
+                Object result = method.invoke(entry.physical, args);
+                if (result instanceof ResultSet && "executeQuery".equals(method.getName())) {
+                    entry.lastResultSet = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
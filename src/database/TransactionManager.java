@@ -2,12 +2,78 @@ package database;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 public final class TransactionManager {
 
+    // Attempts per runInTransaction call before a conflict is passed on to the caller.
+    private static final int MAX_ATTEMPTS = 3;
+
+    // Actions to run when a connection's current transaction ends, keyed by connection handle.
+    private static final Map<Connection, List<Runnable>> AFTER_COMPLETION = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * The database part of an operation. It runs with no user interaction and must re-check
+     * whatever the caller validated before the transaction started, because another admin may
+     * have changed it in the meantime.
+     */
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
     private TransactionManager() {
     }
 
+    /**
+     * Runs the work in one short transaction on a pooled connection and commits it.
+     * Deadlocks, lock wait timeouts and unique-key races (two admins taking the same new ID) roll
+     * back and run the work again from the start, up to MAX_ATTEMPTS times; any other error rolls
+     * back and is re-thrown.
+     */
+    public static <T> T runInTransaction(TransactionWork<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            Connection connection = null;
+            try {
+                connection = DatabaseManager.getConnection();
+                beginTransaction(connection);
+                T result = work.run(connection);
+                commitTransaction(connection);
+                return result;
+            } catch (SQLTransactionRollbackException | SQLIntegrityConstraintViolationException e) {
+                rollbackTransaction(connection);
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } catch (SQLException | RuntimeException e) {
+                rollbackTransaction(connection);
+                throw e;
+            } finally {
+                endTransaction(connection);
+                DatabaseManager.releaseConnection(connection);
+            }
+        }
+    }
+
+
+    /**
+     * Runs the action once the connection's open transaction has ended (committed or rolled back),
+     * from endTransaction. On an auto-commit connection the change is already committed, so the
+     * action runs straight away. Used to drop cached copies of rows a transaction has written.
+     */
+    public static void afterCompletion(Connection connection, Runnable action) throws SQLException {
+        if (connection.getAutoCommit()) {
+            action.run();
+            return;
+        }
+        AFTER_COMPLETION.computeIfAbsent(connection, c -> new ArrayList<>()).add(action);
+    }
 
     public static void beginTransaction(Connection connection) throws SQLException {
         if (connection != null) {
@@ -38,6 +104,12 @@ public final class TransactionManager {
             } catch (SQLException e) {
                 System.err.println("Failed to reset auto-commit: " + e.getMessage());
             }
+            List<Runnable> actions = AFTER_COMPLETION.remove(connection);
+            if (actions != null) {
+                for (Runnable action : actions) {
+                    action.run();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,120 @@
+package ds;
+
+/**
+ * A segment tree over a contiguous block of parking slots [firstSlot, lastSlot].
+ * Each node stores how many free slots lie beneath it, which lets us find the
+ * free slot closest to any anchor in O(log n) and update a slot in O(log n).
+ * This class is not thread-safe; callers are expected to guard it.
+ */
+public class FreeSlotSegmentTree {
+
+    private final int firstSlot;
+    private final int lastSlot;
+    private final int leafCount;
+    private final int[] free; // free[1] is the root; children of n are 2n and 2n+1
+
+    public FreeSlotSegmentTree(int firstSlot, int lastSlot) {
+        if (lastSlot < firstSlot) {
+            throw new IllegalArgumentException("Empty slot range " + firstSlot + ".." + lastSlot);
+        }
+        this.firstSlot = firstSlot;
+        this.lastSlot = lastSlot;
+        int n = lastSlot - firstSlot + 1;
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        this.leafCount = size;
+        this.free = new int[2 * size];
+        reset();
+    }
+
+    public int getFirstSlot() {
+        return firstSlot;
+    }
+
+    public int getLastSlot() {
+        return lastSlot;
+    }
+
+    public boolean contains(int slot) {
+        return slot >= firstSlot && slot <= lastSlot;
+    }
+
+    /**
+     * Marks every slot in the range as free.
+     */
+    public void reset() {
+        int n = lastSlot - firstSlot + 1;
+        for (int i = 0; i < leafCount; i++) {
+            free[leafCount + i] = i < n ? 1 : 0;
+        }
+        for (int node = leafCount - 1; node >= 1; node--) {
+            free[node] = free[2 * node] + free[2 * node + 1];
+        }
+    }
+
+    public void setOccupied(int slot, boolean occupied) {
+        int node = leafCount + (slot - firstSlot);
+        int value = occupied ? 0 : 1;
+        if (free[node] == value) {
+            return;
+        }
+        free[node] = value;
+        for (node >>= 1; node >= 1; node >>= 1) {
+            free[node] = free[2 * node] + free[2 * node + 1];
+        }
+    }
+
+    public int freeCount() {
+        return free[1];
+    }
+
+    /**
+     * @return the lowest free slot that is >= fromSlot, or -1 if there is none.
+     */
+    public int firstFreeAtOrAfter(int fromSlot) {
+        if (fromSlot > lastSlot) {
+            return -1;
+        }
+        int from = Math.max(fromSlot, firstSlot) - firstSlot;
+        int leaf = findFirst(1, 0, leafCount - 1, from);
+        return leaf < 0 ? -1 : firstSlot + leaf;
+    }
+
+    /**
+     * @return the highest free slot that is <= toSlot, or -1 if there is none.
+     */
+    public int lastFreeAtOrBefore(int toSlot) {
+        if (toSlot < firstSlot) {
+            return -1;
+        }
+        int to = Math.min(toSlot, lastSlot) - firstSlot;
+        int leaf = findLast(1, 0, leafCount - 1, to);
+        return leaf < 0 ? -1 : firstSlot + leaf;
+    }
+
+    private int findFirst(int node, int nodeLo, int nodeHi, int from) {
+        if (nodeHi < from || free[node] == 0) {
+            return -1;
+        }
+        if (nodeLo == nodeHi) {
+            return nodeLo;
+        }
+        int mid = (nodeLo + nodeHi) >>> 1;
+        int found = findFirst(2 * node, nodeLo, mid, from);
+        return found >= 0 ? found : findFirst(2 * node + 1, mid + 1, nodeHi, from);
+    }
+
+    private int findLast(int node, int nodeLo, int nodeHi, int to) {
+        if (nodeLo > to || free[node] == 0) {
+            return -1;
+        }
+        if (nodeLo == nodeHi) {
+            return nodeLo;
+        }
+        int mid = (nodeLo + nodeHi) >>> 1;
+        int found = findLast(2 * node + 1, mid + 1, nodeHi, to);
+        return found >= 0 ? found : findLast(2 * node, nodeLo, mid, to);
+    }
+}
@@ -0,0 +1,173 @@
+package ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A binary min-heap that also tracks where each element sits, so an element can be removed or
+ * re-ordered by its id in O(log n) rather than found by an O(n) scan. Elements are identified by
+ * a non-negative int id (e.g. waitlist_id), at most one element per id. The id -> position index
+ * is a {@link LongIntHashMap}, so it does not box. Not thread-safe.
+ */
+public class IndexedHeap<T> {
+
+    private final Comparator<? super T> order;
+    private final ToIntFunction<? super T> idOf;
+    private final LongIntHashMap positions;
+    private Object[] heap;
+    private int size;
+
+    public IndexedHeap(int expectedSize, Comparator<? super T> order, ToIntFunction<? super T> idOf) {
+        this.order = order;
+        this.idOf = idOf;
+        this.positions = new LongIntHashMap(expectedSize, -1);
+        this.heap = new Object[Math.max(expectedSize, 16)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        return positions.containsKey(id);
+    }
+
+    public T get(int id) {
+        int position = positions.get(id);
+        return position < 0 ? null : elementAt(position);
+    }
+
+    // O(log n). Throws if an element with the same id is already in the heap.
+    public void add(T element) {
+        int id = idOf.applyAsInt(element);
+        if (positions.containsKey(id)) {
+            throw new IllegalArgumentException("Id " + id + " is already in the heap");
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = element;
+        positions.put(id, size);
+        siftUp(size++);
+    }
+
+    // The smallest element, or null if empty.
+    public T peek() {
+        return size == 0 ? null : elementAt(0);
+    }
+
+    // Removes and returns the smallest element, or null if empty. O(log n).
+    public T poll() {
+        return size == 0 ? null : removeAt(0);
+    }
+
+    // Removes the element with this id. O(log n). @return it, or null if there was none.
+    public T remove(int id) {
+        int position = positions.get(id);
+        return position < 0 ? null : removeAt(position);
+    }
+
+    /**
+     * Replaces the element that has the same id and moves it to its new place. O(log n).
+     * @return the element it replaced, or null (and nothing is changed) if the id is not in the heap.
+     */
+    public T update(T element) {
+        int position = positions.get(idOf.applyAsInt(element));
+        if (position < 0) {
+            return null;
+        }
+        T previous = elementAt(position);
+        heap[position] = element;
+        siftDown(siftUp(position));
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        positions.clear();
+        size = 0;
+    }
+
+    // Every element, in no particular order.
+    public List<T> elements() {
+        List<T> all = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            all.add(elementAt(i));
+        }
+        return all;
+    }
+
+    // Every element, smallest first. O(n log n); the heap itself is not changed.
+    public List<T> sorted() {
+        List<T> all = elements();
+        all.sort(order);
+        return all;
+    }
+
+    private T removeAt(int position) {
+        T removed = elementAt(position);
+        positions.remove(idOf.applyAsInt(removed));
+        int last = --size;
+        if (position != last) {
+            heap[position] = heap[last];
+            positions.put(idOf.applyAsInt(elementAt(position)), position);
+            heap[last] = null;
+            siftDown(siftUp(position));
+        } else {
+            heap[last] = null;
+        }
+        return removed;
+    }
+
+    // @return where the element ended up.
+    private int siftUp(int position) {
+        T element = elementAt(position);
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            T above = elementAt(parent);
+            if (order.compare(element, above) >= 0) {
+                break;
+            }
+            place(above, position);
+            position = parent;
+        }
+        place(element, position);
+        return position;
+    }
+
+    private void siftDown(int position) {
+        T element = elementAt(position);
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && order.compare(elementAt(right), elementAt(child)) < 0) {
+                child = right;
+            }
+            T below = elementAt(child);
+            if (order.compare(element, below) <= 0) {
+                break;
+            }
+            place(below, position);
+            position = child;
+        }
+        place(element, position);
+    }
+
+    private void place(T element, int position) {
+        heap[position] = element;
+        positions.put(idOf.applyAsInt(element), position);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int position) {
+        return (T) heap[position];
+    }
+}
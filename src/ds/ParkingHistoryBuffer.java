@@ -0,0 +1,200 @@
+package ds;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Append-only container for parking history rows, replacing ParkingHistoryLinkedList.
+ * Records are kept in fixed-size chunks of CHUNK_SIZE references. Appending fills the last
+ * chunk, or adds a new one, so it is O(1) and never copies records; only the small chunk
+ * directory is doubled when it runs out. Index i is in chunk i >> CHUNK_SHIFT.
+ *
+ * filter() and sorted() return a {@link View}: an int[] of positions into the buffer, so
+ * the records themselves are never copied or moved.
+ */
+public class ParkingHistoryBuffer implements Iterable<ParkingRecord> {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private ParkingRecord[][] chunks = new ParkingRecord[4][];
+    private int size;
+
+    public void add(ParkingRecord record) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new ParkingRecord[CHUNK_SIZE];
+        }
+        chunks[chunk][size & CHUNK_MASK] = record;
+        size++;
+    }
+
+    public ParkingRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        chunks = new ParkingRecord[4][];
+        size = 0;
+    }
+
+    @Override
+    public Iterator<ParkingRecord> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public ParkingRecord next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Newest-appended record first.
+     */
+    public Iterator<ParkingRecord> descendingIterator() {
+        return new Iterator<>() {
+            private int next = size - 1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public ParkingRecord next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                return get(next--);
+            }
+        };
+    }
+
+    public View view() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        return new View(order, size);
+    }
+
+    public View filter(Predicate<? super ParkingRecord> predicate) {
+        return view().filter(predicate);
+    }
+
+    public View sorted(Comparator<? super ParkingRecord> comparator) {
+        return view().sorted(comparator);
+    }
+
+    /**
+     * An ordering or subset of the buffer's records, held as positions into the buffer.
+     * A view reflects the records as they were when it was made; records appended later are not in it.
+     */
+    public final class View implements Iterable<ParkingRecord> {
+        private final int[] order;
+        private final int length;
+
+        private View(int[] order, int length) {
+            this.order = order;
+            this.length = length;
+        }
+
+        public int size() {
+            return length;
+        }
+
+        public ParkingRecord get(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + length);
+            }
+            return ParkingHistoryBuffer.this.get(order[index]);
+        }
+
+        public View filter(Predicate<? super ParkingRecord> predicate) {
+            int[] kept = new int[length];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                if (predicate.test(ParkingHistoryBuffer.this.get(order[i]))) {
+                    kept[count++] = order[i];
+                }
+            }
+            return new View(kept, count);
+        }
+
+        /**
+         * Stable sort of the positions; equal records keep their current order.
+         */
+        public View sorted(Comparator<? super ParkingRecord> comparator) {
+            int[] sorted = Arrays.copyOf(order, length);
+            mergeSort(sorted, Arrays.copyOf(order, length), 0, length, comparator);
+            return new View(sorted, length);
+        }
+
+        @Override
+        public Iterator<ParkingRecord> iterator() {
+            return new Iterator<>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < length;
+                }
+
+                @Override
+                public ParkingRecord next() {
+                    if (next >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(next++);
+                }
+            };
+        }
+
+        // Top-down merge sort of dst[from, to); src starts as a copy of dst and is used as scratch.
+        private void mergeSort(int[] dst, int[] src, int from, int to, Comparator<? super ParkingRecord> comparator) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(src, dst, from, mid, comparator);
+            mergeSort(src, dst, mid, to, comparator);
+            int left = from;
+            int right = mid;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < mid && comparator.compare(ParkingHistoryBuffer.this.get(src[left]), ParkingHistoryBuffer.this.get(src[right])) <= 0)) {
+                    dst[i] = src[left++];
+                } else {
+                    dst[i] = src[right++];
+                }
+            }
+        }
+    }
+}
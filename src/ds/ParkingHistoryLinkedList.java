@@ -1,6 +1,10 @@
 package ds;
 
-
+/**
+ * @deprecated insertAtLast walks the whole list, so building a history of n records is O(n^2).
+ * Use {@link ParkingHistoryBuffer} instead. Kept for the history buffer benchmark.
+ */
+@Deprecated
 public class ParkingHistoryLinkedList {
     private Node head;
 
@@ -4,58 +4,129 @@
 package ds;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
 
+/**
+ * One archived stay, stored compactly: times as epoch millis, hours and charge as hundredths
+ * (so the charge is in paise), the plate as a PlateCode, and brand, type, parking type and owner
+ * name as ids into shared dictionaries. Everything is turned back into text only by the getters.
+ * That is about 80 bytes per record instead of several hundred for the string/BigDecimal form.
+ * Brand and type are free text, so a dictionary can fill up; a record whose text did not get an id
+ * keeps its own copy of the strings instead, like plateText for plates that do not pack.
+ */
 public class ParkingRecord {
 
+    private static final StringDictionary BRANDS = new StringDictionary(Short.MAX_VALUE);
+    private static final StringDictionary TYPES = new StringDictionary(Short.MAX_VALUE);
+    private static final StringDictionary PARKING_TYPES = new StringDictionary(Short.MAX_VALUE);
+    private static final StringDictionary OWNERS = new StringDictionary(Integer.MAX_VALUE - 8);
+
+    // Positions in overflow.
+    private static final int OWNER = 0;
+    private static final int BRAND = 1;
+    private static final int TYPE = 2;
+    private static final int PARKING_TYPE = 3;
+
     private final int serialNumber;
-    private final String ownerName;    // --- NEW FIELD ---
+    private final int ownerId;         // 0 = no owner column (resident views)
     private final int slotId;
-    private final String vehicleNumber;
-    private final String vehicleBrand;
-    private final String vehicleType;
-    private final String timeIn;
-    private final String timeOut;
-    private final BigDecimal totalHours;
-    private final BigDecimal chargeAmount;
-    private final String parkingType;
-
-    // --- CONSTRUCTOR UPDATED ---
-    public ParkingRecord(int serialNumber, String ownerName, int slotId, String vehicleNumber, String vehicleBrand, String vehicleType, String timeIn, String timeOut, BigDecimal totalHours, BigDecimal chargeAmount, String parkingType) {
+    private final long plateCode;      // PlateCode.INVALID if the plate did not fit; see plateText
+    private final String plateText;    // only set for plates PlateCode cannot pack
+    private final long timeInMillis;
+    private final long timeOutMillis;
+    private final long totalHoursHundredths;
+    private final long chargePaise;
+    private final short brandId;
+    private final short typeId;
+    private final short parkingTypeId; // 0 = no park type column
+    private final String[] overflow;   // only set if one of the ids above is StringDictionary.FULL
+
+    public ParkingRecord(int serialNumber, String ownerName, int slotId, String vehicleNumber, String vehicleBrand, String vehicleType,
+                         long timeInMillis, long timeOutMillis, long totalHoursHundredths, long chargePaise, String parkingType) {
         this.serialNumber = serialNumber;
-        this.ownerName = ownerName;
+        this.ownerId = OWNERS.idOf(ownerName);
         this.slotId = slotId;
-        this.vehicleNumber = vehicleNumber;
-        this.vehicleBrand = vehicleBrand;
-        this.vehicleType = vehicleType;
-        this.timeIn = timeIn;
-        this.timeOut = timeOut;
-        this.totalHours = totalHours;
-        this.chargeAmount = chargeAmount;
-        this.parkingType = parkingType;
+        this.plateCode = PlateCode.encode(vehicleNumber);
+        this.plateText = plateCode == PlateCode.INVALID ? vehicleNumber : null;
+        this.timeInMillis = timeInMillis;
+        this.timeOutMillis = timeOutMillis;
+        this.totalHoursHundredths = totalHoursHundredths;
+        this.chargePaise = chargePaise;
+        this.brandId = (short) BRANDS.idOf(vehicleBrand);
+        this.typeId = (short) TYPES.idOf(vehicleType);
+        this.parkingTypeId = (short) PARKING_TYPES.idOf(parkingType);
+        this.overflow = ownerId == StringDictionary.FULL || brandId == StringDictionary.FULL
+                || typeId == StringDictionary.FULL || parkingTypeId == StringDictionary.FULL
+                ? new String[]{ownerName, vehicleBrand, vehicleType, parkingType} : null;
     }
 
-    // --- TOSTRING() UPDATED ---
-    @Override
-    public String toString() {
-        // This format is for the ADMIN view, which now includes Owner Name.
-        // It's designed to be flexible for different history views.
-        if (this.ownerName != null) {
-            if (this.parkingType != null) { // "All History" view with Park Type
-                return String.format("%-4d | %-20s | %-8d | %-15s | %-12s | %-12s | %-10s | %-22s | %-22s | %-10.2f | %-12.2f",
-                        this.serialNumber, this.ownerName, this.slotId, this.vehicleNumber, this.vehicleBrand, this.vehicleType, this.parkingType, this.timeIn, this.timeOut, this.totalHours, this.chargeAmount);
-            } else { // "Resident" or "Guest" specific views
-                return String.format("%-4d | %-20s | %-8d | %-15s | %-12s | %-12s | %-22s | %-22s | %-10.2f | %-12.2f",
-                        this.serialNumber, this.ownerName, this.slotId, this.vehicleNumber, this.vehicleBrand, this.vehicleType, this.timeIn, this.timeOut, this.totalHours, this.chargeAmount);
-            }
-        }
+    /**
+     * Converts a DECIMAL(…,2) column such as total_hours or charge_amount to hundredths.
+     */
+    public static long toHundredths(BigDecimal value) {
+        return value == null ? 0 : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public int getSerialNumber() {
+        return serialNumber;
+    }
 
-        // This format is for the RESIDENT view, which does not need the Owner Name.
-        if (this.parkingType != null) { // "All My Parking History" view
-            return String.format("%-4d | %-8d | %-15s | %-12s | %-12s | %-10s | %-22s | %-22s | %-10.2f | %-12.2f",
-                    this.serialNumber, this.slotId, this.vehicleNumber, this.vehicleBrand, this.vehicleType, this.parkingType, this.timeIn, this.timeOut, this.totalHours, this.chargeAmount);
-        } else { // "My Resident" or "My Guest" specific views
-            return String.format("%-4d | %-8d | %-15s | %-12s | %-12s | %-22s | %-22s | %-10.2f | %-12.2f",
-                    this.serialNumber, this.slotId, this.vehicleNumber, this.vehicleBrand, this.vehicleType, this.timeIn, this.timeOut, this.totalHours, this.chargeAmount);
+    public String getOwnerName() {
+        return text(OWNERS, ownerId, OWNER);
+    }
+
+    public int getSlotId() {
+        return slotId;
+    }
+
+    public String getVehicleNumber() {
+        if (plateCode == PlateCode.INVALID) {
+            return plateText;
         }
+        return PlateCode.decode(plateCode);
+    }
+
+    public String getVehicleBrand() {
+        return text(BRANDS, brandId, BRAND);
+    }
+
+    public String getVehicleType() {
+        return text(TYPES, typeId, TYPE);
+    }
+
+    public long getTimeInMillis() {
+        return timeInMillis;
+    }
+
+    public long getTimeOutMillis() {
+        return timeOutMillis;
+    }
+
+    public long getTotalHoursHundredths() {
+        return totalHoursHundredths;
+    }
+
+    public long getChargePaise() {
+        return chargePaise;
+    }
+
+    public BigDecimal getChargeAmount() {
+        return BigDecimal.valueOf(chargePaise, 2);
+    }
+
+    public String getParkingType() {
+        return text(PARKING_TYPES, parkingTypeId, PARKING_TYPE);
+    }
+
+    private String text(StringDictionary dictionary, int id, int overflowIndex) {
+        return id == StringDictionary.FULL ? overflow[overflowIndex] : dictionary.valueOf(id);
+    }
+
+    // For debugging; the console tables are written by ParkingService through a TableRenderer.
+    @Override
+    public String toString() {
+        return "#" + serialNumber + " slot=" + slotId + " " + getVehicleNumber() + " " + new Timestamp(timeInMillis)
+                + " -> " + new Timestamp(timeOutMillis) + " charge=" + getChargeAmount();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package ds;
+
+/**
+ * Packs a vehicle number of the form LLDDLLDDDD (e.g. GJ05CD5678, the only format InputHandler
+ * accepts) into a single non-negative long, and back. The code is a mixed-radix number:
+ * letters are base 26 and digits base 10, so it needs 39 bits and equal plates always get
+ * equal codes.
+ */
+public final class PlateCode {
+
+    /** Returned by {@link #encode} for anything that is not a well-formed plate. */
+    public static final long INVALID = -1L;
+
+    private static final int LENGTH = 10;
+
+    private PlateCode() {
+    }
+
+    public static long encode(CharSequence plate) {
+        if (plate == null || plate.length() != LENGTH) {
+            return INVALID;
+        }
+        long code = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = plate.charAt(i);
+            if (isLetterPosition(i)) {
+                if (c < 'A' || c > 'Z') {
+                    return INVALID;
+                }
+                code = code * 26 + (c - 'A');
+            } else {
+                if (c < '0' || c > '9') {
+                    return INVALID;
+                }
+                code = code * 10 + (c - '0');
+            }
+        }
+        return code;
+    }
+
+    public static String decode(long code) {
+        if (code < 0) {
+            throw new IllegalArgumentException("Not a plate code: " + code);
+        }
+        char[] plate = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            if (isLetterPosition(i)) {
+                plate[i] = (char) ('A' + code % 26);
+                code /= 26;
+            } else {
+                plate[i] = (char) ('0' + code % 10);
+                code /= 10;
+            }
+        }
+        if (code != 0) {
+            throw new IllegalArgumentException("Plate code out of range");
+        }
+        return new String(plate);
+    }
+
+    // Positions 0-1 and 4-5 are letters, the rest digits.
+    private static boolean isLetterPosition(int i) {
+        return i < 2 || i == 4 || i == 5;
+    }
+}
@@ -0,0 +1,137 @@
+package ds;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size bitset of parking slots backed by 64-bit words in an AtomicLongArray.
+ * Bit n is set when slot n is occupied. Slot numbers start at 1, so bit 0 is never used.
+ * Single-slot updates are lock-free compare-and-set operations, so concurrent callers can
+ * claim slots without a shared lock. Range queries read each word atomically but are not
+ * a consistent snapshot of the whole range while other threads are writing.
+ */
+public class SlotBitmap {
+
+    private final AtomicLongArray words;
+    private final int maxSlot;
+
+    public SlotBitmap(int maxSlot) {
+        this.maxSlot = maxSlot;
+        this.words = new AtomicLongArray((maxSlot >> 6) + 1);
+    }
+
+    public int getMaxSlot() {
+        return maxSlot;
+    }
+
+    public boolean isSet(int slot) {
+        checkSlot(slot);
+        return (words.get(slot >> 6) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Atomically claims a slot.
+     * @return true if this call changed the slot from free to occupied, false if it was already occupied.
+     */
+    public boolean set(int slot) {
+        checkSlot(slot);
+        int index = slot >> 6;
+        long mask = 1L << slot;
+        while (true) {
+            long before = words.get(index);
+            if ((before & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, before, before | mask)) {
+                return true;
+            }
+            // Another slot in the same word changed under us; re-read and try again.
+        }
+    }
+
+    /**
+     * Atomically frees a slot.
+     * @return true if this call changed the slot from occupied to free.
+     */
+    public boolean clear(int slot) {
+        checkSlot(slot);
+        int index = slot >> 6;
+        long mask = 1L << slot;
+        while (true) {
+            long before = words.get(index);
+            if ((before & mask) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, before, before & ~mask)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole bitmap with the given words, one word at a time.
+     */
+    public void load(long[] source) {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, i < source.length ? source[i] : 0L);
+        }
+    }
+
+    public long[] toWords() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Counts the occupied slots in the inclusive range [from, to] with one popcount per word.
+     */
+    public int count(int from, int to) {
+        checkSlot(from);
+        checkSlot(to);
+        if (from > to) {
+            return 0;
+        }
+        int firstWord = from >> 6;
+        int lastWord = to >> 6;
+        long firstMask = -1L << from;           // bits at or above 'from' in its word
+        long lastMask = -1L >>> (63 - (to & 63)); // bits at or below 'to' in its word
+
+        if (firstWord == lastWord) {
+            return Long.bitCount(words.get(firstWord) & firstMask & lastMask);
+        }
+        int total = Long.bitCount(words.get(firstWord) & firstMask);
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            total += Long.bitCount(words.get(i));
+        }
+        return total + Long.bitCount(words.get(lastWord) & lastMask);
+    }
+
+    /**
+     * Finds the lowest free slot in the inclusive range [from, to].
+     * @return the slot number, or -1 if every slot in the range is occupied.
+     */
+    public int nextClear(int from, int to) {
+        checkSlot(from);
+        checkSlot(to);
+        int wordIndex = from >> 6;
+        long free = ~words.get(wordIndex) & (-1L << from);
+        while (true) {
+            if (free != 0) {
+                int slot = (wordIndex << 6) + Long.numberOfTrailingZeros(free);
+                return slot <= to ? slot : -1;
+            }
+            if (++wordIndex > (to >> 6)) {
+                return -1;
+            }
+            free = ~words.get(wordIndex);
+        }
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 1 || slot > maxSlot) {
+            throw new IllegalArgumentException("Slot " + slot + " is outside 1.." + maxSlot);
+        }
+    }
+}
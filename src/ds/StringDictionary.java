@@ -0,0 +1,67 @@
+package ds;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns small integer ids to repeating strings (vehicle brands, types, owner names) so records
+ * can store the id instead of their own copy of the text. Ids are dense, start at 1 and are never
+ * reused; 0 stands for null. Lookups are lock-free, adding a new string takes the lock.
+ */
+public final class StringDictionary {
+
+    /** Returned by {@link #idOf} for a new string once the dictionary is full. */
+    public static final int FULL = -1;
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int size = 0; // guarded by this
+
+    /**
+     * @param maxSize the highest id that may be handed out, e.g. Short.MAX_VALUE for short ids.
+     */
+    public StringDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the id of the value, adding it if it is new; 0 for null; FULL if it is new and the
+     *         dictionary already holds maxSize strings, in which case the caller keeps the text itself.
+     */
+    public int idOf(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : add(value);
+    }
+
+    public String valueOf(int id) {
+        return id == 0 ? null : values[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == maxSize) {
+            return FULL;
+        }
+        int id = ++size;
+        String[] current = values;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = value;
+        // Publish the array before the id, so a reader that finds the id also sees the value.
+        values = current;
+        ids.put(value, id);
+        return id;
+    }
+}
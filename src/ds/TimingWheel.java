@@ -0,0 +1,163 @@
+package ds;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: four levels of 64 buckets, each level's bucket covering 64 times
+ * the span of the level below. With a one second tick that reaches about 194 days ahead; timers
+ * further out wait in the top level and are re-filed when it comes round.
+ *
+ * Scheduling and cancelling are O(1): a timer goes into the bucket its deadline falls in and each
+ * bucket is a doubly linked list. Advancing one tick fires the due bucket of the lowest level and,
+ * every 64 ticks, moves one higher-level bucket down a level, so the work per tick depends only on
+ * how many timers are due, not on how many are pending. Timers never fire early; they fire on the
+ * first tick at or after their deadline. Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (BITS * LEVELS); // ticks the whole wheel covers
+
+    public static final class Timer<T> {
+        private final T payload;
+        private final long deadlineTick;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        // False once it has fired or been cancelled.
+        public boolean isPending() {
+            return next != null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timer<T>[] buckets; // each one a circular list headed by an empty sentinel
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+        this.buckets = (Timer<T>[]) new Timer<?>[LEVELS * SLOTS];
+        for (int i = 0; i < buckets.length; i++) {
+            Timer<T> sentinel = new Timer<>(null, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            buckets[i] = sentinel;
+        }
+    }
+
+    // Timers scheduled and not yet fired or cancelled.
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules payload for deadlineMillis. A deadline already passed fires on the next tick.
+     * @return the timer, for cancel().
+     */
+    public Timer<T> schedule(long deadlineMillis, T payload) {
+        long tick = Math.floorDiv(deadlineMillis, tickMillis);
+        if (tick * tickMillis < deadlineMillis) {
+            tick++; // round up so it never fires early
+        }
+        Timer<T> timer = new Timer<>(payload, Math.max(tick, currentTick + 1));
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    // O(1). @return false if it had already fired or been cancelled.
+    public boolean cancel(Timer<T> timer) {
+        if (timer == null || !timer.isPending()) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to nowMillis one tick at a time, handing every timer that comes due
+     * to expired, oldest deadline first. The wheel must not be changed from inside expired.
+     * @return how many timers fired.
+     */
+    public int advanceTo(long nowMillis, Consumer<? super T> expired) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        int fired = 0;
+        while (currentTick < target) {
+            currentTick++;
+            // Every 64^level ticks the next bucket of that level is due to move down.
+            for (int level = 1; level < LEVELS && (currentTick & ((1L << (BITS * level)) - 1)) == 0; level++) {
+                cascade(level * SLOTS + (int) ((currentTick >>> (BITS * level)) & MASK));
+            }
+            Timer<T> due = buckets[(int) (currentTick & MASK)];
+            while (due.next != due) {
+                Timer<T> timer = due.next;
+                unlink(timer);
+                size--;
+                fired++;
+                expired.accept(timer.payload);
+            }
+        }
+        return fired;
+    }
+
+    // Picks the lowest level whose span covers the time left, so a bucket never holds timers
+    // from two different rounds of its level.
+    private void place(Timer<T> timer) {
+        long delta = timer.deadlineTick - currentTick;
+        long tick = timer.deadlineTick;
+        if (delta >= SPAN) {
+            tick = currentTick + SPAN - 1; // beyond the wheel: park it in the furthest top-level bucket
+            delta = SPAN - 1;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        link(buckets[level * SLOTS + (int) ((tick >>> (BITS * level)) & MASK)], timer);
+    }
+
+    private void cascade(int bucket) {
+        Timer<T> head = buckets[bucket];
+        Timer<T> timer = head.next;
+        head.prev = head;
+        head.next = head;
+        while (timer != head) {
+            Timer<T> following = timer.next;
+            place(timer);
+            timer = following;
+        }
+    }
+
+    private static <T> void link(Timer<T> head, Timer<T> timer) {
+        timer.prev = head.prev;
+        timer.next = head;
+        head.prev.next = timer;
+        head.prev = timer;
+    }
+
+    private static <T> void unlink(Timer<T> timer) {
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+    }
+}
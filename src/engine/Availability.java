@@ -0,0 +1,23 @@
+package engine;
+
+/**
+ * Occupancy snapshot taken from the in-memory counters. Wing numbers count vehicles of that
+ * wing's residents, as the availability screen always has.
+ */
+public class Availability {
+    public final int wingAOccupied;
+    public final int wingBOccupied;
+    public final int wingCOccupied;
+    public final int guestOccupied;
+
+    public Availability(int wingAOccupied, int wingBOccupied, int wingCOccupied, int guestOccupied) {
+        this.wingAOccupied = wingAOccupied;
+        this.wingBOccupied = wingBOccupied;
+        this.wingCOccupied = wingCOccupied;
+        this.guestOccupied = guestOccupied;
+    }
+
+    public int residentOccupied() {
+        return wingAOccupied + wingBOccupied + wingCOccupied;
+    }
+}
@@ -0,0 +1,21 @@
+package engine;
+
+/**
+ * Outcome of a successful park: which vehicle went into which slot.
+ */
+public class ParkResult {
+    public final String vehicleNumber;
+    public final int slotId;
+    public final boolean guest;
+
+    public ParkResult(String vehicleNumber, int slotId, boolean guest) {
+        this.vehicleNumber = vehicleNumber;
+        this.slotId = slotId;
+        this.guest = guest;
+    }
+
+    @Override
+    public String toString() {
+        return vehicleNumber + " -> slot " + slotId + (guest ? " (guest)" : "");
+    }
+}
@@ -0,0 +1,371 @@
+package engine;
+
+import dao.ParkingDAO;
+import dao.ResidentDAO;
+import dao.VehicleDAO;
+import database.DatabaseManager;
+import database.TransactionManager;
+import model.Resident;
+import model.Vehicle;
+import model.WaitingListEntry;
+import services.ExpiryScheduler;
+import services.GuestWaitingList;
+import services.OccupancyCounters;
+import services.ParkingService;
+import services.PlateDirectory;
+import services.SlotAllocator;
+import services.SlotOccupancy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+
+import engine.ParkingException.Reason;
+import journal.EventJournal;
+
+/**
+ * Non-interactive parking operations. Nothing in here reads from the console or prints;
+ * every call either returns a result object or throws a {@link ParkingException} with a reason.
+ * The console services are thin clients of this class, and benchmarks or other front ends
+ * can drive it directly. Each call borrows its own pooled connection, so one engine can be
+ * shared between threads.
+ */
+public class ParkingEngine {
+
+    // Admission policy for the guest waiting list: once it holds this many entries, new guests are
+    // turned away with WAITING_LIST_FULL. 0 (the default) admits everyone; the list itself has no
+    // size limit. Set with -Daptparkx.waitlist.maxSize=N.
+    public static final int WAITING_LIST_LIMIT = Integer.getInteger("aptparkx.waitlist.maxSize", 0);
+
+    // How often an automatic park picks a new slot after losing one to another terminal.
+    private static final int MAX_AUTO_ATTEMPTS = 3;
+
+    /**
+     * Parks one of the resident's registered vehicles.
+     * @param slotId a specific resident slot, or null to take the free slot nearest the resident's house.
+     */
+    public ParkResult park(String residentId, String vehicleNumber, Integer slotId) throws ParkingException {
+        Connection conn = null;
+        try {
+            conn = DatabaseManager.getConnection();
+            Resident resident = new ResidentDAO(conn).getResidentById(residentId);
+            if (resident == null) {
+                throw new ParkingException(Reason.RESIDENT_NOT_FOUND, "Resident '" + residentId + "' not found.");
+            }
+            PlateDirectory plates = PlateDirectory.getInstance();
+            String ownerId = plates.ownerOf(vehicleNumber);
+            if (ownerId == null) {
+                ownerId = new VehicleDAO(conn).getResidentIdForVehicle(vehicleNumber);
+            }
+            if (ownerId == null) {
+                throw new ParkingException(Reason.VEHICLE_NOT_FOUND, "Vehicle '" + vehicleNumber + "' is not registered.");
+            }
+            if (!residentId.equals(ownerId)) {
+                throw new ParkingException(Reason.NOT_OWNER, "Vehicle '" + vehicleNumber + "' does not belong to resident '" + residentId + "'.");
+            }
+            ParkingDAO parkingDAO = new ParkingDAO(conn);
+            if (findParkedSlot(plates, parkingDAO, vehicleNumber) >= 0) {
+                throw new ParkingException(Reason.ALREADY_PARKED, "Vehicle '" + vehicleNumber + "' is already parked.");
+            }
+            OccupancyCounters counters = OccupancyCounters.getInstance();
+            if (counters.getWingCount(resident.getWing()) >= wingCapacity(resident.getWing())) {
+                throw new ParkingException(Reason.WING_FULL, "The maximum parking capacity for wing " + resident.getWing() + " has been reached.");
+            }
+
+            for (int attempt = 1; ; attempt++) {
+                int claimed = slotId == null
+                        ? SlotAllocator.claimResidentSlot(resident.getWing(), resident.getHouseNumber())
+                        : claimSpecificSlot(slotId, 1, ParkingService.TOTAL_RESIDENT_SLOTS);
+                if (claimed < 0) {
+                    throw new ParkingException(Reason.NO_FREE_SLOT, "There are no free resident slots.");
+                }
+                boolean inserted;
+                counters.beginUpdate();
+                try {
+                    inserted = insertClaimedSlot(parkingDAO, ParkingDAO.RESIDENT_TABLE, claimed, vehicleNumber);
+                    if (inserted) {
+                        counters.vehicleParked(claimed, resident.getWing());
+                    }
+                } finally {
+                    counters.endUpdate();
+                }
+                if (inserted) {
+                    plates.vehicleParked(vehicleNumber, claimed);
+                    EventJournal.getInstance().parked(vehicleNumber, claimed, residentId, resident.getWing());
+                    return new ParkResult(vehicleNumber, claimed, false);
+                }
+                if (slotId != null || attempt >= MAX_AUTO_ATTEMPTS) {
+                    throw new ParkingException(Reason.SLOT_TAKEN, "Slot " + claimed + " was just taken at another gate.");
+                }
+            }
+        } catch (SQLException e) {
+            throw databaseError("parking", e);
+        } finally {
+            DatabaseManager.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * Registers a guest vehicle under its host resident and parks it, in one transaction.
+     * @param slotId a specific guest slot, or null to take the lowest free guest slot.
+     */
+    public ParkResult parkGuest(Vehicle guestVehicle, Integer slotId) throws ParkingException {
+        String vehicleNumber = guestVehicle.getVehicleNumber();
+        Connection conn = null;
+        SlotOccupancy occupancy = null;
+        int claimed = -1; // Set once the row is inserted; released again unless the transaction commits.
+        boolean committed = false;
+        try {
+            conn = DatabaseManager.getConnection();
+            occupancy = SlotOccupancy.getInstance();
+            OccupancyCounters counters = OccupancyCounters.getInstance();
+            if (counters.getGuestPoolCount() >= ParkingService.TOTAL_SPARE_SLOTS) {
+                throw new ParkingException(Reason.NO_FREE_SLOT, "All guest parking slots are currently occupied.");
+            }
+            VehicleDAO vehicleDAO = new VehicleDAO(conn);
+            if (vehicleDAO.vehicleExists(vehicleNumber)) {
+                throw new ParkingException(Reason.VEHICLE_EXISTS, "Vehicle '" + vehicleNumber + "' is already registered in the system.");
+            }
+
+            TransactionManager.beginTransaction(conn);
+            vehicleDAO.addVehicle(guestVehicle);
+            ParkingDAO parkingDAO = new ParkingDAO(conn);
+            for (int attempt = 1; ; attempt++) {
+                int candidate = slotId == null
+                        ? SlotAllocator.claimGuestSlot(ParkingService.SPARE_START_SLOT)
+                        : claimSpecificSlot(slotId, ParkingService.SPARE_START_SLOT, ParkingService.SPARE_END_SLOT);
+                if (candidate < 0) {
+                    throw new ParkingException(Reason.NO_FREE_SLOT, "All guest parking slots are currently occupied.");
+                }
+                if (insertClaimedSlot(parkingDAO, ParkingDAO.GUEST_TABLE, candidate, vehicleNumber)) {
+                    claimed = candidate;
+                    break;
+                }
+                if (slotId != null || attempt >= MAX_AUTO_ATTEMPTS) {
+                    throw new ParkingException(Reason.SLOT_TAKEN, "Slot " + candidate + " was just taken at another gate.");
+                }
+            }
+            counters.beginUpdate();
+            try {
+                TransactionManager.commitTransaction(conn);
+                committed = true;
+                counters.vehicleParked(claimed, null);
+            } finally {
+                counters.endUpdate();
+            }
+            PlateDirectory plates = PlateDirectory.getInstance();
+            plates.vehicleRegistered(vehicleNumber, guestVehicle.getResidentId());
+            plates.vehicleParked(vehicleNumber, claimed);
+            ExpiryScheduler.getInstance().guestParked(vehicleNumber, claimed, System.currentTimeMillis());
+            EventJournal.getInstance().parked(vehicleNumber, claimed, guestVehicle.getResidentId(), null);
+            return new ParkResult(vehicleNumber, claimed, true);
+        } catch (SQLException e) {
+            throw databaseError("guest parking", e);
+        } finally {
+            if (!committed) {
+                rollbackIfOpen(conn);
+                if (claimed > 0) {
+                    occupancy.release(claimed);
+                }
+            }
+            TransactionManager.endTransaction(conn);
+            DatabaseManager.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * Removes a parked vehicle, archives the stay in parking_records and frees its slot.
+     * Guest vehicles are also removed from the vehicle table, as they were only registered for the visit.
+     */
+    public UnparkResult unpark(String vehicleNumber) throws ParkingException {
+        // archiveAndRemove sends its statements as one group, which needs a multi-statement connection.
+        try (Connection conn = DatabaseManager.getMultiStatementConnection()) {
+            PlateDirectory plates = PlateDirectory.getInstance();
+            ParkingDAO parkingDAO = new ParkingDAO(conn);
+            int slotId = findParkedSlot(plates, parkingDAO, vehicleNumber);
+            if (slotId < 0) {
+                if (plates.ownerOf(vehicleNumber) == null && !new VehicleDAO(conn).vehicleExists(vehicleNumber)) {
+                    throw new ParkingException(Reason.VEHICLE_NOT_FOUND, "Vehicle '" + vehicleNumber + "' is not registered.");
+                }
+                throw new ParkingException(Reason.NOT_PARKED, "Vehicle '" + vehicleNumber + "' is not parked.");
+            }
+            boolean guest = slotId >= ParkingService.SPARE_START_SLOT;
+            String table = ParkingDAO.tableForSlot(slotId, ParkingService.SPARE_START_SLOT);
+
+            // One round trip archives the stay, removes the parking row (and a guest's vehicle row) and reads back the charge.
+            OccupancyCounters counters = OccupancyCounters.getInstance();
+            ParkingDAO.ArchivedStay stay;
+            counters.beginUpdate();
+            try {
+                stay = parkingDAO.archiveAndRemove(table, vehicleNumber, guest);
+                if (stay != null) {
+                    counters.vehicleLeft(stay.slotId, stay.ownerWing);
+                }
+            } finally {
+                counters.endUpdate();
+            }
+            if (stay == null) {
+                plates.vehicleUnparked(vehicleNumber); // un-parked at another gate
+                throw new ParkingException(Reason.NOT_PARKED, "Vehicle '" + vehicleNumber + "' is no longer parked.");
+            }
+
+            // A guest slot stays marked occupied until the dispatcher below has parked the next
+            // waiting guest in it or released it.
+            if (!guest) {
+                SlotOccupancy.getInstance().release(stay.slotId);
+            }
+            String ownerId = plates.ownerOf(vehicleNumber);
+            if (guest) {
+                plates.vehicleRemoved(vehicleNumber);
+            } else {
+                plates.vehicleUnparked(vehicleNumber);
+            }
+            // Journaled after the in-memory update, so a state snapshot either has the change or replays it.
+            EventJournal.getInstance().unparked(vehicleNumber, stay.slotId, ownerId, guest ? null : stay.ownerWing, stay.timeIn);
+            WaitingListEntry dispatched = guest ? WaitlistDispatcher.getInstance().onGuestSlotFreed(stay.slotId) : null;
+            return new UnparkResult(vehicleNumber, stay.slotId, guest, stay.timeIn, guest ? stay.charge : null, dispatched);
+        } catch (SQLException e) {
+            throw databaseError("unparking", e);
+        }
+    }
+
+    /**
+     * Puts a guest vehicle on the waiting list for a guest slot.
+     * @return the waiting list entry id.
+     */
+    public int enqueueGuest(Vehicle guestVehicle) throws ParkingException {
+        try {
+            GuestWaitingList waitingList = GuestWaitingList.getInstance();
+            if (WAITING_LIST_LIMIT > 0 && waitingList.size() >= WAITING_LIST_LIMIT) {
+                throw new ParkingException(Reason.WAITING_LIST_FULL, "The waiting list is full.");
+            }
+            int waitlistId = waitingList.enqueue(guestVehicle).getWaitlistId();
+            // A guest slot may have freed up since the caller found them all taken.
+            WaitlistDispatcher.getInstance().fillFreeSlots();
+            return waitlistId;
+        } catch (SQLException e) {
+            throw databaseError("adding to the waiting list", e);
+        }
+    }
+
+    /**
+     * Takes an entry off the guest waiting list, wherever it is in the queue.
+     * @return false if there was no such entry.
+     */
+    public boolean cancelWaitingGuest(int waitlistId) throws ParkingException {
+        try {
+            return GuestWaitingList.getInstance().cancel(waitlistId);
+        } catch (SQLException e) {
+            throw databaseError("cancelling the waiting list entry", e);
+        }
+    }
+
+    public Availability availability() throws ParkingException {
+        try {
+            OccupancyCounters counters = OccupancyCounters.getInstance();
+            return new Availability(counters.getWingCount("A"), counters.getWingCount("B"),
+                    counters.getWingCount("C"), counters.getGuestPoolCount());
+        } catch (SQLException e) {
+            throw databaseError("reading availability", e);
+        }
+    }
+
+    /**
+     * The resident's registered vehicles that are not parked right now.
+     */
+    public List<Vehicle> getParkableVehicles(String residentId) throws ParkingException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            PlateDirectory plates = PlateDirectory.getInstance();
+            ParkingDAO parkingDAO = new ParkingDAO(conn);
+            List<Vehicle> parkable = new ArrayList<>();
+            for (Vehicle vehicle : new VehicleDAO(conn).getVehiclesByResidentId(residentId)) {
+                if (findParkedSlot(plates, parkingDAO, vehicle.getVehicleNumber()) < 0) {
+                    parkable.add(vehicle);
+                }
+            }
+            return parkable;
+        } catch (SQLException e) {
+            throw databaseError("listing vehicles", e);
+        }
+    }
+
+    public boolean isVehicleRegistered(String vehicleNumber) throws ParkingException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return new VehicleDAO(conn).vehicleExists(vehicleNumber);
+        } catch (SQLException e) {
+            throw databaseError("checking the vehicle", e);
+        }
+    }
+
+    // Answered from the plate directory; only plates it cannot encode cost a query.
+    // The directory only sees parks made by this process, so a miss is confirmed with the database
+    // (the car may have been parked at another gate) and the directory catches up when they disagree.
+    private static int findParkedSlot(PlateDirectory plates, ParkingDAO parkingDAO, String vehicleNumber) throws SQLException {
+        int slotId = plates.parkedSlotOf(vehicleNumber);
+        if (slotId >= 0) {
+            return slotId;
+        }
+        int actual = parkingDAO.findParkedSlot(vehicleNumber);
+        if (actual >= 0 && slotId == PlateDirectory.NOT_PARKED) {
+            plates.vehicleParked(vehicleNumber, actual);
+        }
+        return actual;
+    }
+
+    private static int claimSpecificSlot(int slotId, int firstSlot, int lastSlot) throws SQLException, ParkingException {
+        if (slotId < firstSlot || slotId > lastSlot) {
+            throw new ParkingException(Reason.INVALID_SLOT, "Slot " + slotId + " is outside " + firstSlot + ".." + lastSlot + ".");
+        }
+        if (!SlotOccupancy.getInstance().tryClaim(slotId)) {
+            throw new ParkingException(Reason.SLOT_TAKEN, "Slot " + slotId + " is already occupied.");
+        }
+        return slotId;
+    }
+
+    // Inserts the parking row for a slot this process has already claimed.
+    // Returns false if the table's unique Slot_id says another terminal got there first; the slot then
+    // stays marked occupied, as it is, and the occupancy reconciler clears it once that car leaves.
+    // On any other failure the claim is released and the error re-thrown.
+    static boolean insertClaimedSlot(ParkingDAO parkingDAO, String table, int slotId, String vehicleNumber) throws SQLException {
+        try {
+            if (parkingDAO.insertParkedVehicle(table, slotId, vehicleNumber)) {
+                return true;
+            }
+            throw new SQLException("Could not park vehicle " + vehicleNumber + " in slot " + slotId + ".");
+        } catch (SQLIntegrityConstraintViolationException e) {
+            if (parkingDAO.isSlotTaken(table, slotId)) {
+                return false;
+            }
+            SlotOccupancy.getInstance().release(slotId);
+            throw e; // The clash was on something else, e.g. the vehicle is already parked.
+        } catch (SQLException e) {
+            SlotOccupancy.getInstance().release(slotId);
+            throw e;
+        }
+    }
+
+    static void rollbackIfOpen(Connection conn) {
+        try {
+            if (conn != null && !conn.getAutoCommit()) {
+                TransactionManager.rollbackTransaction(conn);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to check transaction state: " + e.getMessage());
+        }
+    }
+
+    private static int wingCapacity(String wing) {
+        return switch (wing) {
+            case "A" -> ParkingService.WING_A_CAPACITY;
+            case "B" -> ParkingService.WING_B_CAPACITY;
+            case "C" -> ParkingService.WING_C_CAPACITY;
+            default -> 0;
+        };
+    }
+
+    private static ParkingException databaseError(String operation, SQLException e) {
+        return new ParkingException(Reason.DATABASE_ERROR, "Database error during " + operation + ": " + e.getMessage(), e);
+    }
+}
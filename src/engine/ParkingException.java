@@ -0,0 +1,41 @@
+package engine;
+
+/**
+ * A parking operation that could not be completed. The reason says why, so callers can react
+ * (offer another slot, put a guest on the waiting list, ...) without parsing messages.
+ */
+public class ParkingException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        RESIDENT_NOT_FOUND,
+        VEHICLE_NOT_FOUND,
+        NOT_OWNER,
+        VEHICLE_EXISTS,
+        ALREADY_PARKED,
+        NOT_PARKED,
+        WING_FULL,
+        NO_FREE_SLOT,
+        INVALID_SLOT,
+        SLOT_TAKEN,
+        WAITING_LIST_FULL,
+        DATABASE_ERROR
+    }
+
+    private final Reason reason;
+
+    public ParkingException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public ParkingException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,29 @@
+package engine;
+
+import model.WaitingListEntry;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Outcome of a successful unpark. The charge is only set for guest vehicles, and may be null
+ * if the database did not compute one. If a guest slot was freed and someone was waiting,
+ * dispatched is the waiting guest that was parked in it.
+ */
+public class UnparkResult {
+    public final String vehicleNumber;
+    public final int slotId;
+    public final boolean guest;
+    public final Timestamp timeIn;
+    public final BigDecimal charge;
+    public final WaitingListEntry dispatched;
+
+    public UnparkResult(String vehicleNumber, int slotId, boolean guest, Timestamp timeIn, BigDecimal charge, WaitingListEntry dispatched) {
+        this.vehicleNumber = vehicleNumber;
+        this.slotId = slotId;
+        this.guest = guest;
+        this.timeIn = timeIn;
+        this.charge = charge;
+        this.dispatched = dispatched;
+    }
+}
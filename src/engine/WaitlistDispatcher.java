@@ -0,0 +1,238 @@
+package engine;
+
+import dao.ParkingDAO;
+import dao.VehicleDAO;
+import database.DatabaseManager;
+import database.TransactionManager;
+import journal.EventJournal;
+import model.Vehicle;
+import model.WaitingListEntry;
+import services.ExpiryScheduler;
+import services.GuestWaitingList;
+import services.OccupancyCounters;
+import services.ParkingService;
+import services.PlateDirectory;
+import services.SlotAllocator;
+import services.SlotOccupancy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parks the next waiting guest as soon as a guest slot is freed, so guest slots never sit idle
+ * while someone is on the waiting list. Called by whatever frees a guest slot, right after that
+ * change is committed and while the slot is still marked occupied in SlotOccupancy: the slot is
+ * handed straight over, so no other terminal can take it between the unpark and the dispatch.
+ *
+ * One short transaction per dispatch deletes the waitlist row, registers the guest vehicle and
+ * inserts its spare_parked_vehicle row. If any step fails it is rolled back, the entries it took
+ * go back on the list and the slot is released. An entry whose row another process already
+ * removed, or whose plate has been registered since, is dropped and the next one tried.
+ */
+public final class WaitlistDispatcher {
+
+    private static final WaitlistDispatcher INSTANCE = new WaitlistDispatcher();
+
+    // Stale entries skipped per dispatch before giving up; each costs one DELETE.
+    private static final int MAX_SKIPPED = 10;
+
+    // A point-in-time copy of the dispatcher's counters.
+    public static final class Stats {
+        public final long dispatched;
+        public final long queueEmpty;
+        public final long failed;
+        public final long skippedStale;
+        public final double averageMillis;
+        public final double maxMillis;
+
+        Stats(long dispatched, long queueEmpty, long failed, long skippedStale, double averageMillis, double maxMillis) {
+            this.dispatched = dispatched;
+            this.queueEmpty = queueEmpty;
+            this.failed = failed;
+            this.skippedStale = skippedStale;
+            this.averageMillis = averageMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("dispatched=%d, queueEmpty=%d, failed=%d, skippedStale=%d, avg=%.2fms, max=%.2fms",
+                    dispatched, queueEmpty, failed, skippedStale, averageMillis, maxMillis);
+        }
+    }
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder queueEmpty = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skippedStale = new LongAdder();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private WaitlistDispatcher() {
+    }
+
+    public static WaitlistDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A guest slot was just freed in the database. The caller has not released it in
+     * SlotOccupancy; this parks the next waiting guest in it, or releases it if nobody is waiting
+     * or the dispatch fails. Never throws: a failed dispatch leaves the guest on the list.
+     * @return the entry that was parked there, or null.
+     */
+    public WaitingListEntry onGuestSlotFreed(int slotId) {
+        long start = System.nanoTime();
+        try {
+            // Already loaded, as the slot was taken through it. If it were not, a load would read
+            // the slot as free from the database and there would be nothing to release.
+            SlotOccupancy occupancy = SlotOccupancy.getInstance();
+            boolean handedOver = false;
+            try {
+                if (GuestWaitingList.getInstance().isEmpty()) {
+                    queueEmpty.increment();
+                    return null;
+                }
+                handedOver = true; // from here dispatchInto parks someone in the slot or releases it
+                return dispatchInto(slotId, start);
+            } finally {
+                if (!handedOver) {
+                    occupancy.release(slotId);
+                }
+            }
+        } catch (SQLException e) {
+            failed.increment();
+            System.err.println("Waitlist dispatch failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parks waiting guests in any free guest slots, e.g. after guests were queued while a slot
+     * happened to free up. Stops when the list or the free slots run out.
+     * @return how many guests were parked.
+     */
+    public int fillFreeSlots() {
+        int parked = 0;
+        try {
+            GuestWaitingList waitingList = GuestWaitingList.getInstance();
+            while (!waitingList.isEmpty()) {
+                long start = System.nanoTime();
+                int slotId = SlotAllocator.claimGuestSlot(ParkingService.SPARE_START_SLOT);
+                if (slotId < 0 || dispatchInto(slotId, start) == null) {
+                    break;
+                }
+                parked++;
+            }
+        } catch (SQLException e) {
+            failed.increment();
+            System.err.println("Waitlist dispatch failed: " + e.getMessage());
+        }
+        return parked;
+    }
+
+    public Stats getStats() {
+        long count = dispatched.sum();
+        double average = count == 0 ? 0 : totalNanos.get() / 1_000_000.0 / count;
+        return new Stats(count, queueEmpty.sum(), failed.sum(), skippedStale.sum(), average, maxNanos.get() / 1_000_000.0);
+    }
+
+    // The slot is claimed by the caller; it is released again unless a guest ends up parked in it.
+    private WaitingListEntry dispatchInto(int slotId, long startNanos) throws SQLException {
+        GuestWaitingList waitingList = GuestWaitingList.getInstance();
+        OccupancyCounters counters = OccupancyCounters.getInstance();
+        Connection conn = null;
+        WaitingListEntry entry = null;
+        // Stale entries whose row this transaction deleted. A rollback brings the rows back, so they
+        // go back on the list too.
+        List<WaitingListEntry> dropped = new ArrayList<>();
+        boolean committed = false;
+        boolean holdingSlot = true; // whether a failure here must release the slot
+        try {
+            conn = DatabaseManager.getConnection();
+            TransactionManager.beginTransaction(conn);
+            ParkingDAO parkingDAO = new ParkingDAO(conn);
+            VehicleDAO vehicleDAO = new VehicleDAO(conn);
+            for (int skipped = 0; ; skipped++) {
+                entry = waitingList.takeHead();
+                if (entry == null) {
+                    queueEmpty.increment();
+                    break;
+                }
+                Vehicle guest = entry.getVehicle();
+                if (parkingDAO.removeFromWaitingList(entry.getWaitlistId()) == 1) {
+                    if (!vehicleDAO.vehicleExists(guest.getVehicleNumber())) {
+                        break;
+                    }
+                    dropped.add(entry); // the plate was registered some other way
+                }
+                // Served or cancelled elsewhere, or its plate is taken: drop it.
+                skippedStale.increment();
+                entry = null;
+                if (skipped >= MAX_SKIPPED) {
+                    break;
+                }
+            }
+            if (entry != null) {
+                vehicleDAO.addVehicle(entry.getVehicle());
+                holdingSlot = false; // stays false if the insert throws: it has released the slot then
+                holdingSlot = ParkingEngine.insertClaimedSlot(parkingDAO, ParkingDAO.GUEST_TABLE, slotId, entry.getVehicle().getVehicleNumber());
+                if (!holdingSlot) {
+                    return null; // Another terminal parked there; the slot stays marked occupied.
+                }
+            }
+            counters.beginUpdate();
+            try {
+                TransactionManager.commitTransaction(conn);
+                committed = true;
+                if (entry != null) {
+                    counters.vehicleParked(slotId, null);
+                }
+            } finally {
+                counters.endUpdate();
+            }
+        } finally {
+            if (!committed) {
+                ParkingEngine.rollbackIfOpen(conn);
+                if (entry != null) {
+                    failed.increment();
+                    waitingList.restore(entry);
+                }
+                for (WaitingListEntry stale : dropped) {
+                    waitingList.restore(stale);
+                }
+                if (holdingSlot) {
+                    SlotOccupancy.getInstance().release(slotId);
+                }
+            }
+            TransactionManager.endTransaction(conn);
+            DatabaseManager.releaseConnection(conn);
+        }
+
+        EventJournal journal = EventJournal.getInstance();
+        for (WaitingListEntry stale : dropped) {
+            journal.dequeued(stale);
+        }
+        if (entry == null) {
+            SlotOccupancy.getInstance().release(slotId);
+            return null;
+        }
+        String vehicleNumber = entry.getVehicle().getVehicleNumber();
+        PlateDirectory plates = PlateDirectory.getInstance();
+        plates.vehicleRegistered(vehicleNumber, entry.getVehicle().getResidentId());
+        plates.vehicleParked(vehicleNumber, slotId);
+        ExpiryScheduler.getInstance().guestParked(vehicleNumber, slotId, System.currentTimeMillis());
+        journal.dequeued(entry);
+        journal.parked(vehicleNumber, slotId, entry.getVehicle().getResidentId(), null);
+
+        long elapsed = System.nanoTime() - startNanos;
+        dispatched.increment();
+        totalNanos.addAndGet(elapsed);
+        maxNanos.accumulateAndGet(elapsed, Math::max);
+        return entry;
+    }
+}
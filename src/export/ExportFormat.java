@@ -0,0 +1,140 @@
+package export;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Output formats for the parking history export. The gzip variants write the same text through
+ * a GZIP stream. Each row is formatted into a caller-supplied StringBuilder, so the exporter can
+ * reuse one buffer per thread.
+ */
+public enum ExportFormat {
+    CSV("csv", false),
+    JSON_LINES("jsonl", false),
+    CSV_GZIP("csv.gz", true),
+    JSON_LINES_GZIP("jsonl.gz", true);
+
+    // Columns of the export query, in output order.
+    static final String[] COLUMNS = {"record_id", "slot_id", "vehicle_number", "resident_id", "first_name", "last_name",
+            "wing", "house_number", "vehicle_brand", "vehicle_type", "time_in", "time_out", "total_hours", "charge_amount"};
+
+    private final String extension;
+    private final boolean gzip;
+
+    ExportFormat(String extension, boolean gzip) {
+        this.extension = extension;
+        this.gzip = gzip;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    private boolean isCsv() {
+        return this == CSV || this == CSV_GZIP;
+    }
+
+    /**
+     * The first line of the file, or an empty string if the format has none.
+     */
+    String header() {
+        return isCsv() ? String.join(",", COLUMNS) + "\n" : "";
+    }
+
+    /**
+     * Appends the current row of a result set selected with {@link #COLUMNS}, newline included.
+     */
+    void appendRow(StringBuilder out, ResultSet rs) throws SQLException {
+        Object[] values = {
+                rs.getLong(1), rs.getInt(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+                rs.getString(7), rs.getObject(8) == null ? null : rs.getInt(8), rs.getString(9), rs.getString(10),
+                rs.getTimestamp(11), rs.getTimestamp(12), rs.getBigDecimal(13), rs.getBigDecimal(14)
+        };
+        if (isCsv()) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendCsv(out, values[i]);
+            }
+        } else {
+            out.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append('"').append(COLUMNS[i]).append("\":");
+                appendJson(out, values[i]);
+            }
+            out.append('}');
+        }
+        out.append('\n');
+    }
+
+    // Empty for null; quoted only when the value contains a comma, quote or line break.
+    private static void appendCsv(StringBuilder out, Object value) {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(text);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    // Numbers are written bare, everything else (including timestamps) as JSON strings.
+    private static void appendJson(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        if (value instanceof BigDecimal) {
+            out.append(((BigDecimal) value).toPlainString());
+            return;
+        }
+        if (value instanceof Number) {
+            out.append(value);
+            return;
+        }
+        String text = value.toString();
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
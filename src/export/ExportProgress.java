@@ -0,0 +1,9 @@
+package export;
+
+/**
+ * Receives progress updates from a running export, at most about once per second.
+ */
+@FunctionalInterface
+public interface ExportProgress {
+    void onProgress(long rowsWritten, double rowsPerSecond);
+}
@@ -0,0 +1,29 @@
+package export;
+
+import java.nio.file.Path;
+
+/**
+ * What a finished export wrote.
+ */
+public class ExportStats {
+    public final Path file;
+    public final long rows;
+    public final long bytes;
+    public final long elapsedMillis;
+
+    public ExportStats(Path file, long rows, long bytes, long elapsedMillis) {
+        this.file = file;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double rowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d rows, %,d bytes in %.1f s (%,.0f rows/sec)", rows, bytes, elapsedMillis / 1000.0, rowsPerSecond());
+    }
+}
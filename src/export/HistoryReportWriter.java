@@ -0,0 +1,126 @@
+package export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Writes the fixed-width parking history report while it reads parking_records.
+ * The query runs forward-only with a server-side cursor (useCursorFetch), so only FETCH_SIZE rows
+ * are in memory at a time, and each row is formatted into one reused StringBuilder and handed
+ * to a buffered writer on a FileChannel. Memory use stays flat however long the history is.
+ */
+public class HistoryReportWriter {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+
+    private static final String QUERY = "SELECT pr.Slot_id, pr.vehicle_number, pr.vehicle_brand, pr.vehicle_type, " +
+            "pr.time_in, pr.time_out, pr.total_hours, pr.charge_amount, r.first_name, r.last_name " +
+            "FROM parking_records pr LEFT JOIN residents r ON pr.resident_id = r.resident_id ORDER BY pr.time_out DESC";
+
+    // Column widths, in the order of the header.
+    private static final int[] WIDTHS = {4, 20, 8, 15, 12, 12, 10, 22, 22, 10, 12};
+    private static final String[] HEADERS = {"Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type",
+            "Park Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)"};
+
+    private final int lastResidentSlot;
+
+    /**
+     * @param lastResidentSlot slots above this are reported as "Guest".
+     */
+    public HistoryReportWriter(int lastResidentSlot) {
+        this.lastResidentSlot = lastResidentSlot;
+    }
+
+    public ExportStats write(Connection connection, Path file, ExportProgress progress) throws SQLException, IOException {
+        long started = System.nanoTime();
+        long rows = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+             PreparedStatement ps = connection.prepareStatement(QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            StringBuilder line = new StringBuilder(256);
+            for (int i = 0; i < HEADERS.length; i++) {
+                appendCell(line, i, HEADERS[i]);
+            }
+            int width = line.length();
+            line.append('\n');
+            for (int i = 0; i < width; i++) {
+                line.append('-');
+            }
+            line.append('\n');
+            out.append(line);
+
+            ps.setFetchSize(FETCH_SIZE);
+            long lastReport = started;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    line.setLength(0);
+                    String firstName = rs.getString("first_name");
+                    int slotId = rs.getInt("Slot_id");
+                    appendCell(line, 0, Long.toString(rows));
+                    appendCell(line, 1, firstName != null ? firstName + " " + rs.getString("last_name") : "N/A");
+                    appendCell(line, 2, Integer.toString(slotId));
+                    appendCell(line, 3, rs.getString("vehicle_number"));
+                    appendCell(line, 4, rs.getString("vehicle_brand"));
+                    appendCell(line, 5, rs.getString("vehicle_type"));
+                    appendCell(line, 6, slotId > lastResidentSlot ? "Guest" : "Resident");
+                    appendCell(line, 7, text(rs.getTimestamp("time_in")));
+                    appendCell(line, 8, text(rs.getTimestamp("time_out")));
+                    appendCell(line, 9, text(rs.getBigDecimal("total_hours")));
+                    appendCell(line, 10, text(rs.getBigDecimal("charge_amount")));
+                    line.append('\n');
+                    out.append(line);
+
+                    long now = System.nanoTime();
+                    if (progress != null && now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        progress.onProgress(rows, rows * 1e9 / (now - started));
+                        lastReport = now;
+                    }
+                }
+            }
+            out.flush();
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            return new ExportStats(file, rows, channel.size(), elapsedMillis);
+        }
+    }
+
+    // Same layout as before: each cell padded or cut to its width, " | " between cells.
+    private static void appendCell(StringBuilder line, int column, String value) {
+        if (column > 0) {
+            line.append(" | ");
+        }
+        String text = value != null ? value : "";
+        int width = WIDTHS[column];
+        if (text.length() >= width) {
+            line.append(text, 0, width);
+        } else {
+            line.append(text);
+            for (int i = text.length(); i < width; i++) {
+                line.append(' ');
+            }
+        }
+    }
+
+    private static String text(Timestamp value) {
+        return value != null ? value.toString() : "-";
+    }
+
+    private static String text(BigDecimal value) {
+        return value != null ? value.toString() : "-";
+    }
+}
@@ -0,0 +1,258 @@
+package export;
+
+import database.DatabaseManager;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports parking_records joined with residents as CSV or JSON Lines, optionally gzip-compressed.
+ *
+ * The record_id keyspace is split into ranges that are read in parallel, each on its own pooled
+ * connection with a forward-only cursor, into a temporary part file next to the target. The parts
+ * are appended to the target in record_id order as soon as each one is finished, using
+ * FileChannel.transferTo so the bytes are not copied through the heap. For the gzip formats every
+ * part is a complete gzip member; a file of concatenated members is a valid gzip file.
+ *
+ * Everything is written to a temporary file that replaces the target only once the export has
+ * finished, so a failed or interrupted export never leaves a truncated file under the real name.
+ *
+ * The ranges read on separate connections, so there is no single consistent snapshot. Records are
+ * only ever inserted, so the export covers everything up to the MAX(record_id) read at the start;
+ * stays archived while it runs are left for the next export. A stay whose archive transaction
+ * commits after that first read, with a lower record_id, can still be missed.
+ */
+public class ParallelHistoryExporter {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    // More ranges than threads, so one dense range does not leave the other threads idle at the end.
+    private static final int RANGES_PER_THREAD = 4;
+
+    private static final String BOUNDS_QUERY = "SELECT MIN(record_id), MAX(record_id) FROM parking_records";
+
+    private static final String RANGE_QUERY = "SELECT pr.record_id, pr.Slot_id, pr.vehicle_number, pr.resident_id, " +
+            "r.first_name, r.last_name, r.wing, r.house_number, pr.vehicle_brand, pr.vehicle_type, " +
+            "pr.time_in, pr.time_out, pr.total_hours, pr.charge_amount " +
+            "FROM parking_records pr LEFT JOIN residents r ON pr.resident_id = r.resident_id " +
+            "WHERE pr.record_id BETWEEN ? AND ? ORDER BY pr.record_id";
+
+    private final ExportFormat format;
+    private final int threads;
+
+    public ParallelHistoryExporter(ExportFormat format) {
+        this(format, defaultThreads());
+    }
+
+    public ParallelHistoryExporter(ExportFormat format, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.format = format;
+        this.threads = threads;
+    }
+
+    /**
+     * One reader per core, but always leaving one pooled connection free for the parking gates.
+     */
+    public static int defaultThreads() {
+        int poolSize = DatabaseManager.getPoolStats().maxSize;
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), poolSize - 1));
+    }
+
+    public ExportStats export(Path file, ExportProgress progress) throws SQLException, IOException {
+        long started = System.nanoTime();
+        long minId;
+        long maxId;
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(BOUNDS_QUERY)) {
+            rs.next();
+            minId = rs.getLong(1);
+            maxId = rs.wasNull() ? -1 : rs.getLong(2); // the export's upper bound, see the class comment
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        AtomicLong rows = new AtomicLong();
+        List<Path> parts = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ExportThreadFactory());
+        long bytes;
+        try {
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeHeader(target);
+
+                List<Future<Path>> pending = new ArrayList<>();
+                if (maxId >= minId) {
+                    long span = maxId - minId + 1;
+                    long rangeSize = Math.max(1, (span + threads * RANGES_PER_THREAD - 1) / (threads * RANGES_PER_THREAD));
+                    for (long from = minId; from <= maxId; from += rangeSize) {
+                        Path part = Files.createTempFile(dir, file.getFileName().toString(), ".part");
+                        parts.add(part);
+                        long to = Math.min(maxId, from + rangeSize - 1);
+                        long rangeFrom = from;
+                        pending.add(executor.submit(() -> writeRange(rangeFrom, to, part, rows)));
+                    }
+                }
+
+                // Stitch in order: part i is appended as soon as it and everything before it are done.
+                long lastReport = System.nanoTime();
+                for (Future<Path> future : pending) {
+                    Path part = null;
+                    while (part == null) {
+                        try {
+                            part = future.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException e) {
+                            // still running; fall through to the progress report
+                        }
+                        long now = System.nanoTime();
+                        if (progress != null && now - lastReport >= PROGRESS_INTERVAL_MILLIS * 1_000_000) {
+                            progress.onProgress(rows.get(), rows.get() * 1e9 / (now - started));
+                            lastReport = now;
+                        }
+                    }
+                    append(target, part);
+                    Files.delete(part);
+                }
+                target.force(false);
+                bytes = target.size();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Export interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Export failed: " + cause, cause);
+            } finally {
+                executor.shutdownNow();
+                for (Path part : parts) {
+                    Files.deleteIfExists(part);
+                }
+            }
+            moveIntoPlace(temp, file);
+        } finally {
+            Files.deleteIfExists(temp); // already gone after a successful move
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return new ExportStats(file, rows.get(), bytes, elapsedMillis);
+    }
+
+    // Replaces the target in one step where the file system allows it.
+    private static void moveIntoPlace(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Reads one record_id range into its own part file. Runs on an export thread.
+    private Path writeRange(long fromId, long toId, Path part, AtomicLong rows) throws SQLException, IOException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(RANGE_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             Writer out = openWriter(part)) {
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setLong(1, fromId);
+            ps.setLong(2, toId);
+            StringBuilder line = new StringBuilder(512);
+            long written = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    line.setLength(0);
+                    format.appendRow(line, rs);
+                    out.append(line);
+                    // Publish the count in batches so the readers do not contend on the counter.
+                    if (++written == FETCH_SIZE) {
+                        rows.addAndGet(written);
+                        written = 0;
+                    }
+                }
+            }
+            rows.addAndGet(written);
+        }
+        return part;
+    }
+
+    private Writer openWriter(Path part) throws IOException {
+        OutputStream stream = Channels.newOutputStream(FileChannel.open(part, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        if (format.isGzip()) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // The header goes in first, as its own gzip member when compressing.
+    private void writeHeader(FileChannel target) throws IOException {
+        String header = format.header();
+        if (header.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(format.isGzip() ? new GZIPOutputStream(bytes) : bytes, StandardCharsets.UTF_8)) {
+            out.write(header);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static void append(FileChannel target, Path part) throws IOException {
+        try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    // Daemon threads, so an abandoned export never keeps the console from exiting.
+    private static final class ExportThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "history-export-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,638 @@
+package journal;
+
+import ds.PlateCode;
+import model.WaitingListEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of park, unpark and guest waiting list events, kept next to the
+ * application in segment files (journal-&lt;first sequence&gt;.log). It is a local audit trail
+ * and lets occupancy be rebuilt without the database; MySQL stays the source of truth, so events
+ * are recorded right after the change they describe has committed.
+ *
+ * Each segment is a fixed-size file mapped with a {@link MappedByteBuffer}; appending is a copy
+ * into the mapping, with no system call. A flusher thread forces the written range to disk
+ * (group commit): every append that arrives while a force is running, or within
+ * GROUP_COMMIT_MICROS of the first waiting one, is made durable by the next single force. The
+ * record methods wait for that force unless aptparkx.journal.durable is false.
+ *
+ * Record layout (big-endian): int body length, int CRC32C of the body, then the body: long
+ * sequence, byte type, long event time, long plate code ({@link PlateCode}), int slot, int
+ * waitlist id, long since, byte wing, short-prefixed UTF-8 resident id (-1 for none) and, only
+ * when the plate has no code, the short-prefixed plate. The length is written last, and reading
+ * stops at a zero length or a bad checksum, so a record torn by a crash is never replayed.
+ *
+ * Only one process may write a journal directory: open() takes an exclusive lock on its
+ * LOCK_FILE and fails if another process holds it, and that terminal then runs without a journal.
+ */
+public final class EventJournal {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("aptparkx.journal.enabled", "true"));
+    private static final String DIRECTORY = System.getProperty("aptparkx.journal.dir", "journal");
+    private static final int SEGMENT_BYTES = Integer.getInteger("aptparkx.journal.segmentBytes", 64 << 20);
+    private static final long GROUP_COMMIT_MICROS = Long.getLong("aptparkx.journal.groupCommitMicros", 200L);
+    private static final boolean DURABLE = Boolean.parseBoolean(System.getProperty("aptparkx.journal.durable", "true"));
+
+    private static final int MAGIC = 0x41504A31; // "APJ1"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 16; // magic, version, first sequence
+    private static final int RECORD_HEADER_BYTES = 8;   // body length, checksum
+    private static final int MAX_STRING_BYTES = 255;
+    private static final int MAX_BODY_BYTES = 42 + 2 * (2 + MAX_STRING_BYTES);
+    private static final int RECOVERY_WINDOW_BYTES = 1 << 20;
+    private static final String LOCK_FILE = "journal.lock";
+
+    private static volatile EventJournal instance = null;
+
+    // A point-in-time copy of the journal's counters.
+    public static final class Stats {
+        public final boolean enabled;
+        public final long lastSequence;
+        public final long durableSequence;
+        public final long appended;
+        public final long groupCommits;
+        public final long bytesWritten;
+        public final int segmentsOpened;
+
+        Stats(boolean enabled, long lastSequence, long durableSequence, long appended, long groupCommits, long bytesWritten, int segmentsOpened) {
+            this.enabled = enabled;
+            this.lastSequence = lastSequence;
+            this.durableSequence = durableSequence;
+            this.appended = appended;
+            this.groupCommits = groupCommits;
+            this.bytesWritten = bytesWritten;
+            this.segmentsOpened = segmentsOpened;
+        }
+
+        // Average number of appends made durable by one force.
+        public double averageGroupSize() {
+            return groupCommits == 0 ? 0 : (double) appended / groupCommits;
+        }
+
+        @Override
+        public String toString() {
+            if (!enabled) {
+                return "disabled";
+            }
+            return String.format("last=%d, durable=%d, appended=%d, groupCommits=%d (avg %.1f per fsync), bytes=%d, segments=%d",
+                    lastSequence, durableSequence, appended, groupCommits, averageGroupSize(), bytesWritten, segmentsOpened);
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long firstSequence;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        private Segment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path dir, long firstSequence, int size) throws IOException {
+            Path path = dir.resolve(String.format("journal-%020d.log", firstSequence));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, firstSequence);
+            buffer.force(0, SEGMENT_HEADER_BYTES);
+            return new Segment(path, firstSequence, channel, buffer);
+        }
+
+        static Segment open(Path path, boolean writable) throws IOException {
+            FileChannel channel = writable
+                    ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ);
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < SEGMENT_HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException("Not a journal segment: " + path);
+            }
+            return new Segment(path, buffer.getLong(8), channel, buffer);
+        }
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long groupCommitNanos;
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_BODY_BYTES);
+    private final CRC32C checksum = new CRC32C();
+    private Thread flusher;
+    private FileChannel lockChannel; // holds the directory lock until close()
+
+    // Guarded by this.
+    private Segment current;
+    private int position;           // where the next record goes
+    private int flushedPosition;    // everything before this is on disk
+    private long lastSequence;
+    private long durableSequence;
+    private long appended;
+    private long groupCommits;
+    private long bytesWritten;
+    private int segmentsOpened;
+    private boolean closed;
+    private boolean failed;
+
+    private EventJournal(boolean enabled, Path dir, int segmentBytes, long groupCommitMicros) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.groupCommitNanos = groupCommitMicros * 1000;
+    }
+
+    /**
+     * The application's journal. Never throws: if the journal cannot be opened it is reported
+     * once and the returned journal ignores every record call.
+     */
+    public static EventJournal getInstance() {
+        EventJournal current = instance;
+        if (current == null) {
+            synchronized (EventJournal.class) {
+                current = instance;
+                if (current == null) {
+                    if (ENABLED) {
+                        try {
+                            current = open(Paths.get(DIRECTORY), SEGMENT_BYTES, GROUP_COMMIT_MICROS);
+                        } catch (IOException e) {
+                            System.err.println("Event journal disabled, could not open " + DIRECTORY + ": " + e.getMessage());
+                        }
+                    }
+                    if (current == null) {
+                        current = new EventJournal(false, null, 0, 0);
+                    }
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Flushes and closes the application's journal, if it was opened. Called on shutdown.
+     */
+    public static void shutdown() {
+        EventJournal current = instance;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Opens (or creates) the journal in dir and starts its flusher. The last segment is scanned
+     * to find where writing left off; a torn record at its end is discarded.
+     */
+    public static EventJournal open(Path dir, int segmentBytes, long groupCommitMicros) throws IOException {
+        if (segmentBytes < SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        Files.createDirectories(dir);
+        FileChannel lockChannel = lockDirectory(dir);
+        EventJournal journal = new EventJournal(true, dir, segmentBytes, groupCommitMicros);
+        journal.lockChannel = lockChannel;
+        try {
+            journal.recover();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        journal.flusher = new Thread(journal::flushLoop, "aptparkx-journal-flusher");
+        journal.flusher.setDaemon(true);
+        journal.flusher.start();
+        return journal;
+    }
+
+    // Two writers would both append to the last segment and overwrite each other's records.
+    private static FileChannel lockDirectory(Path dir) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // held by another journal in this JVM
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("the journal directory is in use by another process (" + dir.resolve(LOCK_FILE) + " is locked)");
+        }
+        return channel;
+    }
+
+    // Finds where writing left off in the last segment, or starts the first one.
+    private void recover() throws IOException {
+        List<Path> segments = listSegments(dir);
+        if (segments.isEmpty()) {
+            current = Segment.create(dir, 1, segmentBytes);
+            position = SEGMENT_HEADER_BYTES;
+        } else {
+            Segment last = Segment.open(segments.get(segments.size() - 1), true);
+            long[] end = scan(last, 0, null);
+            current = last;
+            position = (int) end[0];
+            lastSequence = end[1];
+            if (clearTail(last.buffer, position)) {
+                last.buffer.force();
+            }
+        }
+        flushedPosition = position;
+        durableSequence = lastSequence;
+        segmentsOpened = 1;
+    }
+
+    /**
+     * Reads every event in dir after afterSequence, oldest first. Reading stops at the end of what
+     * was written or at the first damaged record.
+     * @return the sequence of the last event read, or afterSequence if there were none.
+     */
+    public static long replay(Path dir, long afterSequence, Consumer<JournalEvent> consumer) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return afterSequence;
+        }
+        List<Path> segments = listSegments(dir);
+        long last = afterSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = Segment.open(segments.get(i), false);
+            try {
+                boolean laterSegmentCovers = i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1;
+                if (!laterSegmentCovers) {
+                    long segmentLast = scan(segment, afterSequence, consumer)[1];
+                    last = Math.max(last, segmentLast);
+                }
+            } finally {
+                segment.channel.close();
+            }
+        }
+        return last;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays this journal's events after afterSequence; see {@link #replay(Path, long, Consumer)}.
+     * A disabled journal has none.
+     */
+    public long replayAfter(long afterSequence, Consumer<JournalEvent> consumer) throws IOException {
+        return enabled ? replay(dir, afterSequence, consumer) : afterSequence;
+    }
+
+    // Sequence of the last event appended, or 0 if none (or disabled).
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    public void parked(String vehicleNumber, int slotId, String residentId, String wing) {
+        record(JournalEvent.Type.PARK, vehicleNumber, slotId, 0, residentId, wing, 0);
+    }
+
+    public void unparked(String vehicleNumber, int slotId, String residentId, String wing, Timestamp timeIn) {
+        record(JournalEvent.Type.UNPARK, vehicleNumber, slotId, 0, residentId, wing, timeIn == null ? 0 : timeIn.getTime());
+    }
+
+    public void registered(String vehicleNumber, String residentId) {
+        record(JournalEvent.Type.REGISTER, vehicleNumber, -1, 0, residentId, null, 0);
+    }
+
+    public void removed(String vehicleNumber, String residentId) {
+        record(JournalEvent.Type.REMOVE, vehicleNumber, -1, 0, residentId, null, 0);
+    }
+
+    public void enqueued(WaitingListEntry entry) {
+        recordWaitlist(JournalEvent.Type.ENQUEUE, entry);
+    }
+
+    public void dequeued(WaitingListEntry entry) {
+        recordWaitlist(JournalEvent.Type.DEQUEUE, entry);
+    }
+
+    /**
+     * Appends one event to the mapped segment, rolling to a new segment when it is full.
+     * Does not wait for it to reach the disk; see {@link #awaitDurable}.
+     * @return its sequence number, or 0 if the journal is disabled.
+     */
+    public synchronized long append(JournalEvent.Type type, String vehicleNumber, int slotId, int waitlistId,
+                                    String residentId, String wing, long sinceMillis) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        if (closed || failed) {
+            throw new IOException(closed ? "Journal is closed" : "Journal failed earlier");
+        }
+        long sequence = lastSequence + 1;
+        int bodyLength = encode(sequence, type, System.currentTimeMillis(), vehicleNumber, slotId, waitlistId, residentId, wing, sinceMillis);
+        int recordLength = RECORD_HEADER_BYTES + bodyLength;
+        if (position + recordLength > current.buffer.capacity()) {
+            roll(sequence);
+        }
+        checksum.reset();
+        checksum.update(scratch.array(), 0, bodyLength);
+        MappedByteBuffer buffer = current.buffer;
+        ByteBuffer body = buffer.duplicate();
+        body.position(position + RECORD_HEADER_BYTES);
+        body.put(scratch.array(), 0, bodyLength);
+        buffer.putInt(position + 4, (int) checksum.getValue());
+        buffer.putInt(position, bodyLength);
+        position += recordLength;
+        lastSequence = sequence;
+        appended++;
+        bytesWritten += recordLength;
+        notifyAll(); // wakes the flusher
+        return sequence;
+    }
+
+    /**
+     * Blocks until the event with this sequence has been forced to disk.
+     * @throws IOException if the journal failed or was closed before that happened.
+     */
+    public synchronized void awaitDurable(long sequence) throws IOException {
+        boolean interrupted = false;
+        while (durableSequence < sequence && !failed && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durableSequence < sequence) {
+            throw new IOException("Journal " + (failed ? "failed" : "closed") + " before event " + sequence + " was written");
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(enabled, lastSequence, durableSequence, appended, groupCommits, bytesWritten, segmentsOpened);
+    }
+
+    /**
+     * Forces everything appended so far to disk and closes the current segment.
+     */
+    public void close() {
+        synchronized (this) {
+            if (!enabled || closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (!failed) {
+                    current.buffer.force();
+                    durableSequence = lastSequence;
+                }
+                current.channel.close();
+                lockChannel.close(); // releases the directory lock
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error closing the event journal: " + e.getMessage());
+            }
+            notifyAll();
+        }
+    }
+
+    // For the application's own events: a journal problem is reported but never fails the
+    // operation, which has already been committed to the database.
+    private void record(JournalEvent.Type type, String vehicleNumber, int slotId, int waitlistId, String residentId, String wing, long sinceMillis) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long sequence = append(type, vehicleNumber, slotId, waitlistId, residentId, wing, sinceMillis);
+            if (DURABLE) {
+                awaitDurable(sequence);
+            }
+        } catch (IOException e) {
+            boolean firstFailure;
+            synchronized (this) {
+                firstFailure = !failed;
+                failed = true;
+                notifyAll();
+            }
+            if (firstFailure) {
+                System.err.println("Event journal stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void recordWaitlist(JournalEvent.Type type, WaitingListEntry entry) {
+        Timestamp added = entry.getTimeAdded();
+        record(type, entry.getVehicle().getVehicleNumber(), -1, entry.getWaitlistId(), entry.getVehicle().getResidentId(),
+                null, added == null ? 0 : added.getTime());
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && !failed && durableSequence == lastSequence) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed || failed) {
+                    return;
+                }
+            }
+            if (groupCommitNanos > 0) {
+                LockSupport.parkNanos(groupCommitNanos); // let a few more appends join this force
+            }
+            Segment segment;
+            int from;
+            int to;
+            long target;
+            synchronized (this) {
+                segment = current;
+                from = flushedPosition;
+                to = position;
+                target = lastSequence;
+            }
+            try {
+                if (to > from) {
+                    segment.buffer.force(from, to - from);
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    failed = true;
+                    notifyAll();
+                }
+                System.err.println("Event journal stopped, could not write to disk: " + e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                if (segment == current) {
+                    flushedPosition = Math.max(flushedPosition, to);
+                }
+                durableSequence = Math.max(durableSequence, target);
+                groupCommits++;
+                notifyAll();
+            }
+        }
+    }
+
+    // Called with the lock held. The full segment is forced before the next one is started, so
+    // segments are always durable in order.
+    private void roll(long nextSequence) throws IOException {
+        current.buffer.force();
+        durableSequence = lastSequence;
+        groupCommits++;
+        current.channel.close();
+        current = Segment.create(dir, nextSequence, segmentBytes);
+        position = SEGMENT_HEADER_BYTES;
+        flushedPosition = SEGMENT_HEADER_BYTES;
+        segmentsOpened++;
+        notifyAll();
+    }
+
+    // Writes the record body into scratch. @return its length.
+    private int encode(long sequence, JournalEvent.Type type, long timeMillis, String vehicleNumber, int slotId, int waitlistId,
+                       String residentId, String wing, long sinceMillis) {
+        long plateCode = PlateCode.encode(vehicleNumber);
+        ByteBuffer out = scratch;
+        out.clear();
+        out.putLong(sequence);
+        out.put(type.code());
+        out.putLong(timeMillis);
+        out.putLong(plateCode);
+        out.putInt(slotId);
+        out.putInt(waitlistId);
+        out.putLong(sinceMillis);
+        out.put(wing == null || wing.isEmpty() ? 0 : (byte) wing.charAt(0));
+        putString(out, residentId);
+        if (plateCode == PlateCode.INVALID) {
+            putString(out, vehicleNumber);
+        }
+        return out.position();
+    }
+
+    // Zeroes whatever a crash left half-written after the last good record, so it can never be
+    // mistaken for a record later. Pages reach the disk in any order, so a tail may hold bytes
+    // past a zero word; anything not forced is at most a few group commits' worth, and
+    // RECOVERY_WINDOW_BYTES is far more than that. @return whether anything was cleared.
+    private static boolean clearTail(MappedByteBuffer buffer, int from) {
+        int end = (int) Math.min(buffer.capacity(), (long) from + RECOVERY_WINDOW_BYTES);
+        boolean cleared = false;
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                cleared = true;
+            }
+        }
+        return cleared;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING_BYTES);
+        out.putShort((short) length);
+        out.put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer in) {
+        short length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Walks a segment's records, handing those after afterSequence to consumer (if not null).
+     * @return {position after the last good record, sequence of the last good record}.
+     */
+    private static long[] scan(Segment segment, long afterSequence, Consumer<JournalEvent> consumer) {
+        ByteBuffer buffer = segment.buffer;
+        CRC32C crc = new CRC32C();
+        int position = SEGMENT_HEADER_BYTES;
+        long expected = segment.firstSequence;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > MAX_BODY_BYTES || position + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_BYTES).limit(position + RECORD_HEADER_BYTES + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4) || body.getLong(body.position()) != expected) {
+                break;
+            }
+            if (consumer != null && expected > afterSequence) {
+                consumer.accept(decode(body));
+            }
+            position += RECORD_HEADER_BYTES + length;
+            expected++;
+        }
+        return new long[]{position, expected - 1};
+    }
+
+    private static JournalEvent decode(ByteBuffer in) {
+        long sequence = in.getLong();
+        JournalEvent.Type type = JournalEvent.Type.of(in.get());
+        long timeMillis = in.getLong();
+        long plateCode = in.getLong();
+        int slotId = in.getInt();
+        int waitlistId = in.getInt();
+        long sinceMillis = in.getLong();
+        byte wing = in.get();
+        String residentId = getString(in);
+        String vehicleNumber = plateCode == PlateCode.INVALID ? getString(in) : PlateCode.decode(plateCode);
+        return new JournalEvent(sequence, type, timeMillis, vehicleNumber, slotId, waitlistId, residentId,
+                wing == 0 ? null : String.valueOf((char) wing), sinceMillis);
+    }
+
+    private static List<Path> listSegments(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "journal-*.log")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments); // zero-padded sequence numbers sort by name
+        return segments;
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+}
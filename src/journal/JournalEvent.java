@@ -0,0 +1,74 @@
+package journal;
+
+import java.sql.Timestamp;
+
+/**
+ * One state change as recorded in the {@link EventJournal}. Parking events carry the slot and
+ * have a waitlistId of 0; waiting list events carry the waitlist_id and have a slotId of -1;
+ * registration events carry neither.
+ */
+public final class JournalEvent {
+
+    public enum Type {
+        PARK,      // a vehicle took a slot (resident or guest)
+        UNPARK,    // a vehicle left its slot; since is its time_in
+        ENQUEUE,   // a guest joined the waiting list; since is its time_added
+        DEQUEUE,   // a guest left the waiting list (parked, cancelled or expired); since is its time_added
+        REGISTER,  // a resident's vehicle was registered to residentId
+        REMOVE;    // a vehicle was deleted (on its own or with its owner); it is no longer parked either
+
+        // Codes are the ordinals, as written in existing segments: only ever add types at the end.
+        private static final Type[] BY_CODE = values();
+
+        byte code() {
+            return (byte) ordinal();
+        }
+
+        static Type of(byte code) {
+            return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
+    }
+
+    public final long sequence;
+    public final Type type;
+    public final long timeMillis;
+    public final String vehicleNumber;
+    public final int slotId;
+    public final int waitlistId;
+    public final String residentId;   // the owner, or the host for a guest; may be null
+    public final String wing;         // the owner's wing for a resident slot, else null
+    public final long sinceMillis;    // 0 if unknown
+
+    public JournalEvent(long sequence, Type type, long timeMillis, String vehicleNumber, int slotId, int waitlistId,
+                        String residentId, String wing, long sinceMillis) {
+        this.sequence = sequence;
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.vehicleNumber = vehicleNumber;
+        this.slotId = slotId;
+        this.waitlistId = waitlistId;
+        this.residentId = residentId;
+        this.wing = wing;
+        this.sinceMillis = sinceMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('#').append(sequence).append(' ').append(new Timestamp(timeMillis)).append(' ').append(type)
+                .append(' ').append(vehicleNumber);
+        if (slotId >= 0) {
+            sb.append(" slot=").append(slotId);
+        }
+        if (waitlistId > 0) {
+            sb.append(" waitlist=").append(waitlistId);
+        }
+        if (residentId != null) {
+            sb.append(" resident=").append(residentId);
+        }
+        if (wing != null) {
+            sb.append(" wing=").append(wing);
+        }
+        return sb.toString();
+    }
+}
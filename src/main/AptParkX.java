@@ -1,6 +1,10 @@
 package main;
 
 import database.DatabaseManager;
+import journal.EventJournal;
+import services.ExpiryScheduler;
+import services.OccupancyCounters;
+import services.StateSnapshot;
 import ui.AdminUI;
 import ui.InputHandler;
 import ui.ResidentUI;
@@ -20,6 +24,14 @@ public final class AptParkX {
 
     public static void main(String[] args) {
         System.out.println("\n" + WELCOME_MESSAGE + "\n");
+        // Before anything loads the occupancy state, so a still-valid snapshot can stand in for it.
+        StateSnapshot.getInstance().warmStart();
+        StateSnapshot.getInstance().start();
+        try {
+            ExpiryScheduler.getInstance().start();
+        } catch (SQLException e) {
+            System.err.println("Could not start waiting list expiry and overstay checks: " + e.getMessage());
+        }
         boolean running = true;
 
         while (running) {
@@ -36,6 +48,10 @@ public final class AptParkX {
                         break;
                     case 3:
                         System.out.println(GOODBYE_MESSAGE);
+                        StateSnapshot.getInstance().shutdown(); // needs the journal and the database still open
+                        OccupancyCounters.shutdown();
+                        ExpiryScheduler.getInstance().shutdown();
+                        EventJournal.shutdown();
                         DatabaseManager.closeConnection(); // Gracefully close the database connection
                         running = false;
                         break;
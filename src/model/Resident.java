@@ -40,6 +40,18 @@ public class Resident {
     }
 
 
+    // Copy constructor, so cached residents can be handed out without sharing the mutable instance.
+    public Resident(Resident other) {
+        this(other.residentId, other.firstName, other.lastName, other.contactNumber, other.wing, other.houseNumber,
+                other.subscriptionTier, other.subscriptionCost, copyOf(other.subscriptionStartDate), copyOf(other.subscriptionValidUntil),
+                other.vehicleCount, other.username, other.password);
+    }
+
+    // java.sql.Date is mutable, so copies get their own.
+    private static Date copyOf(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
     // --- Existing Getters and Setters ---
     public String getResidentId() {
         return residentId;
@@ -0,0 +1,40 @@
+package model;
+
+import java.sql.Timestamp;
+
+// One row of guest_waiting_list: the guest vehicle, when it joined the list, and the host
+// resident's subscription tier (from residents), which decides its place in the queue.
+public class WaitingListEntry {
+
+    private final int waitlistId;
+    private final Vehicle vehicle;
+    private final Timestamp timeAdded;
+    private final String subscriptionTier;
+
+    public WaitingListEntry(int waitlistId, Vehicle vehicle, Timestamp timeAdded, String subscriptionTier) {
+        this.waitlistId = waitlistId;
+        this.vehicle = vehicle;
+        this.timeAdded = timeAdded;
+        this.subscriptionTier = subscriptionTier;
+    }
+
+    public int getWaitlistId() {
+        return waitlistId;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public Timestamp getTimeAdded() {
+        return timeAdded;
+    }
+
+    public String getSubscriptionTier() {
+        return subscriptionTier;
+    }
+
+    public WaitingListEntry withSubscriptionTier(String tier) {
+        return new WaitingListEntry(waitlistId, vehicle, timeAdded, tier);
+    }
+}
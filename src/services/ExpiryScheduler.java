@@ -0,0 +1,286 @@
+package services;
+
+import dao.ParkingDAO;
+import database.DatabaseManager;
+import ds.TimingWheel;
+import model.WaitingListEntry;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Expires guest waiting list entries that have waited too long and raises an alert for guests
+ * who have overstayed in a guest slot. Each entry and each parked guest gets one timer in a
+ * {@link TimingWheel}, so a tick costs the same with ten timers pending or a hundred thousand,
+ * and the tables are never polled: timers are seeded from time_added / time_in at start-up and
+ * added as guests are queued (GuestWaitingList) and parked (ParkingEngine, WaitlistDispatcher).
+ *
+ * Timers are not cancelled when an entry is served or a guest leaves. Instead a timer checks
+ * when it fires that its entry is still on the list, or its guest still in the same slot, using
+ * the in-memory GuestWaitingList and PlateDirectory, and does nothing otherwise.
+ */
+public final class ExpiryScheduler {
+
+    private static final long TICK_MILLIS = Long.getLong("aptparkx.expiry.tickMillis", 1000L);
+    private static final long WAITLIST_TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("aptparkx.waitlist.ttlMinutes", 240L));
+    private static final long GUEST_MAX_STAY_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("aptparkx.guest.maxStayHours", 24L));
+    private static final int MAX_ALERTS = Integer.getInteger("aptparkx.alerts.max", 200);
+
+    private static final ExpiryScheduler INSTANCE = new ExpiryScheduler();
+
+    public enum AlertType { WAITLIST_EXPIRED, GUEST_OVERSTAY }
+
+    public static final class Alert {
+        public final AlertType type;
+        public final String vehicleNumber;
+        public final int slotId;          // the guest's slot, or -1 for a waiting list entry
+        public final long raisedAtMillis;
+        public final String message;
+
+        Alert(AlertType type, String vehicleNumber, int slotId, long raisedAtMillis, String message) {
+            this.type = type;
+            this.vehicleNumber = vehicleNumber;
+            this.slotId = slotId;
+            this.raisedAtMillis = raisedAtMillis;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return new Timestamp(raisedAtMillis) + "  " + message;
+        }
+    }
+
+    // A point-in-time copy of the scheduler's counters.
+    public static final class Stats {
+        public final int pendingTimers;
+        public final long scheduled;
+        public final long fired;
+        public final long expiredEntries;
+        public final long overstays;
+
+        Stats(int pendingTimers, long scheduled, long fired, long expiredEntries, long overstays) {
+            this.pendingTimers = pendingTimers;
+            this.scheduled = scheduled;
+            this.fired = fired;
+            this.expiredEntries = expiredEntries;
+            this.overstays = overstays;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pending=%d, scheduled=%d, fired=%d, expiredEntries=%d, overstays=%d",
+                    pendingTimers, scheduled, fired, expiredEntries, overstays);
+        }
+    }
+
+    // What a timer is for. A waitlist timer has slotId -1.
+    private static final class Deadline {
+        final int waitlistId;
+        final String vehicleNumber;
+        final int slotId;
+        final long since;
+
+        Deadline(int waitlistId, String vehicleNumber, int slotId, long since) {
+            this.waitlistId = waitlistId;
+            this.vehicleNumber = vehicleNumber;
+            this.slotId = slotId;
+            this.since = since;
+        }
+    }
+
+    // The wheel and both timer maps are guarded by wheel. Fired timers are acted on outside it.
+    private final TimingWheel<Deadline> wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    private final Map<Integer, TimingWheel.Timer<Deadline>> waitlistTimers = new HashMap<>();
+    private final Map<String, TimingWheel.Timer<Deadline>> stayTimers = new HashMap<>();
+    private final ArrayDeque<Alert> alerts = new ArrayDeque<>(); // newest first, guarded by itself
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder expiredEntries = new LongAdder();
+    private final LongAdder overstays = new LongAdder();
+
+    private ScheduledExecutorService ticker;
+
+    private ExpiryScheduler() {
+    }
+
+    public static ExpiryScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Seeds the timers from the parked guests and the waiting list, then starts ticking.
+     * Called once at start-up; calling it again does nothing.
+     */
+    public synchronized void start() throws SQLException {
+        if (ticker != null) {
+            return;
+        }
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT vehicle_number, Slot_id, time_in FROM spare_parked_vehicle")) {
+            while (rs.next()) {
+                Timestamp timeIn = rs.getTimestamp("time_in");
+                guestParked(rs.getString("vehicle_number"), rs.getInt("Slot_id"), timeIn == null ? System.currentTimeMillis() : timeIn.getTime());
+            }
+        }
+        // Loading the list schedules its entries; if it was loaded already, they were scheduled then.
+        GuestWaitingList.getInstance();
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aptparkx-expiry-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Starts (or restarts) the entry's expiry clock from its time_added. Called by GuestWaitingList
+     * whenever an entry is added or loaded.
+     */
+    public void waitlistEntryAdded(WaitingListEntry entry) {
+        Timestamp added = entry.getTimeAdded();
+        long since = added == null ? System.currentTimeMillis() : added.getTime();
+        Deadline deadline = new Deadline(entry.getWaitlistId(), entry.getVehicle().getVehicleNumber(), -1, since);
+        synchronized (wheel) {
+            wheel.cancel(waitlistTimers.put(entry.getWaitlistId(), wheel.schedule(since + WAITLIST_TTL_MILLIS, deadline)));
+        }
+        scheduled.increment();
+    }
+
+    // Starts the guest's overstay clock. Called right after the guest's parking row is committed.
+    public void guestParked(String vehicleNumber, int slotId, long timeInMillis) {
+        Deadline deadline = new Deadline(0, vehicleNumber, slotId, timeInMillis);
+        synchronized (wheel) {
+            wheel.cancel(stayTimers.put(vehicleNumber, wheel.schedule(timeInMillis + GUEST_MAX_STAY_MILLIS, deadline)));
+        }
+        scheduled.increment();
+    }
+
+    /**
+     * Current alerts, newest first. Overstay alerts for guests who have since left are dropped.
+     */
+    public List<Alert> getAlerts() {
+        List<Alert> current = new ArrayList<>();
+        synchronized (alerts) {
+            Iterator<Alert> it = alerts.iterator();
+            while (it.hasNext()) {
+                Alert alert = it.next();
+                if (alert.type == AlertType.GUEST_OVERSTAY && !stillParked(alert.vehicleNumber, alert.slotId)) {
+                    it.remove();
+                } else {
+                    current.add(alert);
+                }
+            }
+        }
+        return current;
+    }
+
+    public void clearAlerts() {
+        synchronized (alerts) {
+            alerts.clear();
+        }
+    }
+
+    public Stats getStats() {
+        int pending;
+        synchronized (wheel) {
+            pending = wheel.size();
+        }
+        return new Stats(pending, scheduled.sum(), fired.sum(), expiredEntries.sum(), overstays.sum());
+    }
+
+    private void tick() {
+        List<Deadline> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advanceTo(System.currentTimeMillis(), due::add);
+            for (Deadline deadline : due) {
+                if (deadline.slotId < 0) {
+                    waitlistTimers.remove(deadline.waitlistId);
+                } else {
+                    stayTimers.remove(deadline.vehicleNumber);
+                }
+            }
+        }
+        for (Deadline deadline : due) {
+            fired.increment();
+            try {
+                if (deadline.slotId < 0) {
+                    expireEntry(deadline);
+                } else {
+                    checkOverstay(deadline);
+                }
+            } catch (Exception e) {
+                // Never let one bad timer stop the ticker thread.
+                System.err.println("Expiry check failed for " + deadline.vehicleNumber + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void expireEntry(Deadline deadline) throws SQLException {
+        GuestWaitingList waitingList = GuestWaitingList.getInstance();
+        if (!waitingList.contains(deadline.waitlistId) || !waitingList.cancel(deadline.waitlistId)) {
+            return; // Served or cancelled in the meantime.
+        }
+        expiredEntries.increment();
+        raise(new Alert(AlertType.WAITLIST_EXPIRED, deadline.vehicleNumber, -1, System.currentTimeMillis(),
+                String.format("Waiting list entry #%d for guest %s expired after %d minutes and was removed.",
+                        deadline.waitlistId, deadline.vehicleNumber, TimeUnit.MILLISECONDS.toMinutes(WAITLIST_TTL_MILLIS))));
+    }
+
+    private void checkOverstay(Deadline deadline) throws SQLException {
+        if (!stillParked(deadline.vehicleNumber, deadline.slotId)) {
+            return; // Left already.
+        }
+        overstays.increment();
+        raise(new Alert(AlertType.GUEST_OVERSTAY, deadline.vehicleNumber, deadline.slotId, System.currentTimeMillis(),
+                String.format("Guest %s in slot %d has overstayed: parked since %s (limit %d hours).",
+                        deadline.vehicleNumber, deadline.slotId, new Timestamp(deadline.since), TimeUnit.MILLISECONDS.toHours(GUEST_MAX_STAY_MILLIS))));
+    }
+
+    private void raise(Alert alert) {
+        synchronized (alerts) {
+            alerts.addFirst(alert);
+            while (alerts.size() > MAX_ALERTS) {
+                alerts.removeLast();
+            }
+        }
+    }
+
+    // Whether the guest is still in that slot. Only plates PlateDirectory cannot hold cost a query.
+    private static boolean stillParked(String vehicleNumber, int slotId) {
+        try {
+            int parkedSlot = PlateDirectory.getInstance().parkedSlotOf(vehicleNumber);
+            if (parkedSlot == PlateDirectory.UNKNOWN) {
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    parkedSlot = new ParkingDAO(conn).findParkedSlot(vehicleNumber);
+                }
+            }
+            return parkedSlot == slotId;
+        } catch (SQLException e) {
+            return true; // Keep the alert rather than lose it to a database hiccup.
+        }
+    }
+}
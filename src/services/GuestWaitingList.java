@@ -0,0 +1,270 @@
+package services;
+
+import dao.ParkingDAO;
+import dao.ResidentDAO;
+import database.DatabaseManager;
+import ds.IndexedHeap;
+import journal.EventJournal;
+import model.Resident;
+import model.Vehicle;
+import model.WaitingListEntry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The guest waiting list, shared by the whole process. Entries are served by the host
+ * resident's subscription tier (Platinum, then Gold, then Silver) and, within a tier, first come
+ * first served. They are kept in an {@link IndexedHeap} keyed by waitlist_id, so enqueue, dequeue, cancelling an entry and moving
+ * one after a tier change are all O(log n). The list grows as needed; nothing is ever dropped
+ * for lack of room. Whether a new guest may join at all is decided before enqueue, by
+ * ParkingEngine's optional admission limit (aptparkx.waitlist.maxSize, off by default).
+ *
+ * Changes made here write through to guest_waiting_list straight away, and several enqueues at
+ * once go out as one statement. Entries leave the list through the waitlist dispatcher
+ * ({@link #takeHead}, deleted in the transaction that parks them) or {@link #cancel}. The tier
+ * is not stored in guest_waiting_list; it is read from residents when rows are loaded, so the
+ * order survives restarts. Changes made by other
+ * processes are picked up by {@link #sync}, at most every POLL_INTERVAL_MILLIS when the list is
+ * read: one query returns the row count and the highest waitlist_id; only rows above the id
+ * already seen (the high-water mark) are fetched, and the list is reloaded in full only if the
+ * count shows rows were removed.
+ *
+ * Every entry added or loaded here is handed to {@link ExpiryScheduler}, which removes it once it
+ * has waited longer than the waiting list TTL.
+ */
+public final class GuestWaitingList {
+
+    private static final long POLL_INTERVAL_MILLIS = Long.getLong("aptparkx.waitlist.pollMillis", 1000L);
+
+    // Platinum before Gold before Silver; within a tier, oldest first, and waitlist_id breaks ties.
+    private static final Comparator<WaitingListEntry> DISPATCH_ORDER = Comparator
+            .comparingInt((WaitingListEntry entry) -> tierRank(entry.getSubscriptionTier()))
+            .thenComparingLong(entry -> entry.getTimeAdded() == null ? Long.MAX_VALUE : entry.getTimeAdded().getTime())
+            .thenComparingInt(WaitingListEntry::getWaitlistId);
+
+    private static volatile GuestWaitingList instance = null;
+
+    // Guarded by this.
+    private final IndexedHeap<WaitingListEntry> entries = new IndexedHeap<>(64, DISPATCH_ORDER, WaitingListEntry::getWaitlistId);
+    private int highWaterMark = 0;    // every waitlist_id up to this one has been read
+    private long lastSyncMillis = 0;
+
+    private GuestWaitingList() {
+    }
+
+    public static GuestWaitingList getInstance() throws SQLException {
+        GuestWaitingList current = instance;
+        if (current == null) {
+            synchronized (GuestWaitingList.class) {
+                current = instance;
+                if (current == null) {
+                    current = new GuestWaitingList();
+                    try (Connection conn = DatabaseManager.getConnection()) {
+                        current.reload(conn);
+                    }
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public synchronized void reload(Connection conn) throws SQLException {
+        entries.clear();
+        highWaterMark = 0;
+        addAll(new ParkingDAO(conn).getWaitingListAfter(0));
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Installs a list restored by {@link StateSnapshot} as the process-wide instance and brings
+     * it up to date: rows added since the snapshot are above its high-water mark, so only those
+     * are fetched, unless the row count shows some were removed.
+     * @param mark the table's current mark, as returned by ParkingDAO.getWaitingListMark.
+     * @return false, and nothing is changed, if the list has been loaded already.
+     */
+    static boolean install(List<WaitingListEntry> restored, int restoredHighWaterMark, Connection conn, int[] mark) throws SQLException {
+        synchronized (GuestWaitingList.class) {
+            if (instance != null) {
+                return false;
+            }
+            GuestWaitingList current = new GuestWaitingList();
+            synchronized (current) {
+                current.addAll(restored);
+                current.highWaterMark = Math.max(current.highWaterMark, restoredHighWaterMark);
+                current.sync(conn, mark);
+            }
+            instance = current;
+            return true;
+        }
+    }
+
+    // For StateSnapshot: copies the entries as last synced into out, without syncing.
+    // @return the high-water mark they were read up to.
+    synchronized int snapshotInto(List<WaitingListEntry> out) {
+        out.addAll(entries.elements());
+        return highWaterMark;
+    }
+
+    /**
+     * Brings the list up to date with rows other processes added or removed.
+     */
+    public synchronized void sync(Connection conn) throws SQLException {
+        sync(conn, new ParkingDAO(conn).getWaitingListMark());
+    }
+
+    private void sync(Connection conn, int[] mark) throws SQLException {
+        ParkingDAO parkingDAO = new ParkingDAO(conn);
+        if (mark[1] > highWaterMark) {
+            addAll(parkingDAO.getWaitingListAfter(highWaterMark));
+        }
+        if (entries.size() != mark[0]) {
+            reload(conn);
+            return;
+        }
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    // All entries in the order they will be served.
+    public synchronized List<WaitingListEntry> snapshot() throws SQLException {
+        syncIfStale();
+        return entries.sorted();
+    }
+
+    public synchronized int size() throws SQLException {
+        syncIfStale();
+        return entries.size();
+    }
+
+    public synchronized boolean isEmpty() throws SQLException {
+        return size() == 0;
+    }
+
+    public WaitingListEntry enqueue(Vehicle vehicle) throws SQLException {
+        return enqueueAll(Collections.singletonList(vehicle)).get(0);
+    }
+
+    /**
+     * Adds the vehicles with one INSERT. Each is placed by its host resident's current tier.
+     */
+    public List<WaitingListEntry> enqueueAll(List<Vehicle> vehicles) throws SQLException {
+        List<WaitingListEntry> added;
+        synchronized (this) {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                ResidentDAO residentDAO = new ResidentDAO(conn);
+                List<String> tiers = new ArrayList<>(vehicles.size());
+                for (Vehicle vehicle : vehicles) {
+                    Resident host = residentDAO.getResidentById(vehicle.getResidentId());
+                    tiers.add(host == null ? null : host.getSubscriptionTier());
+                }
+                added = new ParkingDAO(conn).addAllToWaitingList(vehicles, tiers);
+            }
+            // Only move the high-water mark if no one else's rows could be hiding below ours.
+            ExpiryScheduler expiry = ExpiryScheduler.getInstance();
+            for (WaitingListEntry entry : added) {
+                entries.add(entry);
+                expiry.waitlistEntryAdded(entry);
+                if (entry.getWaitlistId() == highWaterMark + 1) {
+                    highWaterMark++;
+                }
+            }
+        }
+        // Outside the lock: a durable journal waits for the disk, and readers of the list should not.
+        EventJournal journal = EventJournal.getInstance();
+        for (WaitingListEntry entry : added) {
+            journal.enqueued(entry);
+        }
+        return added;
+    }
+
+    /**
+     * Takes one entry off the list wherever it is in the queue.
+     * @return false if there was no such row (already served, cancelled or never existed).
+     */
+    public boolean cancel(int waitlistId) throws SQLException {
+        WaitingListEntry entry;
+        boolean removed;
+        synchronized (this) {
+            entry = entries.remove(waitlistId);
+            try (Connection conn = DatabaseManager.getConnection()) {
+                removed = new ParkingDAO(conn).removeFromWaitingList(waitlistId) == 1;
+            } catch (SQLException e) {
+                if (entry != null) {
+                    entries.add(entry);
+                }
+                throw e;
+            }
+        }
+        if (removed && entry != null) {
+            EventJournal.getInstance().dequeued(entry); // outside the lock, see enqueueAll
+        }
+        return removed;
+    }
+
+    /**
+     * For the waitlist dispatcher: takes the next entry out of memory only. The caller deletes its
+     * row inside the transaction that parks it, and hands it back with {@link #restore} if that
+     * transaction does not commit.
+     * @return the entry, or null if the list is empty.
+     */
+    public synchronized WaitingListEntry takeHead() throws SQLException {
+        syncIfStale();
+        return entries.poll();
+    }
+
+    public synchronized void restore(WaitingListEntry entry) {
+        if (!entries.contains(entry.getWaitlistId())) {
+            entries.add(entry);
+            // Its expiry timer may have fired while it was out; start it again from time_added.
+            ExpiryScheduler.getInstance().waitlistEntryAdded(entry);
+        }
+    }
+
+    // Whether the entry is on the list as this process last saw it. Does not sync.
+    public synchronized boolean contains(int waitlistId) {
+        return entries.contains(waitlistId);
+    }
+
+    /**
+     * Re-files the resident's waiting guests under their new tier, e.g. after a subscription
+     * upgrade. The tier itself is persisted in residents by that change. O(log n) per entry moved.
+     */
+    public synchronized void residentTierChanged(String residentId, String tier) {
+        for (WaitingListEntry entry : entries.elements()) {
+            if (residentId.equals(entry.getVehicle().getResidentId())) {
+                entries.update(entry.withSubscriptionTier(tier));
+            }
+        }
+    }
+
+    private static int tierRank(String tier) {
+        if ("Platinum".equals(tier)) {
+            return 0;
+        }
+        return "Gold".equals(tier) ? 1 : 2;
+    }
+
+    private void syncIfStale() throws SQLException {
+        if (System.currentTimeMillis() - lastSyncMillis >= POLL_INTERVAL_MILLIS) {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                sync(conn);
+            }
+        }
+    }
+
+    private void addAll(List<WaitingListEntry> rows) {
+        ExpiryScheduler expiry = ExpiryScheduler.getInstance();
+        for (WaitingListEntry entry : rows) {
+            if (!entries.contains(entry.getWaitlistId())) {
+                entries.add(entry);
+                expiry.waitlistEntryAdded(entry);
+            }
+            highWaterMark = Math.max(highWaterMark, entry.getWaitlistId());
+        }
+    }
+}
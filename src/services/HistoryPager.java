@@ -0,0 +1,186 @@
+package services;
+
+import ds.ParkingHistoryBuffer;
+import ds.ParkingRecord;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks parking_records newest first, one page at a time, with keyset pagination on
+ * (time_out, record_id). Each page is a "LIMIT pageSize+1" query that starts after the last
+ * row of the previous page, so any page costs the same however deep it is and however big the
+ * archive has grown. The "after" condition is the row comparison (time_out, record_id) < (?, ?),
+ * which MySQL turns into a single range scan on this index, walked backwards:
+ *
+ *   CREATE INDEX idx_records_time_out ON parking_records (time_out, record_id);
+ *
+ * and, for the resident views, on
+ *
+ *   CREATE INDEX idx_records_resident_time_out ON parking_records (resident_id, time_out, record_id);
+ *
+ * The schema is not managed by the application, so both have to be created on the database once.
+ * Without them every page sorts the whole (filtered) archive.
+ *
+ * The pager only remembers the key each visited page started after, so going back is a stack pop.
+ * Nothing is held open between pages: every fetch borrows its own connection.
+ */
+public class HistoryPager {
+
+    public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("aptparkx.history.pageSize", 20);
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String SELECT = "SELECT pr.record_id, pr.Slot_id, pr.vehicle_number, pr.vehicle_brand, pr.vehicle_type, " +
+            "pr.time_in, pr.time_out, pr.total_hours, pr.charge_amount, r.first_name, r.last_name " +
+            "FROM parking_records pr LEFT JOIN residents r ON pr.resident_id = r.resident_id";
+
+    // Position just after a row: the next page starts at the first row strictly older than this.
+    private static final class Key {
+        final Timestamp timeOut;
+        final long recordId;
+
+        Key(Timestamp timeOut, long recordId) {
+            this.timeOut = timeOut;
+            this.recordId = recordId;
+        }
+    }
+
+    private final String parkingType;
+    private final String wing;
+    private final String residentId;
+    private final String baseQuery;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private Key pageStart = null;                 // null on the first page
+    private final List<Key> previousStarts = new ArrayList<>(); // used as a stack; null is the first page
+    private Key nextStart = null;                 // null when the current page is the last one
+    private int pageIndex = 0;
+
+    /**
+     * @param parkingType "Resident", "Guest" or "All"
+     * @param wing only show residents of this wing, or null
+     * @param residentId only show this resident's records (and leave out owner names), or null
+     */
+    public HistoryPager(String parkingType, String wing, String residentId) {
+        this.parkingType = parkingType;
+        this.wing = wing;
+        this.residentId = residentId;
+
+        List<String> conditions = new ArrayList<>();
+        if (residentId != null) { conditions.add("pr.resident_id = ?"); }
+        if (wing != null) { conditions.add("r.wing = ?"); }
+        if ("Resident".equals(parkingType)) {
+            conditions.add("pr.Slot_id <= " + ParkingService.TOTAL_RESIDENT_SLOTS);
+        } else if ("Guest".equals(parkingType)) {
+            conditions.add("pr.Slot_id > " + ParkingService.TOTAL_RESIDENT_SLOTS);
+        }
+        String query = SELECT;
+        if (!conditions.isEmpty()) { query += " WHERE " + String.join(" AND ", conditions); }
+        this.baseQuery = query;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Changes the page size and goes back to the first page.
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        pageStart = null;
+        nextStart = null;
+        previousStarts.clear();
+        pageIndex = 0;
+    }
+
+    // Zero-based number of the page last fetched.
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public boolean hasNext() {
+        return nextStart != null;
+    }
+
+    public boolean hasPrevious() {
+        return pageIndex > 0;
+    }
+
+    public void next() {
+        if (nextStart == null) {
+            return;
+        }
+        previousStarts.add(pageStart);
+        pageStart = nextStart;
+        pageIndex++;
+    }
+
+    public void previous() {
+        if (previousStarts.isEmpty()) {
+            return;
+        }
+        pageStart = previousStarts.remove(previousStarts.size() - 1);
+        pageIndex--;
+    }
+
+    /**
+     * Reads the current page. Serial numbers continue across pages.
+     */
+    public ParkingHistoryBuffer fetch(Connection connection) throws SQLException {
+        String query = baseQuery;
+        if (pageStart != null) {
+            query += (baseQuery.contains(" WHERE ") ? " AND " : " WHERE ") +
+                    "(pr.time_out, pr.record_id) < (?, ?)";
+        }
+        query += " ORDER BY pr.time_out DESC, pr.record_id DESC LIMIT ?";
+
+        ParkingHistoryBuffer page = new ParkingHistoryBuffer();
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            int paramIndex = 1;
+            if (residentId != null) ps.setString(paramIndex++, residentId);
+            if (wing != null) ps.setString(paramIndex++, wing);
+            if (pageStart != null) {
+                ps.setTimestamp(paramIndex++, pageStart.timeOut);
+                ps.setLong(paramIndex++, pageStart.recordId);
+            }
+            // One extra row tells us whether there is a next page without a COUNT(*).
+            ps.setInt(paramIndex, pageSize + 1);
+
+            nextStart = null;
+            Key last = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (page.size() == pageSize) {
+                        nextStart = last;
+                        break;
+                    }
+                    String firstName = rs.getString("first_name");
+                    String ownerName = (firstName != null) ? firstName + " " + rs.getString("last_name") : "N/A";
+                    // For resident-facing views, we don't need the name.
+                    if (residentId != null) {
+                        ownerName = null;
+                    }
+                    int slotId = rs.getInt("Slot_id");
+                    String pType = "All".equals(parkingType) ? (slotId > ParkingService.TOTAL_RESIDENT_SLOTS ? "Guest" : "Resident") : null;
+                    Timestamp timeOut = rs.getTimestamp("time_out");
+
+                    page.add(new ParkingRecord(
+                            pageIndex * pageSize + page.size() + 1, ownerName, slotId, rs.getString("vehicle_number"),
+                            rs.getString("vehicle_brand"), rs.getString("vehicle_type"),
+                            rs.getTimestamp("time_in").getTime(), timeOut.getTime(),
+                            ParkingRecord.toHundredths(rs.getBigDecimal("total_hours")),
+                            ParkingRecord.toHundredths(rs.getBigDecimal("charge_amount")), pType
+                    ));
+                    last = new Key(timeOut, rs.getLong("record_id"));
+                }
+            }
+        }
+        return page;
+    }
+}
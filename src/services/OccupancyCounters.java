@@ -0,0 +1,301 @@
+package services;
+
+import database.DatabaseManager;
+import ds.LongIntHashMap;
+import ds.PlateCode;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running counts of parked vehicles per resident wing (A, B, C) and per pool (resident, guest).
+ * Wing counts follow the owner's wing, not the slot's block, matching the old
+ * parked_vehicle/vehicle/residents join. They are seeded once from the database and then
+ * updated by the park/unpark/delete code paths right after their transaction commits. Those
+ * paths bracket the commit and the update with beginUpdate/endUpdate.
+ *
+ * A background pass re-counts from the database every so often and reports any drift
+ * (for example rows changed outside this application), then corrects the counters. The same
+ * pass reads the parked rows and corrects SlotOccupancy's bitmap and PlateDirectory's parked
+ * slots, which are only kept current by this process's own parks and unparks.
+ */
+public final class OccupancyCounters {
+
+    private static final String[] WINGS = {"A", "B", "C"};
+    private static final int GUEST_POOL = WINGS.length;
+
+    private static final String WING_COUNT_QUERY = "SELECT r.wing, COUNT(*) FROM parked_vehicle pv " +
+            "JOIN vehicle v ON pv.vehicle_number = v.vehicle_number " +
+            "JOIN residents r ON v.resident_id = r.resident_id GROUP BY r.wing";
+    private static final String GUEST_COUNT_QUERY = "SELECT COUNT(*) FROM spare_parked_vehicle";
+    private static final String PARKED_ROWS_QUERY = "SELECT vehicle_number, Slot_id FROM parked_vehicle " +
+            "UNION ALL SELECT vehicle_number, Slot_id FROM spare_parked_vehicle";
+
+    private static volatile OccupancyCounters instance = null;
+
+    // Index 0-2 are wings A-C, index 3 is the guest pool.
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(WINGS.length + 1);
+    // Bumped on every update so a reconciliation pass can tell if it raced with a park/unpark.
+    private final AtomicLong version = new AtomicLong();
+    // Updates between beginUpdate and endUpdate: committed, or about to be, but maybe not counted yet.
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private ScheduledExecutorService reconciler;
+
+    private OccupancyCounters() {
+    }
+
+    public static OccupancyCounters getInstance() throws SQLException {
+        OccupancyCounters current = instance;
+        if (current == null) {
+            synchronized (OccupancyCounters.class) {
+                current = instance;
+                if (current == null) {
+                    current = new OccupancyCounters();
+                    try (Connection conn = DatabaseManager.getConnection()) {
+                        int[] seed = countFromDatabase(conn);
+                        for (int i = 0; i < seed.length; i++) {
+                            current.counts.set(i, seed[i]);
+                        }
+                    }
+                    current.startReconciler(Long.getLong("aptparkx.counters.reconcileIntervalMillis", 60_000L));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Installs the process-wide instance with counts read by {@link StateSnapshot}, in place of
+     * the seeding queries. @return false, and nothing is changed, if it has been loaded already.
+     */
+    static boolean install(int[] seed) {
+        synchronized (OccupancyCounters.class) {
+            if (instance != null) {
+                return false;
+            }
+            OccupancyCounters restored = new OccupancyCounters();
+            for (int i = 0; i < seed.length && i <= GUEST_POOL; i++) {
+                restored.counts.set(i, seed[i]);
+            }
+            restored.startReconciler(Long.getLong("aptparkx.counters.reconcileIntervalMillis", 60_000L));
+            instance = restored;
+            return true;
+        }
+    }
+
+    int[] snapshotCounts() {
+        int[] copy = new int[WINGS.length + 1];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Stops the background reconciliation. Called on shutdown.
+     */
+    public static void shutdown() {
+        OccupancyCounters current = instance;
+        if (current != null && current.reconciler != null) {
+            current.reconciler.shutdownNow();
+        }
+    }
+
+    public int getWingCount(String wing) {
+        int index = wingIndex(wing);
+        return index < 0 ? 0 : counts.get(index);
+    }
+
+    public int getResidentPoolCount() {
+        int total = 0;
+        for (int i = 0; i < WINGS.length; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public int getGuestPoolCount() {
+        return counts.get(GUEST_POOL);
+    }
+
+    /**
+     * Called before committing a park or unpark, and paired with endUpdate (in a finally) once
+     * vehicleParked/vehicleLeft has run, or the commit failed. Until then a reconciliation pass
+     * could count the new row and then see the counter move again, so it leaves the counters alone.
+     */
+    public void beginUpdate() {
+        inFlight.incrementAndGet();
+    }
+
+    public void endUpdate() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Records a committed park. Resident slots count towards the owner's wing, guest slots
+     * (SPARE_START_SLOT and above) towards the guest pool; ownerWing may be null for those.
+     * An unknown wing is skipped and left for the next reconciliation pass.
+     */
+    public void vehicleParked(int slotId, String ownerWing) {
+        int index = indexFor(slotId, ownerWing);
+        if (index >= 0) {
+            counts.incrementAndGet(index);
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a committed unpark or delete of a vehicle that was parked in the given slot.
+     */
+    public void vehicleLeft(int slotId, String ownerWing) {
+        int index = indexFor(slotId, ownerWing);
+        if (index >= 0) {
+            counts.decrementAndGet(index);
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Re-counts from the database and corrects the counters.
+     * @return a description of the drift found, or null if the counters matched.
+     */
+    public String reconcile(Connection conn) throws SQLException {
+        if (inFlight.get() != 0) {
+            return null; // A park/unpark is between its commit and its counter update; try again next round.
+        }
+        long before = version.get();
+        int[] actual = countFromDatabase(conn);
+        if (inFlight.get() != 0 || version.get() != before) {
+            return null; // A park/unpark landed while we were counting; try again next round.
+        }
+        StringBuilder drift = new StringBuilder();
+        for (int i = 0; i < actual.length; i++) {
+            int expected = counts.get(i);
+            if (expected != actual[i]) {
+                if (counts.compareAndSet(i, expected, actual[i])) {
+                    drift.append(String.format(" %s: %d -> %d;", label(i), expected, actual[i]));
+                }
+            }
+        }
+        return drift.length() == 0 ? null : "Occupancy counter drift corrected:" + drift;
+    }
+
+    private void startReconciler(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aptparkx-counter-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                String drift = reconcile(conn);
+                if (drift != null) {
+                    System.err.println(drift);
+                }
+                String occupancyDrift = reconcileOccupancy(conn);
+                if (occupancyDrift != null) {
+                    System.err.println(occupancyDrift);
+                }
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Occupancy counter reconciliation failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Brings the slot bitmap and the plate directory's parked slots in line with the parking
+     * tables, for whichever of them is loaded.
+     * @return a description of what was corrected, or null if nothing was.
+     */
+    public static String reconcileOccupancy(Connection conn) throws SQLException {
+        SlotOccupancy occupancy = SlotOccupancy.loadedInstance();
+        PlateDirectory plates = PlateDirectory.loadedInstance();
+        if (occupancy == null && plates == null) {
+            return null;
+        }
+        long[] words = new long[(SlotOccupancy.TOTAL_SLOTS >> 6) + 1];
+        LongIntHashMap parked = new LongIntHashMap(SlotOccupancy.TOTAL_SLOTS, PlateDirectory.NOT_PARKED);
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(PARKED_ROWS_QUERY)) {
+            while (rs.next()) {
+                int slotId = rs.getInt(2);
+                if (slotId >= 1 && slotId <= SlotOccupancy.TOTAL_SLOTS) {
+                    words[slotId >> 6] |= 1L << slotId;
+                }
+                long code = PlateCode.encode(rs.getString(1));
+                if (code != PlateCode.INVALID) {
+                    parked.put(code, slotId);
+                }
+            }
+        }
+        int slotsFixed = occupancy == null ? 0 : occupancy.reconcile(words);
+        int platesFixed = plates == null ? 0 : plates.reconcileParked(parked);
+        if (slotsFixed == 0 && platesFixed == 0) {
+            return null;
+        }
+        return String.format("Occupancy drift corrected: %d slot(s), %d parked plate(s).", slotsFixed, platesFixed);
+    }
+
+    private static int[] countFromDatabase(Connection conn) throws SQLException {
+        int[] result = new int[WINGS.length + 1];
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery(WING_COUNT_QUERY)) {
+                readWingCounts(rs, result);
+            }
+            try (ResultSet rs = st.executeQuery(GUEST_COUNT_QUERY)) {
+                readGuestCount(rs, result);
+            }
+        }
+        return result;
+    }
+
+    // The two statements that count occupancy, for callers batching them with other queries.
+    static String countQueries() {
+        return WING_COUNT_QUERY + "; " + GUEST_COUNT_QUERY;
+    }
+
+    static void readWingCounts(ResultSet rs, int[] result) throws SQLException {
+        while (rs.next()) {
+            int index = wingIndex(rs.getString(1));
+            if (index >= 0) {
+                result[index] = rs.getInt(2);
+            }
+        }
+    }
+
+    static void readGuestCount(ResultSet rs, int[] result) throws SQLException {
+        if (rs.next()) {
+            result[GUEST_POOL] = rs.getInt(1);
+        }
+    }
+
+    private static int indexFor(int slotId, String ownerWing) {
+        return slotId >= ParkingService.SPARE_START_SLOT ? GUEST_POOL : wingIndex(ownerWing);
+    }
+
+    private static int wingIndex(String wing) {
+        for (int i = 0; i < WINGS.length; i++) {
+            if (WINGS[i].equals(wing)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String label(int index) {
+        return index == GUEST_POOL ? "Guest pool" : "Wing " + WINGS[index];
+    }
+}
@@ -1,14 +1,23 @@
 package services;
 
 import dao.ResidentDAO;
-import dao.VehicleDAO;
-import ds.ParkingHistoryLinkedList;
+import ds.ParkingHistoryBuffer;
 import ds.ParkingRecord;
+import engine.Availability;
+import engine.ParkResult;
+import engine.ParkingEngine;
+import engine.ParkingException;
+import engine.UnparkResult;
+import export.ExportFormat;
+import export.ExportStats;
+import export.HistoryReportWriter;
+import export.ParallelHistoryExporter;
 import model.Resident;
 import model.Vehicle;
+import model.WaitingListEntry;
 import ui.InputHandler;
+import ui.TableRenderer;
 import database.DatabaseManager;
-import database.TransactionManager;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
@@ -18,22 +27,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import ds.GuestVehicleQueue;
-import ds.GuestVehicleQueue.WaitingListItem;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.sql.Statement;
 import java.sql.Timestamp;
 
 public final class ParkingService {
 
-    private final Connection connection;
-    private final ResidentDAO residentDAO;
-    private final VehicleDAO vehicleDAO;
-
     // A private inner class to hold detailed information for display
     private static class ParkedVehicleDetails {
         final int slotId;
@@ -59,15 +60,33 @@ public final class ParkingService {
     public static final int SPARE_END_SLOT = 1350;
     public static final int TOTAL_SPARE_SLOTS = SPARE_END_SLOT - SPARE_START_SLOT + 1;
 
+    // Table layouts, compiled once; rule lengths and widths are the ones the screens always used.
+    private static final TableRenderer.Layout MY_PARKED_LAYOUT = new TableRenderer.Layout(105,
+            new String[]{"Sr.", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In", "Park Type"}, 4, 8, 15, 12, 12, 22, 10);
+    private static final TableRenderer.Layout PARKED_WING_LAYOUT = new TableRenderer.Layout(110,
+            new String[]{"Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In"}, 4, 20, 8, 15, 12, 12, 22);
+    private static final TableRenderer.Layout PARKED_ALL_LAYOUT = new TableRenderer.Layout(129,
+            new String[]{"Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Wing", "Park Type", "Time In"}, 4, 20, 8, 15, 12, 12, 5, 10, 22);
+    private static final TableRenderer.Layout PARKED_LAYOUT = new TableRenderer.Layout(119,
+            new String[]{"Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Wing", "Time In"}, 4, 20, 8, 15, 12, 12, 5, 22);
+    private static final TableRenderer.Layout WAITING_LIST_LAYOUT = new TableRenderer.Layout(109,
+            new String[]{"Sr.", "Wait ID", "Vehicle Number", "Brand", "Type", "Resident ID", "Tier", "Time Added"}, 4, 8, 15, 12, 12, 12, 8, 22);
+    private static final TableRenderer.Layout MY_HISTORY_ALL_LAYOUT = new TableRenderer.Layout(137,
+            new String[]{"Sr.", "Slot ID", "Vehicle No.", "Brand", "Type", "Park Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)"},
+            4, 8, 15, 12, 12, 10, 22, 22, 10, 12);
+    private static final TableRenderer.Layout MY_HISTORY_LAYOUT = new TableRenderer.Layout(118,
+            new String[]{"Sr.", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)"},
+            4, 8, 15, 12, 12, 22, 22, 10, 12);
+    private static final TableRenderer.Layout HISTORY_ALL_LAYOUT = new TableRenderer.Layout(160,
+            new String[]{"Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Park Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)"},
+            4, 20, 8, 15, 12, 12, 10, 22, 22, 10, 12);
+    private static final TableRenderer.Layout HISTORY_LAYOUT = new TableRenderer.Layout(143,
+            new String[]{"Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)"},
+            4, 20, 8, 15, 12, 12, 22, 22, 10, 12);
+
+    private final ParkingEngine engine = new ParkingEngine();
+
     public ParkingService() {
-        try {
-            this.connection = DatabaseManager.getConnection();
-            this.residentDAO = new ResidentDAO(this.connection);
-            this.vehicleDAO = new VehicleDAO(this.connection);
-        } catch (SQLException e) {
-            System.err.println("Database connection failed in ParkingService.");
-            throw new RuntimeException(e);
-        }
     }
 
     // --- RESIDENT-FACING METHODS ---
@@ -75,14 +94,17 @@ public final class ParkingService {
     public void parkVehicle(String residentId) {
         System.out.println("\n--- Park a Resident Vehicle ---");
         try {
-            Resident resident = residentDAO.getResidentById(residentId);
+            Resident resident;
+            try (Connection connection = DatabaseManager.getConnection()) {
+                resident = new ResidentDAO(connection).getResidentById(residentId);
+            }
             if (resident == null) {
                 System.out.println("Could not find resident data.");
                 return;
             }
 
             int wingCapacity = getWingCapacity(resident.getWing());
-            int currentWingUsage = getParkedCountForWing(resident.getWing());
+            int currentWingUsage = OccupancyCounters.getInstance().getWingCount(resident.getWing());
 
             System.out.printf("Wing %s Capacity Status: %d / %d slots used.%n", resident.getWing(), currentWingUsage, wingCapacity);
             if (currentWingUsage >= wingCapacity) {
@@ -90,13 +112,7 @@ public final class ParkingService {
                 return;
             }
 
-            List<Vehicle> allVehicles = vehicleDAO.getVehiclesByResidentId(residentId);
-            List<Vehicle> parkedVehicles = vehicleDAO.getCurrentlyParkedVehiclesByResident(residentId);
-            List<String> parkedNumbers = parkedVehicles.stream().map(Vehicle::getVehicleNumber).collect(Collectors.toList());
-            List<Vehicle> unparkedVehicles = allVehicles.stream()
-                    .filter(v -> !parkedNumbers.contains(v.getVehicleNumber()))
-                    .collect(Collectors.toList());
-
+            List<Vehicle> unparkedVehicles = engine.getParkableVehicles(residentId);
             if (unparkedVehicles.isEmpty()) {
                 System.out.println("You have no registered vehicles available to park.");
                 return;
@@ -115,30 +131,26 @@ public final class ParkingService {
             }
             Vehicle vehicleToPark = unparkedVehicles.get(choice - 1);
 
-            int chosenSlotId;
             while (true) {
-                System.out.printf("Enter a parking slot number between 1 and %d (or 0 to cancel): ", TOTAL_RESIDENT_SLOTS);
-                chosenSlotId = InputHandler.getIntegerInput();
-                if (chosenSlotId == 0) { System.out.println("Parking cancelled."); return; }
-                if (chosenSlotId < 1 || chosenSlotId > TOTAL_RESIDENT_SLOTS) {
-                    System.out.printf("Invalid slot. Please choose a slot between 1 and %d.%n", TOTAL_RESIDENT_SLOTS);
-                    continue;
-                }
-                if (isSlotOccupied("parked_vehicle", chosenSlotId)) {
-                    System.out.println("Slot " + chosenSlotId + " is already occupied.");
-                } else {
-                    break;
+                int suggestedSlotId = SlotAllocator.suggestResidentSlot(resident.getWing(), resident.getHouseNumber());
+                int slotChoice = promptForSlot(1, TOTAL_RESIDENT_SLOTS, suggestedSlotId);
+                if (slotChoice < 0) {
+                    System.out.println("Parking cancelled.");
+                    return;
                 }
-            }
-
-            String query = "INSERT INTO parked_vehicle (Slot_id, vehicle_number, time_in) VALUES (?, ?, NOW())";
-            try (PreparedStatement ps = connection.prepareStatement(query)) {
-                ps.setInt(1, chosenSlotId);
-                ps.setString(2, vehicleToPark.getVehicleNumber());
-                if (ps.executeUpdate() > 0) {
-                    System.out.printf("✓ Success! Vehicle %s has been parked in slot %d.%n", vehicleToPark.getVehicleNumber(), chosenSlotId);
+                try {
+                    ParkResult result = engine.park(residentId, vehicleToPark.getVehicleNumber(), slotChoice == 0 ? null : slotChoice);
+                    System.out.printf("✓ Success! Vehicle %s has been parked in slot %d.%n", result.vehicleNumber, result.slotId);
+                    return;
+                } catch (ParkingException e) {
+                    if (!canChooseAgain(e)) {
+                        throw e;
+                    }
+                    System.out.println(e.getMessage() + " Please choose again.");
                 }
             }
+        } catch (ParkingException e) {
+            reportFailure(e);
         } catch (SQLException e) {
             System.err.println("Database error during parking process: " + e.getMessage());
         }
@@ -147,18 +159,14 @@ public final class ParkingService {
     public void parkGuestVehicle(String residentId) {
         System.out.println("\n--- Park a Guest Vehicle ---");
         try {
-            int occupiedSpare = getOccupiedSlotCount("spare_parked_vehicle", SPARE_START_SLOT, SPARE_END_SLOT);
-            if (occupiedSpare >= TOTAL_SPARE_SLOTS) {
+            if (engine.availability().guestOccupied >= TOTAL_SPARE_SLOTS) {
                 System.out.println("Sorry, all guest parking slots are currently occupied.");
                 return;
             }
 
-            TransactionManager.beginTransaction(connection);
             String vehicleNumber = InputHandler.getValidVehicleNumberInput("Enter Guest Vehicle Number: ");
-
-            if (vehicleDAO.vehicleExists(vehicleNumber)) {
+            if (engine.isVehicleRegistered(vehicleNumber)) {
                 System.out.println("Error: This vehicle is already registered in the system.");
-                TransactionManager.rollbackTransaction(connection);
                 return;
             }
             String vehicleType = InputHandler.getValidVehicleTypeInput("Select Vehicle Type");
@@ -166,49 +174,28 @@ public final class ParkingService {
 
             Vehicle guestVehicle = new Vehicle(vehicleNumber, residentId, vehicleType, vehicleBrand, "Guest");
 
-            // MODIFIED: This query no longer includes the 'owner_type' column to match your database.
-            String addVehicleQuery = "INSERT INTO vehicle (resident_id, vehicle_number, vehicle_type, vehicle_brand, owner_type) VALUES (?, ?, ?, ?, ?)";
-            try (PreparedStatement ps = connection.prepareStatement(addVehicleQuery)) {
-                ps.setString(1, guestVehicle.getResidentId());
-                ps.setString(2, guestVehicle.getVehicleNumber());
-                ps.setString(3, guestVehicle.getVehicleType());
-                ps.setString(4, guestVehicle.getVehicleBrand());
-                ps.setString(5, guestVehicle.getOwnerType()); // Pass the owner type
-                ps.executeUpdate();
-            }
-
-            int chosenSlotId;
             while (true) {
-                System.out.printf("Enter a guest parking slot between %d and %d (or 0 to cancel): ", SPARE_START_SLOT, SPARE_END_SLOT);
-                chosenSlotId = InputHandler.getIntegerInput();
-                if (chosenSlotId == 0) { System.out.println("Guest parking cancelled."); TransactionManager.rollbackTransaction(connection); return; }
-                if (chosenSlotId < SPARE_START_SLOT || chosenSlotId > SPARE_END_SLOT) {
-                    System.out.printf("Invalid slot. Please choose a slot between %d and %d.%n", SPARE_START_SLOT, SPARE_END_SLOT);
-                    continue;
-                }
-                if (isSlotOccupied("spare_parked_vehicle", chosenSlotId)) {
-                    System.out.println("Slot " + chosenSlotId + " is already occupied.");
-                } else {
-                    break;
+                int suggestedSlotId = SlotAllocator.suggestNearby(SPARE_START_SLOT, SPARE_START_SLOT, SPARE_END_SLOT);
+                int slotChoice = promptForSlot(SPARE_START_SLOT, SPARE_END_SLOT, suggestedSlotId);
+                if (slotChoice < 0) {
+                    System.out.println("Guest parking cancelled.");
+                    return;
                 }
-            }
-
-            String query = "INSERT INTO spare_parked_vehicle (Slot_id, vehicle_number, time_in) VALUES (?, ?, NOW())";
-            try (PreparedStatement ps = connection.prepareStatement(query)) {
-                ps.setInt(1, chosenSlotId);
-                ps.setString(2, guestVehicle.getVehicleNumber());
-                if (ps.executeUpdate() > 0) {
-                    System.out.printf("✓ Success! Guest vehicle %s parked in slot %d.%n", vehicleNumber, chosenSlotId);
-                    TransactionManager.commitTransaction(connection);
-                } else {
-                    TransactionManager.rollbackTransaction(connection);
+                try {
+                    ParkResult result = engine.parkGuest(guestVehicle, slotChoice == 0 ? null : slotChoice);
+                    System.out.printf("✓ Success! Guest vehicle %s parked in slot %d.%n", result.vehicleNumber, result.slotId);
+                    return;
+                } catch (ParkingException e) {
+                    if (!canChooseAgain(e)) {
+                        throw e;
+                    }
+                    System.out.println(e.getMessage() + " Please choose again.");
                 }
             }
+        } catch (ParkingException e) {
+            reportFailure(e);
         } catch (SQLException e) {
             System.err.println("Database error during guest parking: " + e.getMessage());
-            TransactionManager.rollbackTransaction(connection);
-        } finally {
-            TransactionManager.endTransaction(connection);
         }
     }
 
@@ -216,7 +203,10 @@ public final class ParkingService {
     public void removeParkedVehicle(String residentId) {
         System.out.println("\n--- Remove a Parked Vehicle ---");
         try {
-            List<ParkedVehicleDetails> parkedVehicles = getDetailedParkedVehiclesForResident(residentId);
+            List<ParkedVehicleDetails> parkedVehicles;
+            try (Connection connection = DatabaseManager.getConnection()) {
+                parkedVehicles = getDetailedParkedVehiclesForResident(connection, residentId);
+            }
             if (parkedVehicles.isEmpty()) {
                 System.out.println("You have no vehicles currently parked.");
                 return;
@@ -231,88 +221,28 @@ public final class ParkingService {
                 return;
             }
 
-            ParkedVehicleDetails vehicleToRemoveDetails = parkedVehicles.get(choice - 1);
-            Vehicle vehicleToRemove = vehicleToRemoveDetails.vehicle;
-            String vehicleNumber = vehicleToRemove.getVehicleNumber();
-            int slotId = vehicleToRemoveDetails.slotId;
-            boolean isGuestVehicle = "Guest".equals(vehicleToRemoveDetails.parkingType);
-            String sourceTable = isGuestVehicle ? "spare_parked_vehicle" : "parked_vehicle";
-
-            TransactionManager.beginTransaction(connection);
-
-            java.sql.Timestamp timeIn = null;
-            String getTimeInQuery = "SELECT time_in FROM " + sourceTable + " WHERE vehicle_number = ?";
-            try (PreparedStatement ps = connection.prepareStatement(getTimeInQuery)) {
-                ps.setString(1, vehicleNumber);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    timeIn = rs.getTimestamp("time_in");
-                }
-            }
-            if (timeIn == null) {
-                throw new SQLException("Could not retrieve original park time for vehicle " + vehicleNumber);
+            String vehicleNumber = parkedVehicles.get(choice - 1).vehicle.getVehicleNumber();
+            UnparkResult result = engine.unpark(vehicleNumber);
+            if (result.charge != null && result.charge.compareTo(BigDecimal.ZERO) > 0) {
+                System.out.printf("Parking charge for guest vehicle %s: ₹%.2f%n", vehicleNumber, result.charge);
             }
-
-            // --- MODIFIED: The query now includes the new resident_id column ---
-            String archiveQuery = "INSERT INTO parking_records (Slot_id, vehicle_number, resident_id, vehicle_brand, vehicle_type, time_in, time_out) VALUES(?, ?, ?, ?, ?, ?, NOW())";
-            long recordId = 0;
-            try(PreparedStatement ps = connection.prepareStatement(archiveQuery, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setInt(1, slotId);
-                ps.setString(2, vehicleNumber);
-                ps.setString(3, residentId); // <-- SAVES THE OWNER'S ID
-                ps.setString(4, vehicleToRemove.getVehicleBrand());
-                ps.setString(5, vehicleToRemove.getVehicleType());
-                ps.setTimestamp(6, timeIn);
-                ps.executeUpdate();
-                ResultSet rs = ps.getGeneratedKeys();
-                if (rs.next()) {
-                    recordId = rs.getLong(1);
-                }
-            }
-
-            String deleteQuery = "DELETE FROM " + sourceTable + " WHERE vehicle_number = ?";
-            try(PreparedStatement ps = connection.prepareStatement(deleteQuery)) {
-                ps.setString(1, vehicleNumber);
-                ps.executeUpdate();
+            System.out.printf("✓ Vehicle %s removed from slot %d successfully.%n", vehicleNumber, result.slotId);
+            if (result.dispatched != null) {
+                System.out.printf("✓ Waiting guest %s (host %s) was parked in the freed slot %d.%n",
+                        result.dispatched.getVehicle().getVehicleNumber(), result.dispatched.getVehicle().getResidentId(), result.slotId);
             }
 
-            if (isGuestVehicle) {
-                String deleteMainVehicleQuery = "DELETE FROM vehicle WHERE vehicle_number = ?";
-                try (PreparedStatement ps = connection.prepareStatement(deleteMainVehicleQuery)) {
-                    ps.setString(1, vehicleNumber);
-                    ps.executeUpdate();
-                }
-            }
-
-            if (isGuestVehicle && recordId > 0) {
-                String costQuery = "SELECT charge_amount FROM parking_records WHERE record_id = ?";
-                try (PreparedStatement ps = connection.prepareStatement(costQuery)) {
-                    ps.setLong(1, recordId);
-                    ResultSet rs = ps.executeQuery();
-                    if (rs.next()) {
-                        BigDecimal cost = rs.getBigDecimal("charge_amount");
-                        if (cost != null && cost.compareTo(BigDecimal.ZERO) > 0) {
-                            System.out.printf("Parking charge for guest vehicle %s: ₹%.2f%n", vehicleNumber, cost);
-                        }
-                    }
-                }
-            }
-
-            TransactionManager.commitTransaction(connection);
-            System.out.printf("✓ Vehicle %s removed from slot %d successfully.%n", vehicleNumber, slotId);
-
+        } catch (ParkingException e) {
+            reportFailure(e);
         } catch (SQLException e) {
             System.err.println("Database error while removing vehicle: " + e.getMessage());
-            TransactionManager.rollbackTransaction(connection);
-        } finally {
-            TransactionManager.endTransaction(connection);
         }
     }
 
     public void viewMyParkedVehicles(String residentId) {
         System.out.println("\n--- My Parked Vehicles ---");
-        try {
-            List<ParkedVehicleDetails> parkedVehicles = getDetailedParkedVehiclesForResident(residentId);
+        try (Connection connection = DatabaseManager.getConnection()) {
+            List<ParkedVehicleDetails> parkedVehicles = getDetailedParkedVehiclesForResident(connection, residentId);
             displayParkedVehicleTable(parkedVehicles);
         } catch (SQLException e) {
             System.err.println("Database error while viewing your parked vehicles: " + e.getMessage());
@@ -322,83 +252,48 @@ public final class ParkingService {
     public void displayMyParkingHistory(String residentId, String parkingType) {
         displayParkingHistory(parkingType, null, residentId);
     }
-    // IN: services/ParkingService.java
-// REPLACE the entire generateParkingHistoryReport method with this one.
-
     public void generateParkingHistoryReport() {
         System.out.println("\n--- Generate Complete Parking History Report ---");
         String fileName = InputHandler.getValidStringInput("Enter the name for the report file (e.g., parking_report.txt): ");
 
-        try {
-            // 1. Fetch all data (this part is the same)
-            String query = "SELECT pr.*, r.first_name, r.last_name FROM parking_records pr " +
-                    "LEFT JOIN residents r ON pr.resident_id = r.resident_id ORDER BY pr.time_out DESC";
-
-            // 2. Build the report content using basic String concatenation (+)
-            String reportContent = "";
-
-            // Build the header using our new padRight helper method
-            String header = padRight("Sr.", 4) + " | " +
-                    padRight("Owner Name", 20) + " | " +
-                    padRight("Slot ID", 8) + " | " +
-                    padRight("Vehicle No.", 15) + " | " +
-                    padRight("Brand", 12) + " | " +
-                    padRight("Type", 12) + " | " +
-                    padRight("Park Type", 10) + " | " +
-                    padRight("Time In", 22) + " | " +
-                    padRight("Time Out", 22) + " | " +
-                    padRight("Total Hrs", 10) + " | " +
-                    padRight("Charge(Rs.)", 12) + "\n";
-            reportContent += header;
-
-            // Create a separator line of the same length as the header
-            String separator = "";
-            for (int i = 0; i < header.length() - 1; i++) {
-                separator += "-";
-            }
-            reportContent += separator + "\n";
-
-
-            try (PreparedStatement ps = connection.prepareStatement(query)) {
-                ResultSet rs = ps.executeQuery();
-                int serial = 1;
-
-                while (rs.next()) {
-                    String firstName = rs.getString("first_name");
-                    String ownerName = (firstName != null) ? firstName + " " + rs.getString("last_name") : "N/A";
-                    String pType = rs.getInt("Slot_id") > TOTAL_RESIDENT_SLOTS ? "Guest" : "Resident";
-
-                    // Build each data row using our helper method and String concatenation
-                    String row = padRight(String.valueOf(serial), 4) + " | " +
-                            padRight(ownerName, 20) + " | " +
-                            padRight(String.valueOf(rs.getInt("Slot_id")), 8) + " | " +
-                            padRight(rs.getString("vehicle_number"), 15) + " | " +
-                            padRight(rs.getString("vehicle_brand"), 12) + " | " +
-                            padRight(rs.getString("vehicle_type"), 12) + " | " +
-                            padRight(pType, 10) + " | " +
-                            padRight(rs.getTimestamp("time_in").toString(), 22) + " | " +
-                            padRight(rs.getTimestamp("time_out").toString(), 22) + " | " +
-                            padRight(rs.getBigDecimal("total_hours").toString(), 10) + " | " +
-                            padRight(rs.getBigDecimal("charge_amount").toString(), 12) + "\n";
-
-                    reportContent += row;
-                    serial++;
-                }
-            }
-
-            // 3. Write the content to the file (this part is the same)
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-                writer.write(reportContent);
-            }
+        // Rows are streamed from the database straight into the file, so the report can be any size.
+        try (Connection connection = DatabaseManager.getConnection()) {
+            ExportStats stats = new HistoryReportWriter(TOTAL_RESIDENT_SLOTS).write(connection, Paths.get(fileName),
+                    (rows, rowsPerSecond) -> System.out.printf("  ... %,d records written (%,.0f rows/sec)%n", rows, rowsPerSecond));
 
-            // 4. Show a success message with the file path (this part is the same)
-            File reportFile = new File(fileName);
             System.out.println("\n✓ Report generated successfully!");
-            System.out.println("File saved at: " + reportFile.getAbsolutePath());
+            System.out.printf("%,d records written at %,.0f rows/sec.%n", stats.rows, stats.rowsPerSecond());
+            System.out.println("File saved at: " + stats.file.toAbsolutePath());
 
         } catch (SQLException e) {
             System.err.println("Database error while generating report: " + e.getMessage());
-        } catch (IOException e) {
+        } catch (IOException | InvalidPathException e) {
+            System.err.println("Error writing file: " + e.getMessage());
+        }
+    }
+
+    public void exportParkingHistory() {
+        System.out.println("\n--- Export Parking History ---");
+        System.out.println("1. CSV");
+        System.out.println("2. JSON Lines");
+        System.out.println("3. CSV (gzip)");
+        System.out.println("4. JSON Lines (gzip)");
+        System.out.print("Choose a format (1-4): ");
+        ExportFormat format = ExportFormat.values()[InputHandler.getValidChoice(1, 4) - 1];
+        String fileName = InputHandler.getValidStringInput("Enter the name for the export file (e.g., parking_history." + format.getExtension() + "): ");
+
+        // The archive is read in record_id ranges on several pooled connections at once.
+        try {
+            ExportStats stats = new ParallelHistoryExporter(format).export(Paths.get(fileName),
+                    (rows, rowsPerSecond) -> System.out.printf("  ... %,d records exported (%,.0f rows/sec)%n", rows, rowsPerSecond));
+
+            System.out.println("\n✓ Export completed successfully!");
+            System.out.printf("%,d records (%,d bytes) written at %,.0f rows/sec.%n", stats.rows, stats.bytes, stats.rowsPerSecond());
+            System.out.println("File saved at: " + stats.file.toAbsolutePath());
+
+        } catch (SQLException e) {
+            System.err.println("Database error while exporting history: " + e.getMessage());
+        } catch (IOException | InvalidPathException e) {
             System.err.println("Error writing file: " + e.getMessage());
         }
     }
@@ -424,18 +319,6 @@ public final class ParkingService {
         if ("BACK".equals(wing)) return;
         displayParkingHistory("Resident", wing, null);
     }
-    private String padRight(String text, int length) {
-        if (text.length() > length) {
-            // Truncate if the text is too long
-            return text.substring(0, length);
-        }
-        // Add spaces to the end until it reaches the desired length
-        String paddedText = text;
-        for (int i = text.length(); i < length; i++) {
-            paddedText += " ";
-        }
-        return paddedText;
-    }
 
     public void viewGuestParkingHistory() {
         displayParkingHistory("Guest", null, null);
@@ -448,10 +331,11 @@ public final class ParkingService {
     public void viewAvailableParkingSlots() {
         System.out.println("\n--- Resident Parking Availability by Wing ---");
         try {
-            int occupiedA = getParkedCountForWing("A");
-            int occupiedB = getParkedCountForWing("B");
-            int occupiedC = getParkedCountForWing("C");
-            int totalOccupied = occupiedA + occupiedB + occupiedC;
+            Availability availability = engine.availability();
+            int occupiedA = availability.wingAOccupied;
+            int occupiedB = availability.wingBOccupied;
+            int occupiedC = availability.wingCOccupied;
+            int totalOccupied = availability.residentOccupied();
 
             System.out.println("--------------------------------------------------------------------");
             System.out.printf("%-10s | %-15s | %-15s | %-15s%n", "Wing", "Capacity", "Occupied", "Available");
@@ -462,15 +346,15 @@ public final class ParkingService {
             System.out.println("--------------------------------------------------------------------");
             System.out.printf("%-10s | %-15d | %-15d | %-15d%n", "TOTAL", TOTAL_RESIDENT_SLOTS, totalOccupied, TOTAL_RESIDENT_SLOTS - totalOccupied);
             System.out.println("--------------------------------------------------------------------");
-        } catch (SQLException e) {
-            System.err.println("Database error while calculating available slots: " + e.getMessage());
+        } catch (ParkingException e) {
+            System.err.println("Error while calculating available slots: " + e.getMessage());
         }
     }
 
     public void viewAvailableSpareParkingSlots() {
         System.out.println("\n--- Guest Parking Availability ---");
         try {
-            int occupiedSpareSlots = getOccupiedSlotCount("spare_parked_vehicle", SPARE_START_SLOT, SPARE_END_SLOT);
+            int occupiedSpareSlots = engine.availability().guestOccupied;
             int availableSpareSlots = TOTAL_SPARE_SLOTS - occupiedSpareSlots;
 
             System.out.println("----------------------------------------------------------");
@@ -478,32 +362,85 @@ public final class ParkingService {
             System.out.println("----------------------------------------------------------");
             System.out.printf("%-20d | %-15d | %-15d%n", TOTAL_SPARE_SLOTS, occupiedSpareSlots, availableSpareSlots);
             System.out.println("----------------------------------------------------------");
-        } catch (SQLException e) {
-            System.err.println("Database error while calculating available spare slots: " + e.getMessage());
+        } catch (ParkingException e) {
+            System.err.println("Error while calculating available spare slots: " + e.getMessage());
         }
     }
 
     // --- PRIVATE HELPER METHODS ---
 
-    private void displayParkedVehicleTable(List<ParkedVehicleDetails> parkedVehicles) {
-        System.out.println("---------------------------------------------------------------------------------------------------------");
-        System.out.printf("%-4s | %-8s | %-15s | %-12s | %-12s | %-22s | %-10s%n", "Sr.", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In", "Park Type");
-        System.out.println("---------------------------------------------------------------------------------------------------------");
+    // Offers the allocator's nearest free slot, with manual selection kept as an override.
+    // Returns 0 for "use the nearest free slot", the slot number for a manual choice, or -1 if the
+    // user cancels or no slot is free. The engine does the actual claim.
+    private int promptForSlot(int firstSlot, int lastSlot, int suggestedSlotId) throws SQLException {
+        if (suggestedSlotId < 0) {
+            System.out.println("Sorry, there are no free slots between " + firstSlot + " and " + lastSlot + ".");
+            return -1;
+        }
+        System.out.println("\n--- Choose a Parking Slot ---");
+        System.out.println("1. Use the nearest free slot (" + suggestedSlotId + ")");
+        System.out.println("2. Choose a slot manually");
+        System.out.println("3. Cancel");
+        System.out.print("Select an option: ");
+        int mode = InputHandler.getValidChoice(1, 3);
+        if (mode == 3) {
+            return -1;
+        }
+        if (mode == 1) {
+            return 0;
+        }
+
+        while (true) {
+            System.out.printf("Enter a parking slot number between %d and %d (or 0 to cancel): ", firstSlot, lastSlot);
+            int chosenSlotId = InputHandler.getIntegerInput();
+            if (chosenSlotId == 0) {
+                return -1;
+            }
+            if (chosenSlotId < firstSlot || chosenSlotId > lastSlot) {
+                System.out.printf("Invalid slot. Please choose a slot between %d and %d.%n", firstSlot, lastSlot);
+                continue;
+            }
+            if (!isSlotOccupied(chosenSlotId)) {
+                return chosenSlotId;
+            }
+            int nearby = SlotAllocator.suggestNearby(chosenSlotId, firstSlot, lastSlot);
+            if (nearby < 0) {
+                System.out.println("Slot " + chosenSlotId + " is already occupied, and no other slot is free.");
+                return -1;
+            }
+            System.out.println("Slot " + chosenSlotId + " is already occupied. The nearest free slot is " + nearby + ".");
+        }
+    }
+
+    // A slot lost to another gate (or mistyped) is worth another prompt; anything else ends the operation.
+    private boolean canChooseAgain(ParkingException e) {
+        return e.getReason() == ParkingException.Reason.SLOT_TAKEN
+                || e.getReason() == ParkingException.Reason.INVALID_SLOT;
+    }
+
+    private void reportFailure(ParkingException e) {
+        if (e.getReason() == ParkingException.Reason.DATABASE_ERROR) {
+            System.err.println(e.getMessage());
+        } else {
+            System.out.println("Sorry, " + e.getMessage());
+        }
+    }
 
+    private void displayParkedVehicleTable(List<ParkedVehicleDetails> parkedVehicles) {
+        TableRenderer table = new TableRenderer(MY_PARKED_LAYOUT).header();
         if (parkedVehicles.isEmpty()) {
-            System.out.println("No vehicles are currently parked for this selection.");
+            table.line("No vehicles are currently parked for this selection.");
         } else {
             int serial = 1;
             for (ParkedVehicleDetails detail : parkedVehicles) {
-                System.out.printf("%-4d | %-8d | %-15s | %-12s | %-12s | %-22s | %-10s%n",
-                        serial++, detail.slotId, detail.vehicle.getVehicleNumber(), detail.vehicle.getVehicleBrand(),
-                        detail.vehicle.getVehicleType(), detail.timeIn, detail.parkingType);
+                table.cell(serial++).cell(detail.slotId).cell(detail.vehicle.getVehicleNumber()).cell(detail.vehicle.getVehicleBrand())
+                        .cell(detail.vehicle.getVehicleType()).cell(detail.timeIn).cell(detail.parkingType).endRow();
             }
         }
-        System.out.println("---------------------------------------------------------------------------------------------------------");
+        table.rule().flush();
     }
 
-    private List<ParkedVehicleDetails> getDetailedParkedVehiclesForResident(String residentId) throws SQLException {
+    private List<ParkedVehicleDetails> getDetailedParkedVehiclesForResident(Connection connection, String residentId) throws SQLException {
         List<ParkedVehicleDetails> details = new ArrayList<>();
         String query = "SELECT ap.Slot_id, v.vehicle_number, v.resident_id, v.vehicle_type, v.vehicle_brand, v.owner_type, ap.time_in, " +
                 "CASE WHEN ap.Slot_id <= ? THEN 'Resident' ELSE 'Guest' END AS parking_type " +
@@ -568,183 +505,147 @@ public final class ParkingService {
         }
 
         System.out.println(title);
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (Connection connection = DatabaseManager.getConnection();
+             PreparedStatement ps = connection.prepareStatement(query)) {
             if ("Resident".equals(viewType) && wing != null) {
                 ps.setString(1, wing);
             }
             ResultSet rs = ps.executeQuery();
 
-            // --- MODIFIED DISPLAY LOGIC ---
+            // Pick the layout that matches the view
+            boolean specificWing = "Resident".equals(viewType) && wing != null;
+            boolean all = "All".equals(viewType);
+            TableRenderer table = new TableRenderer(specificWing ? PARKED_WING_LAYOUT : all ? PARKED_ALL_LAYOUT : PARKED_LAYOUT).header();
 
             boolean found = false;
             int serial = 1;
-
-            // Print the correct header based on the view
-            if ("Resident".equals(viewType) && wing != null) { // Specific Wing (No Wing column)
-                System.out.println("--------------------------------------------------------------------------------------------------------------");
-                System.out.printf("%-4s | %-20s | %-8s | %-15s | %-12s | %-12s | %-22s%n", "Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In");
-                System.out.println("--------------------------------------------------------------------------------------------------------------");
-            } else if ("All".equals(viewType)) { // All Parked (With Wing and Park Type columns)
-                System.out.println("---------------------------------------------------------------------------------------------------------------------------------");
-                System.out.printf("%-4s | %-20s | %-8s | %-15s | %-12s | %-12s | %-5s | %-10s | %-22s%n", "Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Wing", "Park Type", "Time In");
-                System.out.println("---------------------------------------------------------------------------------------------------------------------------------");
-            } else { // Guest or Resident (All Wings) - (With Wing column)
-                System.out.println("-----------------------------------------------------------------------------------------------------------------------");
-                System.out.printf("%-4s | %-20s | %-8s | %-15s | %-12s | %-12s | %-5s | %-22s%n", "Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Wing", "Time In");
-                System.out.println("-----------------------------------------------------------------------------------------------------------------------");
-            }
-
             while (rs.next()) {
                 found = true;
-                String ownerName = rs.getString("first_name") + " " + rs.getString("last_name");
-
-                // Print the data row that matches the header
-                if ("Resident".equals(viewType) && wing != null) { // Specific Wing
-                    System.out.printf("%-4d | %-20s | %-8d | %-15s | %-12s | %-12s | %-22s%n",
-                            serial++, ownerName, rs.getInt("Slot_id"), rs.getString("vehicle_number"),
-                            rs.getString("vehicle_brand"), rs.getString("vehicle_type"), rs.getTimestamp("time_in").toString());
-                } else if ("All".equals(viewType)) { // All Parked
-                    System.out.printf("%-4d | %-20s | %-8d | %-15s | %-12s | %-12s | %-5s | %-10s | %-22s%n",
-                            serial++, ownerName, rs.getInt("Slot_id"), rs.getString("vehicle_number"),
-                            rs.getString("vehicle_brand"), rs.getString("vehicle_type"), rs.getString("wing"),
-                            rs.getString("park_type"), rs.getTimestamp("time_in").toString());
-                } else { // Guest or Resident (All Wings)
-                    System.out.printf("%-4d | %-20s | %-8d | %-15s | %-12s | %-12s | %-5s | %-22s%n",
-                            serial++, ownerName, rs.getInt("Slot_id"), rs.getString("vehicle_number"),
-                            rs.getString("vehicle_brand"), rs.getString("vehicle_type"), rs.getString("wing"),
-                            rs.getTimestamp("time_in").toString());
+                table.cell(serial++).cell(rs.getString("first_name") + " " + rs.getString("last_name")).cell(rs.getInt("Slot_id"))
+                        .cell(rs.getString("vehicle_number")).cell(rs.getString("vehicle_brand")).cell(rs.getString("vehicle_type"));
+                if (!specificWing) {
+                    table.cell(rs.getString("wing"));
+                }
+                if (all) {
+                    table.cell(rs.getString("park_type"));
                 }
+                table.cell(rs.getTimestamp("time_in")).endRow();
             }
 
             if (!found) {
-                System.out.println("No vehicles found for this selection.");
-            }
-            // Print a closing line that matches the header
-            if ("Resident".equals(viewType) && wing != null) {
-                System.out.println("--------------------------------------------------------------------------------------------------------------");
-            } else if ("All".equals(viewType)) {
-                System.out.println("---------------------------------------------------------------------------------------------------------------------------------");
-            } else {
-                System.out.println("-----------------------------------------------------------------------------------------------------------------------");
+                table.line("No vehicles found for this selection.");
             }
+            table.rule().flush();
 
         } catch (SQLException e) {
             System.err.println("Database error while viewing parked vehicles: " + e.getMessage());
         }
     }
     public void viewGuestWaitingList() {
-        System.out.println("\n--- Guest Parking Waiting List ---");
-        // Create an instance of the queue, giving it a max capacity (e.g., 50)
-        GuestVehicleQueue waitingList = new GuestVehicleQueue(50);
-        List<GuestVehicleQueue.WaitingListItem> items = waitingList.getAllWaitingListItems();
-
-        System.out.println("--------------------------------------------------------------------------------------------------");
-        System.out.printf("%-4s | %-8s | %-15s | %-12s | %-12s | %-12s | %-22s%n", "Sr.", "Wait ID", "Vehicle Number", "Brand", "Type", "Resident ID", "Time Added");
-        System.out.println("--------------------------------------------------------------------------------------------------");
+        System.out.println("\n--- Guest Parking Waiting List (in serving order) ---");
+        List<WaitingListEntry> entries;
+        try {
+            entries = GuestWaitingList.getInstance().snapshot();
+        } catch (SQLException e) {
+            System.err.println("Database error while loading the waiting list: " + e.getMessage());
+            return;
+        }
 
-        if (items.isEmpty()) {
-            System.out.println("The waiting list is currently empty.");
+        TableRenderer table = new TableRenderer(WAITING_LIST_LAYOUT).header();
+        if (entries.isEmpty()) {
+            table.line("The waiting list is currently empty.");
         } else {
             int serial = 1;
-            for (GuestVehicleQueue.WaitingListItem item : items) {
-                Vehicle v = item.vehicle;
-                System.out.printf("%-4d | %-8d | %-15s | %-12s | %-12s | %-12s | %-22s%n",
-                        serial++,
-                        item.waitlistId,
-                        v.getVehicleNumber(),
-                        v.getVehicleBrand(),
-                        v.getVehicleType(),
-                        v.getResidentId(),
-                        item.timeAdded.toString()
-                );
+            for (WaitingListEntry entry : entries) {
+                Vehicle v = entry.getVehicle();
+                table.cell(serial++).cell(entry.getWaitlistId()).cell(v.getVehicleNumber()).cell(v.getVehicleBrand())
+                        .cell(v.getVehicleType()).cell(v.getResidentId()).cell(entry.getSubscriptionTier()).cell(entry.getTimeAdded()).endRow();
             }
         }
-        System.out.println("--------------------------------------------------------------------------------------------------");
+        table.rule().flush();
     }
 
-    private void displayParkingHistory(String parkingType, String wing, String residentId) {
-        String title;
-        // --- MODIFIED: The query now joins with the residents table to get the owner's name ---
-        String query = "SELECT pr.*, r.first_name, r.last_name FROM parking_records pr " +
-                "LEFT JOIN residents r ON pr.resident_id = r.resident_id";
-
-        List<String> conditions = new ArrayList<>();
-        if (residentId != null) { conditions.add("pr.resident_id = ?"); }
-        if (wing != null) { conditions.add("r.wing = ?"); }
-
-        switch (parkingType) {
-            case "Resident":
-                title = "\n--- Resident Parking History ---";
-                conditions.add("pr.Slot_id <= " + TOTAL_RESIDENT_SLOTS);
-                break;
-            case "Guest":
-                title = "\n--- Guest Parking History ---";
-                conditions.add("pr.Slot_id > " + TOTAL_RESIDENT_SLOTS);
-                break;
-            default: // All
-                title = "\n--- Complete Parking History ---";
-                break;
+    public void cancelGuestWaitingListEntry() {
+        viewGuestWaitingList();
+        System.out.print("Enter the Wait ID to cancel (0 to go back): ");
+        int waitlistId = InputHandler.getIntegerInput();
+        if (waitlistId == 0) {
+            return;
         }
+        try {
+            if (engine.cancelWaitingGuest(waitlistId)) {
+                System.out.println("Waiting list entry " + waitlistId + " cancelled.");
+            } else {
+                System.out.println("No waiting list entry with ID " + waitlistId + ".");
+            }
+        } catch (ParkingException e) {
+            System.err.println(e.getMessage());
+        }
+    }
 
-        if (!conditions.isEmpty()) { query += " WHERE " + String.join(" AND ", conditions); }
-        query += " ORDER BY pr.time_out DESC";
-        System.out.println(title);
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            int paramIndex = 1;
-            if (residentId != null) ps.setString(paramIndex++, residentId);
-            if (wing != null) ps.setString(paramIndex, wing);
-
-            ResultSet rs = ps.executeQuery();
-            ParkingHistoryLinkedList historyList = new ParkingHistoryLinkedList();
-            int serial = 1;
-            while (rs.next()) {
-                // --- ADDED: Logic to get the owner name from the result set ---
-                String firstName = rs.getString("first_name");
-                String ownerName = (firstName != null) ? firstName + " " + rs.getString("last_name") : "N/A";
-
-                // For resident-facing views, we don't need the name.
-                if (residentId != null) {
-                    ownerName = null;
-                }
+    // Shows the history one keyset page at a time; only the rows on screen are ever read.
+    private void displayParkingHistory(String parkingType, String wing, String residentId) {
+        String title = switch (parkingType) {
+            case "Resident" -> "\n--- Resident Parking History ---";
+            case "Guest" -> "\n--- Guest Parking History ---";
+            default -> "\n--- Complete Parking History ---";
+        };
+        HistoryPager pager = new HistoryPager(parkingType, wing, residentId);
+
+        while (true) {
+            ParkingHistoryBuffer page;
+            try (Connection connection = DatabaseManager.getConnection()) {
+                page = pager.fetch(connection);
+            } catch (SQLException e) {
+                System.err.println("Database error while displaying history: " + e.getMessage());
+                return;
+            }
 
-                String pType = "All".equals(parkingType) ? (rs.getInt("Slot_id") > TOTAL_RESIDENT_SLOTS ? "Guest" : "Resident") : null;
+            System.out.println(title);
+            renderHistoryPage(page, "All".equals(parkingType), residentId != null);
+            if (!pager.hasNext() && !pager.hasPrevious()) {
+                return;
+            }
 
-                // --- MODIFIED: Pass the ownerName to the constructor ---
-                historyList.insertAtLast(new ParkingRecord(
-                        serial++, ownerName, rs.getInt("Slot_id"), rs.getString("vehicle_number"),
-                        rs.getString("vehicle_brand"), rs.getString("vehicle_type"),
-                        rs.getTimestamp("time_in").toString(), rs.getTimestamp("time_out").toString(),
-                        rs.getBigDecimal("total_hours"), rs.getBigDecimal("charge_amount"), pType
-                ));
+            System.out.printf("Page %d (%d per page)%n", pager.getPageIndex() + 1, pager.getPageSize());
+            System.out.println("1. Next Page" + (pager.hasNext() ? "" : " (last page)"));
+            System.out.println("2. Previous Page" + (pager.hasPrevious() ? "" : " (first page)"));
+            System.out.println("3. Change Page Size");
+            System.out.println("4. Back");
+            System.out.print("Select an option: ");
+            switch (InputHandler.getValidChoice(1, 4)) {
+                case 1: pager.next(); break;
+                case 2: pager.previous(); break;
+                case 3:
+                    System.out.printf("Enter records per page (1-%d): ", HistoryPager.MAX_PAGE_SIZE);
+                    pager.setPageSize(InputHandler.getValidChoice(1, HistoryPager.MAX_PAGE_SIZE));
+                    break;
+                default: return;
             }
+        }
+    }
 
-            // --- MODIFIED: Updated headers to include "Owner Name" ---
-            if (residentId != null) { // Resident View
-                if ("All".equals(parkingType)) {
-                    System.out.println("-----------------------------------------------------------------------------------------------------------------------------------------");
-                    System.out.printf("%-4s | %-8s | %-15s | %-12s | %-12s | %-10s | %-22s | %-22s | %-10s | %-12s%n", "Sr.", "Slot ID", "Vehicle No.", "Brand", "Type", "Park Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)");
-                    System.out.println("-----------------------------------------------------------------------------------------------------------------------------------------");
-                } else {
-                    System.out.println("----------------------------------------------------------------------------------------------------------------------");
-                    System.out.printf("%-4s | %-8s | %-15s | %-12s | %-12s | %-22s | %-22s | %-10s | %-12s%n", "Sr.", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)");
-                    System.out.println("----------------------------------------------------------------------------------------------------------------------");
-                }
-            } else { // Admin View
-                if ("All".equals(parkingType)) {
-                    System.out.println("----------------------------------------------------------------------------------------------------------------------------------------------------------------");
-                    System.out.printf("%-4s | %-20s | %-8s | %-15s | %-12s | %-12s | %-10s | %-22s | %-22s | %-10s | %-12s%n", "Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Park Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)");
-                    System.out.println("----------------------------------------------------------------------------------------------------------------------------------------------------------------");
-                } else {
-                    System.out.println("-----------------------------------------------------------------------------------------------------------------------------------------------");
-                    System.out.printf("%-4s | %-20s | %-8s | %-15s | %-12s | %-12s | %-22s | %-22s | %-10s | %-12s%n", "Sr.", "Owner Name", "Slot ID", "Vehicle No.", "Brand", "Type", "Time In", "Time Out", "Total Hrs", "Charge(Rs.)");
-                    System.out.println("-----------------------------------------------------------------------------------------------------------------------------------------------");
-                }
+    private void renderHistoryPage(ParkingHistoryBuffer page, boolean showParkType, boolean residentView) {
+        TableRenderer.Layout layout = residentView
+                ? (showParkType ? MY_HISTORY_ALL_LAYOUT : MY_HISTORY_LAYOUT)
+                : (showParkType ? HISTORY_ALL_LAYOUT : HISTORY_LAYOUT);
+        TableRenderer table = new TableRenderer(layout).header();
+        if (page.isEmpty()) {
+            table.line("No parking history found for this selection.");
+        }
+        for (ParkingRecord record : page) {
+            table.cell(record.getSerialNumber());
+            if (!residentView) {
+                table.cell(record.getOwnerName());
             }
-            historyList.display();
-        } catch (SQLException e) {
-            System.err.println("Database error while displaying history: " + e.getMessage());
+            table.cell(record.getSlotId()).cell(record.getVehicleNumber()).cell(record.getVehicleBrand()).cell(record.getVehicleType());
+            if (showParkType) {
+                table.cell(record.getParkingType());
+            }
+            table.cell(new Timestamp(record.getTimeInMillis())).cell(new Timestamp(record.getTimeOutMillis()))
+                    .cellHundredths(record.getTotalHoursHundredths()).cellHundredths(record.getChargePaise()).endRow();
         }
+        table.flush();
     }
 
     private String selectWing() {
@@ -774,33 +675,8 @@ public final class ParkingService {
         };
     }
 
-    private int getParkedCountForWing(String wing) throws SQLException {
-        String query = "SELECT COUNT(*) FROM parked_vehicle pv " +
-                "JOIN vehicle v ON pv.vehicle_number = v.vehicle_number " +
-                "JOIN residents r ON v.resident_id = r.resident_id WHERE r.wing = ?";
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, wing);
-            ResultSet rs = ps.executeQuery();
-            return rs.next() ? rs.getInt(1) : 0;
-        }
-    }
-
-    private boolean isSlotOccupied(String tableName, int slotId) throws SQLException {
-        String query = "SELECT COUNT(*) FROM " + tableName + " WHERE Slot_id = ?";
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setInt(1, slotId);
-            ResultSet rs = ps.executeQuery();
-            return rs.next() && rs.getInt(1) > 0;
-        }
-    }
-
-    private int getOccupiedSlotCount(String tableName, int startSlot, int endSlot) throws SQLException {
-        String query = "SELECT COUNT(*) FROM " + tableName + " WHERE Slot_id BETWEEN ? AND ?";
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setInt(1, startSlot);
-            ps.setInt(2, endSlot);
-            ResultSet rs = ps.executeQuery();
-            return rs.next() ? rs.getInt(1) : 0;
-        }
+    // Answered from the in-memory occupancy bitmap instead of a COUNT query.
+    private boolean isSlotOccupied(int slotId) throws SQLException {
+        return SlotOccupancy.getInstance().isOccupied(slotId);
     }
 }
\ No newline at end of file
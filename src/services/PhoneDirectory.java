@@ -0,0 +1,101 @@
+package services;
+
+import database.DatabaseManager;
+import ds.LongIntHashMap;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory set of the residents' contact numbers, so the phone-number uniqueness check can
+ * skip the database for numbers nobody has (the usual case). At our size an exact set is
+ * smaller than a Bloom filter would need to be for a useful false-positive rate, so a miss here
+ * is a definite "not in use" within this process. A hit is still confirmed with SQL, and the
+ * transaction that saves a number re-checks it, which covers writes by other processes.
+ *
+ * Numbers are stored as longs (they are 10 digits) with a count per number, in case old rows
+ * share one. Loaded once from the database and kept current by ResidentService.
+ */
+public final class PhoneDirectory {
+
+    private static volatile PhoneDirectory instance = null;
+
+    private final LongIntHashMap counts = new LongIntHashMap(256, 0);
+
+    private PhoneDirectory() {
+    }
+
+    public static PhoneDirectory getInstance() throws SQLException {
+        PhoneDirectory current = instance;
+        if (current == null) {
+            synchronized (PhoneDirectory.class) {
+                current = instance;
+                if (current == null) {
+                    current = new PhoneDirectory();
+                    try (Connection conn = DatabaseManager.getConnection()) {
+                        current.reload(conn);
+                    }
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public synchronized void reload(Connection conn) throws SQLException {
+        counts.clear();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT contact_number FROM residents")) {
+            while (rs.next()) {
+                long key = keyOf(rs.getString(1));
+                if (key >= 0) {
+                    counts.put(key, counts.get(key) + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if no resident has this number; true if one may have (confirm with SQL).
+     * Numbers that are not plain digits are always reported as possibly in use.
+     */
+    public synchronized boolean mightBeInUse(String phoneNumber) {
+        long key = keyOf(phoneNumber);
+        return key < 0 || counts.containsKey(key);
+    }
+
+    public synchronized void numberAdded(String phoneNumber) {
+        long key = keyOf(phoneNumber);
+        if (key >= 0) {
+            counts.put(key, counts.get(key) + 1);
+        }
+    }
+
+    public synchronized void numberRemoved(String phoneNumber) {
+        long key = keyOf(phoneNumber);
+        int count = key < 0 ? 0 : counts.get(key);
+        if (count > 1) {
+            counts.put(key, count - 1);
+        } else if (count == 1) {
+            counts.remove(key);
+        }
+    }
+
+    // The number as a long, or -1 if it is not 1 to 18 plain digits.
+    private static long keyOf(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.isEmpty() || phoneNumber.length() > 18) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+}
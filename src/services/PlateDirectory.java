@@ -0,0 +1,205 @@
+package services;
+
+import database.DatabaseManager;
+import ds.LongIntHashMap;
+import ds.LongObjectHashMap;
+import ds.PlateCode;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory plate lookups: which slot a vehicle is parked in and which resident owns it.
+ * Plates are keyed by their {@link PlateCode}, so a lookup is one hash probe into primitive
+ * arrays with no String hashing or boxing. Loaded once from the database and kept current by
+ * the same code paths that keep {@link SlotOccupancy} current, and reconciled against the
+ * parking tables the same way (see {@link #reconcileParked}).
+ *
+ * A plate that does not fit the LLDDLLDDDD format (e.g. old rows typed in by hand) cannot be
+ * encoded; lookups then answer UNKNOWN / null and the caller should fall back to SQL.
+ */
+public final class PlateDirectory {
+
+    public static final int NOT_PARKED = -1;
+    public static final int UNKNOWN = -2;
+
+    private static volatile PlateDirectory instance = null;
+
+    private final LongIntHashMap parkedSlots = new LongIntHashMap(ParkingService.SPARE_END_SLOT, NOT_PARKED);
+    private final LongObjectHashMap<String> owners = new LongObjectHashMap<>(4 * ParkingService.SPARE_END_SLOT);
+    // Plates whose parked slot disagreed with the database on the previous reconcile pass,
+    // mapped to the slot the database had (NOT_PARKED for none). Guarded by this.
+    private LongIntHashMap suspects = new LongIntHashMap(16, UNKNOWN);
+
+    private PlateDirectory() {
+    }
+
+    public static PlateDirectory getInstance() throws SQLException {
+        PlateDirectory current = instance;
+        if (current == null) {
+            synchronized (PlateDirectory.class) {
+                current = instance;
+                if (current == null) {
+                    current = new PlateDirectory();
+                    try (Connection conn = DatabaseManager.getConnection()) {
+                        current.reload(conn);
+                    }
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // The process-wide instance if something has loaded it, else null. Does not load it.
+    static PlateDirectory loadedInstance() {
+        return instance;
+    }
+
+    // An empty directory for StateSnapshot to fill before installing it.
+    static PlateDirectory createDetached() {
+        return new PlateDirectory();
+    }
+
+    /**
+     * Installs a directory restored by {@link StateSnapshot} as the process-wide instance.
+     * @return false, and nothing is changed, if it has been loaded already.
+     */
+    static boolean install(PlateDirectory restored) {
+        synchronized (PlateDirectory.class) {
+            if (instance != null) {
+                return false;
+            }
+            instance = restored;
+            return true;
+        }
+    }
+
+    // For StateSnapshot, by plate code. Visits a consistent copy of both maps.
+    synchronized void forEachEntry(LongIntHashMap.EntryVisitor parked, LongObjectHashMap.EntryVisitor<String> owner) {
+        parkedSlots.forEach(parked);
+        owners.forEach(owner);
+    }
+
+    synchronized void restoreParked(long plateCode, int slotId) {
+        parkedSlots.put(plateCode, slotId);
+    }
+
+    synchronized void restoreOwner(long plateCode, String residentId) {
+        owners.put(plateCode, residentId);
+    }
+
+    public synchronized void reload(Connection conn) throws SQLException {
+        parkedSlots.clear();
+        owners.clear();
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT vehicle_number, resident_id FROM vehicle")) {
+                while (rs.next()) {
+                    long code = PlateCode.encode(rs.getString(1));
+                    String owner = rs.getString(2);
+                    if (code != PlateCode.INVALID && owner != null) {
+                        owners.put(code, owner);
+                    }
+                }
+            }
+            try (ResultSet rs = st.executeQuery("SELECT vehicle_number, Slot_id FROM parked_vehicle " +
+                    "UNION ALL SELECT vehicle_number, Slot_id FROM spare_parked_vehicle")) {
+                while (rs.next()) {
+                    long code = PlateCode.encode(rs.getString(1));
+                    if (code != PlateCode.INVALID) {
+                        parkedSlots.put(code, rs.getInt(2));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Corrects parked slots that disagree with the database's (actual: plate code -> slot, for
+     * every parked vehicle), e.g. cars parked or taken out at another terminal. As with
+     * SlotOccupancy.reconcile, a plate is only corrected once two passes in a row saw the same
+     * difference.
+     * @return how many plates were corrected.
+     */
+    synchronized int reconcileParked(LongIntHashMap actual) {
+        LongIntHashMap mismatched = new LongIntHashMap(16, UNKNOWN);
+        parkedSlots.forEach((code, slot) -> {
+            int actualSlot = actual.get(code);
+            if (actualSlot != slot) {
+                mismatched.put(code, actualSlot);
+            }
+        });
+        actual.forEach((code, slot) -> {
+            if (parkedSlots.get(code) != slot) {
+                mismatched.put(code, slot);
+            }
+        });
+        LongIntHashMap stillSuspect = new LongIntHashMap(16, UNKNOWN);
+        int[] fixed = {0};
+        mismatched.forEach((code, actualSlot) -> {
+            if (suspects.get(code) != actualSlot) {
+                stillSuspect.put(code, actualSlot);
+            } else if (actualSlot == NOT_PARKED) {
+                parkedSlots.remove(code);
+                fixed[0]++;
+            } else {
+                parkedSlots.put(code, actualSlot);
+                fixed[0]++;
+            }
+        });
+        suspects = stillSuspect;
+        return fixed[0];
+    }
+
+    /**
+     * @return the slot the vehicle is parked in, NOT_PARKED, or UNKNOWN if the plate cannot be encoded.
+     */
+    public synchronized int parkedSlotOf(String vehicleNumber) {
+        long code = PlateCode.encode(vehicleNumber);
+        return code == PlateCode.INVALID ? UNKNOWN : parkedSlots.get(code);
+    }
+
+    /**
+     * @return the owning resident's ID, or null if the plate is unregistered or cannot be encoded.
+     */
+    public synchronized String ownerOf(String vehicleNumber) {
+        return owners.get(PlateCode.encode(vehicleNumber));
+    }
+
+    /**
+     * Pre-check for plate uniqueness: false means no vehicle with this plate is registered, so the
+     * database need not be asked. True means it may be (or the plate cannot be encoded) and the
+     * caller should confirm with SQL.
+     */
+    public synchronized boolean mightBeRegistered(String vehicleNumber) {
+        long code = PlateCode.encode(vehicleNumber);
+        return code == PlateCode.INVALID || owners.containsKey(code);
+    }
+
+    public synchronized void vehicleRegistered(String vehicleNumber, String residentId) {
+        long code = PlateCode.encode(vehicleNumber);
+        if (code != PlateCode.INVALID && residentId != null) {
+            owners.put(code, residentId);
+        }
+    }
+
+    // The vehicle row is gone, so it can no longer be parked either.
+    public synchronized void vehicleRemoved(String vehicleNumber) {
+        long code = PlateCode.encode(vehicleNumber);
+        owners.remove(code);
+        parkedSlots.remove(code);
+    }
+
+    public synchronized void vehicleParked(String vehicleNumber, int slotId) {
+        long code = PlateCode.encode(vehicleNumber);
+        if (code != PlateCode.INVALID) {
+            parkedSlots.put(code, slotId);
+        }
+    }
+
+    public synchronized void vehicleUnparked(String vehicleNumber) {
+        parkedSlots.remove(PlateCode.encode(vehicleNumber));
+    }
+}
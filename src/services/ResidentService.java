@@ -1,45 +1,54 @@
 package services;
 
 import dao.ResidentDAO;
+import dao.VehicleDAO;
 import database.DatabaseManager;
 import database.TransactionManager;
+import journal.EventJournal;
 import model.Resident;
+import model.Vehicle;
 import ui.InputHandler;
+import ui.TableRenderer;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.Set;
 
 public final class ResidentService {
     private static final Scanner scanner = new Scanner(System.in);
-    private final ResidentDAO residentDAO;
+    private static final int MAX_RESIDENTS = 150;
+    private static final int MAX_RESIDENTS_PER_WING = 50;
+    private static final TableRenderer.Layout RESIDENT_LAYOUT = new TableRenderer.Layout(114,
+            new String[]{"Res ID", "First Name", "Last Name", "Phone No.", "Wing", "House No", "Subscription", "Vehicle Count"},
+            10, 15, 15, 12, 5, 10, 15, 0);
     private final VehicleService vehicleService;
 
 
     public ResidentService() {
-        this.residentDAO = new ResidentDAO();
         this.vehicleService = new VehicleService();
     }
 
     public void searchResident() {
         System.out.println("\n--- Search for a Resident ---");
         String residentId = InputHandler.getValidStringInput("Enter Resident ID to search: ");
-        try {
-            Resident resident = residentDAO.getResidentById(residentId);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Resident resident = new ResidentDAO(conn).getResidentById(residentId);
             System.out.println("\n--- Search Results ---");
 
             if (resident == null) {
                 System.out.println("No resident found with ID '" + residentId + "'.");
             } else {
-                System.out.println("------------------------------------------------------------------------------------------------------------------");
-                System.out.printf("%-10s | %-15s | %-15s | %-12s | %-5s | %-10s | %-15s | %s%n", "Res ID", "First Name", "Last Name", "Phone No.", "Wing", "House No", "Subscription", "Vehicle Count");
-                System.out.println("------------------------------------------------------------------------------------------------------------------");
-                displayResidentInfo(resident);
-                System.out.println("------------------------------------------------------------------------------------------------------------------");
+                TableRenderer table = new TableRenderer(RESIDENT_LAYOUT).header();
+                appendResidentRow(table, resident);
+                table.rule().flush();
             }
         } catch (SQLException e) {
             System.err.println("Database error during resident search: " + e.getMessage());
@@ -48,16 +57,13 @@ public final class ResidentService {
 
     public void addResident() {
         System.out.println("\n--- Add New Resident ---");
-        Connection conn = null;
         try {
-            conn = DatabaseManager.getConnection();
-            TransactionManager.beginTransaction(conn);
-            ResidentDAO residentDAOForTx = new ResidentDAO(conn);
-
-            if (residentDAOForTx.getResidentCount() >= 150) {
-                System.out.println("Cannot add new resident. The apartment is at full capacity (150 residents).");
-                TransactionManager.rollbackTransaction(conn);
-                return;
+            // Gather and validate everything first; the transaction below only re-checks and writes.
+            try (Connection conn = DatabaseManager.getConnection()) {
+                if (new ResidentDAO(conn).getResidentCount() >= MAX_RESIDENTS) {
+                    System.out.println("Cannot add new resident. The apartment is at full capacity (150 residents).");
+                    return;
+                }
             }
 
             String firstName = InputHandler.getValidStringInput("Enter First Name: ");
@@ -65,47 +71,91 @@ public final class ResidentService {
             String contactNumber = InputHandler.getValidPhoneNumberInput("Enter Phone Number: ");
             String wing = InputHandler.getValidWingInput();
 
-            if (residentDAOForTx.getResidentCountInWing(wing) >= 50) {
-                System.out.println("Cannot add resident to Wing " + wing + ". It is at full capacity (50 residents).");
-                TransactionManager.rollbackTransaction(conn);
-                return;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                if (new ResidentDAO(conn).getResidentCountInWing(wing) >= MAX_RESIDENTS_PER_WING) {
+                    System.out.println("Cannot add resident to Wing " + wing + ". It is at full capacity (50 residents).");
+                    return;
+                }
             }
+            List<Vehicle> vehicles = vehicleService.collectVehiclesForNewResident();
+            List<Vehicle> savedVehicles = new ArrayList<>();
+
+            // Why the resident was not added, printed after the transaction so a retry doesn't print twice.
+            String[] rejection = new String[1];
+            Resident newResident = TransactionManager.runInTransaction(conn -> {
+                savedVehicles.clear(); // in case this is a retry
+                rejection[0] = null;
+                ResidentDAO residentDAOForTx = new ResidentDAO(conn);
+                // Another admin may have added residents while we were typing.
+                if (residentDAOForTx.getResidentCount() >= MAX_RESIDENTS) {
+                    rejection[0] = "Cannot add new resident. The apartment reached full capacity in the meantime.";
+                    return null;
+                }
+                if (residentDAOForTx.phoneNumberExists(contactNumber)) {
+                    rejection[0] = "Error: Phone number '" + contactNumber + "' was registered by someone else in the meantime.";
+                    return null;
+                }
+                int wingCount = residentDAOForTx.getResidentCountInWing(wing);
+                if (wingCount >= MAX_RESIDENTS_PER_WING) {
+                    rejection[0] = "Cannot add resident to Wing " + wing + ". It reached full capacity in the meantime.";
+                    return null;
+                }
 
-            int latestIdNum = residentDAOForTx.getLatestResidentIdNumber();
-            String residentId = String.format("RES%03d", latestIdNum + 1);
-            int houseNumber = residentDAOForTx.getResidentCountInWing(wing) + 1;
-            String username = firstName.toLowerCase() + houseNumber;
-            String password = contactNumber.substring(contactNumber.length() - 4) + "@" + wing + "#" + houseNumber;
-
-            Resident newResident = new Resident(residentId, firstName, lastName, contactNumber, wing, houseNumber, "Silver", BigDecimal.ZERO, null, null, 0, username, password);
+                int latestIdNum = residentDAOForTx.getLatestResidentIdNumber();
+                String residentId = String.format("RES%03d", latestIdNum + 1);
+                int houseNumber = wingCount + 1;
+                String username = firstName.toLowerCase() + houseNumber;
+                String password = contactNumber.substring(contactNumber.length() - 4) + "@" + wing + "#" + houseNumber;
 
-            if (residentDAOForTx.addResident(newResident)) {
-                System.out.println("Resident added successfully!");
-                System.out.println("Generated Resident ID: " + residentId);
-                System.out.println("Generated Username: " + username);
-                System.out.println("Generated Password: " + password);
+                Resident resident = new Resident(residentId, firstName, lastName, contactNumber, wing, houseNumber, "Silver", BigDecimal.ZERO, null, null, 0, username, password);
+                if (!residentDAOForTx.addResident(resident)) {
+                    rejection[0] = "Failed to add the resident.";
+                    return null;
+                }
+                savedVehicles.addAll(vehicleService.addVehiclesForNewResident(residentId, vehicles, conn));
+                return resident;
+            });
 
-                vehicleService.addVehiclesForNewResident(residentId, conn);
-                TransactionManager.commitTransaction(conn);
-            } else {
-                TransactionManager.rollbackTransaction(conn);
+            if (newResident == null) {
+                if (rejection[0] != null) {
+                    System.out.println(rejection[0]);
+                }
+                return;
+            }
+            Set<String> savedNumbers = new HashSet<>();
+            for (Vehicle vehicle : savedVehicles) {
+                savedNumbers.add(vehicle.getVehicleNumber());
+            }
+            for (Vehicle draft : vehicles) {
+                if (savedNumbers.contains(draft.getVehicleNumber())) {
+                    System.out.println(draft.getVehicleType() + " '" + draft.getVehicleNumber() + "' added.");
+                } else {
+                    System.out.println("Skipped '" + draft.getVehicleNumber() + "': it was registered by someone else in the meantime.");
+                }
+            }
+            PhoneDirectory.getInstance().numberAdded(contactNumber);
+            PlateDirectory plates = PlateDirectory.getInstance();
+            EventJournal journal = EventJournal.getInstance();
+            for (Vehicle vehicle : savedVehicles) {
+                plates.vehicleRegistered(vehicle.getVehicleNumber(), vehicle.getResidentId());
+                journal.registered(vehicle.getVehicleNumber(), vehicle.getResidentId());
             }
+            System.out.println("Resident added successfully!");
+            System.out.println("Generated Resident ID: " + newResident.getResidentId());
+            System.out.println("Generated Username: " + newResident.getUsername());
+            System.out.println("Generated Password: " + newResident.getPassword());
         } catch (SQLException e) {
             System.err.println("Database error while adding resident: " + e.getMessage());
-            TransactionManager.rollbackTransaction(conn);
-        } finally {
-            TransactionManager.endTransaction(conn);
         }
     }
 
     public void upgradeSubscription(String residentId) {
-        Connection conn = null;
         try {
-            conn = DatabaseManager.getConnection();
-            ResidentDAO residentDAOForTx = new ResidentDAO(conn);
-
-            // First, fetch the resident to ensure they exist
-            Resident resident = residentDAOForTx.getResidentById(residentId);
+            Resident resident;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                // First, fetch the resident to ensure they exist
+                resident = new ResidentDAO(conn).getResidentById(residentId);
+            }
 
             // MODIFIED: Check if resident exists BEFORE printing the title
             if (resident == null) {
@@ -115,12 +165,10 @@ public final class ResidentService {
 
             // Now that we know the resident exists, we can proceed
             System.out.println("\n--- Upgrade Resident Subscription ---");
-            TransactionManager.beginTransaction(conn);
 
             System.out.printf("Resident %s (%s %s) is currently on the '%s' plan.%n", resident.getResidentId(), resident.getFirstName(), resident.getLastName(), resident.getSubscriptionTier());
             if ("Platinum".equals(resident.getSubscriptionTier())) {
                 System.out.println("This resident already has the highest tier plan (Platinum).");
-                TransactionManager.rollbackTransaction(conn);
                 return;
             }
 
@@ -133,7 +181,6 @@ public final class ResidentService {
 
             if (choice == 3) {
                 System.out.println("Upgrade cancelled.");
-                TransactionManager.rollbackTransaction(conn);
                 return;
             }
 
@@ -142,7 +189,6 @@ public final class ResidentService {
 
             if (newTier.equals(resident.getSubscriptionTier())) {
                 System.out.println("Resident already has this plan. No changes made.");
-                TransactionManager.rollbackTransaction(conn);
                 return;
             }
 
@@ -157,48 +203,60 @@ public final class ResidentService {
                 System.out.println("Invalid input. Please enter 'y' for yes or 'n' for no.");
             }
 
-            if (confirm.equalsIgnoreCase("y")) {
-                long currentTime = System.currentTimeMillis();
-                Date startDate = new Date(currentTime);
-
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(startDate);
-                cal.add(Calendar.MONTH, 6);
-                Date validUntil = new Date(cal.getTimeInMillis());
+            if (!confirm.equalsIgnoreCase("y")) {
+                System.out.println("Upgrade cancelled.");
+                return;
+            }
 
-                if (residentDAOForTx.updateSubscription(residentId, newTier, cost, startDate, validUntil)) {
-                    System.out.println("✓ Subscription upgraded successfully!");
-                    TransactionManager.commitTransaction(conn);
-                } else {
-                    System.err.println("✗ Subscription upgrade failed.");
-                    TransactionManager.rollbackTransaction(conn);
+            long currentTime = System.currentTimeMillis();
+            Date startDate = new Date(currentTime);
+
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(startDate);
+            cal.add(Calendar.MONTH, 6);
+            Date validUntil = new Date(cal.getTimeInMillis());
+
+            // Null once the upgrade is saved, otherwise why it was not. Printed after the transaction
+            // so a retried attempt doesn't print twice.
+            String rejection = TransactionManager.runInTransaction(conn -> {
+                ResidentDAO residentDAOForTx = new ResidentDAO(conn);
+                // Only apply the upgrade to the plan the admin was looking at. The row stays locked
+                // until commit, so a concurrent upgrade waits and then sees this one's tier.
+                Resident current = residentDAOForTx.lockResident(residentId);
+                if (current == null || !Objects.equals(current.getSubscriptionTier(), resident.getSubscriptionTier())) {
+                    return "✗ The resident's plan was changed by someone else in the meantime. Please try again.";
+                }
+                if (!residentDAOForTx.updateSubscription(residentId, newTier, cost, startDate, validUntil)) {
+                    return "✗ Subscription upgrade failed.";
                 }
+                return null;
+            });
+            if (rejection == null) {
+                GuestWaitingList.getInstance().residentTierChanged(residentId, newTier);
+                System.out.println("✓ Subscription upgraded successfully!");
             } else {
-                System.out.println("Upgrade cancelled.");
-                TransactionManager.rollbackTransaction(conn);
+                System.out.println(rejection);
             }
         } catch (SQLException e) {
             System.err.println("Database error during subscription upgrade: " + e.getMessage());
-            TransactionManager.rollbackTransaction(conn);
-        } finally {
-            TransactionManager.endTransaction(conn);
         }
     }
 
     public void editResident() {
         String residentId = InputHandler.getValidStringInput("Enter the Resident ID to edit (e.g., RES001): ").toUpperCase();
-        Connection conn = null;
         try {
-            conn = DatabaseManager.getConnection();
-            TransactionManager.beginTransaction(conn);
-            ResidentDAO residentDAOForTx = new ResidentDAO(conn);
-            Resident existingResident = residentDAOForTx.getResidentById(residentId);
+            Resident existingResident;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                existingResident = new ResidentDAO(conn).getResidentById(residentId);
+            }
 
             if (existingResident == null) {
                 System.out.println("Resident with ID '" + residentId + "' not found.");
-                TransactionManager.rollbackTransaction(conn);
                 return;
             }
+            String oldFirstName = existingResident.getFirstName();
+            String oldLastName = existingResident.getLastName();
+            String oldContactNumber = existingResident.getContactNumber();
 
             System.out.println("\n--- Editing Resident: " + existingResident.getFirstName() + " " + existingResident.getLastName() + " ---");
             System.out.println("Press Enter to keep the current value.");
@@ -216,32 +274,52 @@ public final class ResidentService {
             existingResident.setUsername(newUsername);
             existingResident.setPassword(newPassword);
 
-            if (residentDAOForTx.updateResident(existingResident)) {
-                System.out.println("Resident updated successfully!");
-                TransactionManager.commitTransaction(conn);
-            } else {
-                TransactionManager.rollbackTransaction(conn);
+            // Null once the edit is saved, otherwise why it was not (printed after the transaction).
+            String rejection = TransactionManager.runInTransaction(conn -> {
+                ResidentDAO residentDAOForTx = new ResidentDAO(conn);
+                // Don't overwrite an edit another admin saved while this one was being typed. The
+                // locked row can't change between this check and the update.
+                Resident current = residentDAOForTx.lockResident(residentId);
+                if (current == null) {
+                    return "Resident '" + residentId + "' was deleted in the meantime.";
+                }
+                if (!Objects.equals(current.getFirstName(), oldFirstName)
+                        || !Objects.equals(current.getLastName(), oldLastName)
+                        || !Objects.equals(current.getContactNumber(), oldContactNumber)) {
+                    return "Resident '" + residentId + "' was edited by someone else in the meantime. Please try again.";
+                }
+                if (!newContactNumber.equals(oldContactNumber) && residentDAOForTx.phoneNumberExists(newContactNumber)) {
+                    return "Error: Phone number '" + newContactNumber + "' was registered by someone else in the meantime.";
+                }
+                if (!residentDAOForTx.updateResident(existingResident)) {
+                    return "Failed to update resident '" + residentId + "'.";
+                }
+                return null;
+            });
+            if (rejection != null) {
+                System.out.println(rejection);
+                return;
             }
+            if (!newContactNumber.equals(oldContactNumber)) {
+                PhoneDirectory phones = PhoneDirectory.getInstance();
+                phones.numberRemoved(oldContactNumber);
+                phones.numberAdded(newContactNumber);
+            }
+            System.out.println("Resident updated successfully!");
         } catch (SQLException e) {
             System.err.println("Database error while editing resident: " + e.getMessage());
-            TransactionManager.rollbackTransaction(conn);
-        } finally {
-            TransactionManager.endTransaction(conn);
         }
     }
 
     public void deleteResident() {
         String residentId = InputHandler.getValidStringInput("Enter the Resident ID to delete: ").toUpperCase();
-        Connection conn = null;
         try {
-            conn = DatabaseManager.getConnection();
-            TransactionManager.beginTransaction(conn);
-            ResidentDAO residentDAOForTx = new ResidentDAO(conn);
-
-            Resident residentToDelete = residentDAOForTx.getResidentById(residentId);
+            Resident residentToDelete;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                residentToDelete = new ResidentDAO(conn).getResidentById(residentId);
+            }
             if (residentToDelete == null) {
                 System.out.println("Resident with ID '" + residentId + "' not found.");
-                TransactionManager.rollbackTransaction(conn);
                 return;
             }
 
@@ -259,23 +337,55 @@ public final class ResidentService {
                 }
             }
 
-            if (choice.equals("y")) {
-                if (residentDAOForTx.deleteResident(residentId)) {
-                    System.out.println("Resident '" + residentId + "' and all associated vehicles deleted successfully.");
-                    TransactionManager.commitTransaction(conn);
-                } else {
-                    System.err.println("Error: Deletion failed in the database.");
-                    TransactionManager.rollbackTransaction(conn);
-                }
-            } else { // This block is now only reached if the user explicitly enters 'n'
+            if (!choice.equals("y")) { // Only reached if the user explicitly enters 'n'
                 System.out.println("Deletion cancelled.");
-                TransactionManager.rollbackTransaction(conn);
+                return;
+            }
+
+            // Their vehicles go with them, so remember which plates and slots to forget afterwards.
+            List<Vehicle> ownedVehicles = new ArrayList<>();
+            OccupancyCounters counters = OccupancyCounters.getInstance();
+            List<Integer> parkedSlots;
+            counters.beginUpdate();
+            try {
+                parkedSlots = TransactionManager.runInTransaction(conn -> {
+                    VehicleDAO vehicleDAO = new VehicleDAO(conn);
+                    ownedVehicles.clear();
+                    ownedVehicles.addAll(vehicleDAO.getVehiclesByResidentId(residentId));
+                    List<Integer> slots = vehicleDAO.getParkedSlotsForResident(residentId);
+                    return new ResidentDAO(conn).deleteResident(residentId) ? slots : null;
+                });
+                if (parkedSlots != null) {
+                    for (int slotId : parkedSlots) {
+                        counters.vehicleLeft(slotId, residentToDelete.getWing());
+                    }
+                }
+            } finally {
+                counters.endUpdate();
             }
+            if (parkedSlots == null) {
+                System.err.println("Error: Deletion failed in the database.");
+                return;
+            }
+            SlotOccupancy occupancy = SlotOccupancy.getInstance();
+            for (int slotId : parkedSlots) {
+                occupancy.release(slotId);
+            }
+            PhoneDirectory.getInstance().numberRemoved(residentToDelete.getContactNumber());
+            PlateDirectory plates = PlateDirectory.getInstance();
+            EventJournal journal = EventJournal.getInstance();
+            for (Vehicle vehicle : ownedVehicles) {
+                int slotId = plates.parkedSlotOf(vehicle.getVehicleNumber());
+                plates.vehicleRemoved(vehicle.getVehicleNumber());
+                if (slotId > 0) {
+                    journal.unparked(vehicle.getVehicleNumber(), slotId, residentId,
+                            slotId >= ParkingService.SPARE_START_SLOT ? null : residentToDelete.getWing(), null);
+                }
+                journal.removed(vehicle.getVehicleNumber(), residentId);
+            }
+            System.out.println("Resident '" + residentId + "' and all associated vehicles deleted successfully.");
         } catch (SQLException e) {
             System.err.println("Database error during deletion: " + e.getMessage());
-            TransactionManager.rollbackTransaction(conn);
-        } finally {
-            TransactionManager.endTransaction(conn);
         }
     }
 
@@ -283,29 +393,26 @@ public final class ResidentService {
         String title = (wing != null) ? "\n--- Residents in Wing " + wing + " ---" : "\n--- All Residents ---";
         System.out.println(title);
 
-        try {
-            List<Resident> residents = residentDAO.getAllResidents(wing);
-            System.out.println("------------------------------------------------------------------------------------------------------------------");
-            System.out.printf("%-10s | %-15s | %-15s | %-12s | %-5s | %-10s | %-15s | %s%n", "Res ID", "First Name", "Last Name", "Phone No.", "Wing", "House No", "Subscription", "Vehicle Count");
-            System.out.println("------------------------------------------------------------------------------------------------------------------");
+        try (Connection conn = DatabaseManager.getConnection()) {
+            List<Resident> residents = new ResidentDAO(conn).getAllResidents(wing);
+            TableRenderer table = new TableRenderer(RESIDENT_LAYOUT).header();
 
             if (residents.isEmpty()) {
-                System.out.println("No residents found for this selection.");
+                table.line("No residents found for this selection.");
             } else {
                 for (Resident resident : residents) {
-                    displayResidentInfo(resident);
+                    appendResidentRow(table, resident);
                 }
             }
-            System.out.println("------------------------------------------------------------------------------------------------------------------");
+            table.rule().flush();
         } catch (SQLException e) {
             System.err.println("Database error while viewing residents: " + e.getMessage());
         }
     }
 
-    private void displayResidentInfo(Resident resident) {
-        System.out.printf("%-10s | %-15s | %-15s | %-12s | %-5s | %-10d | %-15s | %d%n",
-                resident.getResidentId(), resident.getFirstName(), resident.getLastName(),
-                resident.getContactNumber(), resident.getWing(), resident.getHouseNumber(),
-                resident.getSubscriptionTier(), resident.getVehicleCount());
+    private void appendResidentRow(TableRenderer table, Resident resident) {
+        table.cell(resident.getResidentId()).cell(resident.getFirstName()).cell(resident.getLastName())
+                .cell(resident.getContactNumber()).cell(resident.getWing()).cell(resident.getHouseNumber())
+                .cell(resident.getSubscriptionTier()).cell(resident.getVehicleCount()).endRow();
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package services;
+
+import java.sql.SQLException;
+
+/**
+ * Picks parking slots automatically so users no longer have to guess free slot numbers.
+ * Resident slots 1-1200 are split into one block per wing (A: 1-400, B: 401-800, C: 801-1200).
+ * Each house gets an anchor inside its wing's block, and allocation returns the free slot
+ * closest to that anchor. All searches go through the segment trees kept by {@link SlotOccupancy}.
+ */
+public final class SlotAllocator {
+
+    // ResidentService caps each wing at 50 houses, which gives every house a run of 8 slots.
+    private static final int HOUSES_PER_WING = 50;
+
+    private SlotAllocator() {
+    }
+
+    public static int getWingFirstSlot(String wing) {
+        return switch (wing) {
+            case "B" -> ParkingService.WING_A_CAPACITY + 1;
+            case "C" -> ParkingService.WING_A_CAPACITY + ParkingService.WING_B_CAPACITY + 1;
+            default -> 1;
+        };
+    }
+
+    public static int getWingLastSlot(String wing) {
+        return switch (wing) {
+            case "B" -> ParkingService.WING_A_CAPACITY + ParkingService.WING_B_CAPACITY;
+            case "C" -> ParkingService.TOTAL_RESIDENT_SLOTS;
+            default -> ParkingService.WING_A_CAPACITY;
+        };
+    }
+
+    /**
+     * The slot a resident would ideally park in: the start of their house's run within their wing.
+     */
+    public static int getResidentAnchor(String wing, int houseNumber) {
+        int first = getWingFirstSlot(wing);
+        int last = getWingLastSlot(wing);
+        int slotsPerHouse = Math.max(1, (last - first + 1) / HOUSES_PER_WING);
+        int anchor = first + (Math.max(houseNumber, 1) - 1) * slotsPerHouse;
+        return Math.min(anchor, last);
+    }
+
+    /**
+     * Claims the free resident slot nearest the resident's house, staying in their own wing if
+     * possible and falling back to the nearest slot in the other wings. The caller owns the
+     * returned slot and must release it if the database insert does not go through.
+     * @return the claimed slot, or -1 if all resident slots are taken.
+     */
+    public static int claimResidentSlot(String wing, int houseNumber) throws SQLException {
+        SlotOccupancy occupancy = SlotOccupancy.getInstance();
+        int anchor = getResidentAnchor(wing, houseNumber);
+        int slot = occupancy.claimNearest(anchor, getWingFirstSlot(wing), getWingLastSlot(wing));
+        if (slot < 0) {
+            slot = occupancy.claimNearest(anchor, 1, ParkingService.TOTAL_RESIDENT_SLOTS);
+        }
+        return slot;
+    }
+
+    /**
+     * Claims the free guest slot nearest the anchor (use SPARE_START_SLOT when there is no preference).
+     * @return the claimed slot, or -1 if all guest slots are taken.
+     */
+    public static int claimGuestSlot(int anchor) throws SQLException {
+        return SlotOccupancy.getInstance().claimNearest(anchor, ParkingService.SPARE_START_SLOT, ParkingService.SPARE_END_SLOT);
+    }
+
+    /**
+     * The slot {@link #claimResidentSlot} would pick right now, without claiming it.
+     */
+    public static int suggestResidentSlot(String wing, int houseNumber) throws SQLException {
+        SlotOccupancy occupancy = SlotOccupancy.getInstance();
+        int anchor = getResidentAnchor(wing, houseNumber);
+        int slot = occupancy.nearestFreeSlot(anchor, getWingFirstSlot(wing), getWingLastSlot(wing));
+        if (slot < 0) {
+            slot = occupancy.nearestFreeSlot(anchor, 1, ParkingService.TOTAL_RESIDENT_SLOTS);
+        }
+        return slot;
+    }
+
+    /**
+     * Nearest free slot to the given one inside [fromSlot, toSlot], without claiming it. Used for
+     * the automatic suggestion and when a manually chosen slot turns out to be occupied.
+     */
+    public static int suggestNearby(int slot, int fromSlot, int toSlot) throws SQLException {
+        return SlotOccupancy.getInstance().nearestFreeSlot(slot, fromSlot, toSlot);
+    }
+}
@@ -0,0 +1,303 @@
+package services;
+
+import database.DatabaseManager;
+import ds.FreeSlotSegmentTree;
+import ds.SlotBitmap;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide view of which parking slots are occupied.
+ * It is loaded once from parked_vehicle and spare_parked_vehicle and then kept current by
+ * the park/unpark code paths. Slots taken or freed by other terminals are brought back in line
+ * by {@link #reconcile}, which the occupancy reconciler runs every pass.
+ *
+ * The bitmap is the source of truth and is only changed with compare-and-set, so parallel
+ * gates can claim slots without a global lock: whoever flips a slot's bit owns it, and the
+ * database insert that follows is reconciled against the table's unique Slot_id.
+ * The per-block segment trees are an index over the bitmap for nearest-slot searches; each
+ * tree has its own lock and is re-synced from the bitmap after every change.
+ */
+public final class SlotOccupancy {
+
+    public static final int TOTAL_SLOTS = ParkingService.SPARE_END_SLOT;
+
+    private static volatile SlotOccupancy instance = null;
+
+    private final SlotBitmap bitmap = new SlotBitmap(TOTAL_SLOTS);
+
+    // One free-slot tree per wing block plus one for guest parking, used for nearest-slot searches.
+    private final FreeSlotSegmentTree[] blocks = {
+            new FreeSlotSegmentTree(1, ParkingService.WING_A_CAPACITY),
+            new FreeSlotSegmentTree(ParkingService.WING_A_CAPACITY + 1, ParkingService.WING_A_CAPACITY + ParkingService.WING_B_CAPACITY),
+            new FreeSlotSegmentTree(ParkingService.WING_A_CAPACITY + ParkingService.WING_B_CAPACITY + 1, ParkingService.TOTAL_RESIDENT_SLOTS),
+            new FreeSlotSegmentTree(ParkingService.SPARE_START_SLOT, ParkingService.SPARE_END_SLOT)
+    };
+
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder claimConflicts = new LongAdder();
+    private final LongAdder reconciled = new LongAdder();
+
+    // Slots whose bit disagreed with the database on the previous reconcile pass. Guarded by this.
+    private long[] suspects = new long[(TOTAL_SLOTS >> 6) + 1];
+
+    private SlotOccupancy() {
+    }
+
+    public static SlotOccupancy getInstance() throws SQLException {
+        SlotOccupancy current = instance;
+        if (current == null) {
+            synchronized (SlotOccupancy.class) {
+                current = instance;
+                if (current == null) {
+                    current = new SlotOccupancy();
+                    try (Connection conn = DatabaseManager.getConnection()) {
+                        current.reload(conn);
+                    }
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates an empty, unregistered occupancy table. Meant for benchmarks and tools that
+     * must not touch the process-wide instance or the database.
+     */
+    public static SlotOccupancy createDetached() {
+        return new SlotOccupancy();
+    }
+
+    /**
+     * Installs the process-wide instance from a {@link StateSnapshot} instead of the database.
+     * @return false, and nothing is changed, if it has been loaded already.
+     */
+    static boolean install(long[] words) {
+        synchronized (SlotOccupancy.class) {
+            if (instance != null) {
+                return false;
+            }
+            SlotOccupancy restored = new SlotOccupancy();
+            restored.bitmap.load(words);
+            restored.rebuildTrees();
+            instance = restored;
+            return true;
+        }
+    }
+
+    // The process-wide instance if something has loaded it, else null. Does not load it.
+    static SlotOccupancy loadedInstance() {
+        return instance;
+    }
+
+    /**
+     * Rebuilds the bitmap and the free-slot trees from the database.
+     * Only call this while no park/unpark is in flight, e.g. at startup.
+     */
+    public void reload(Connection conn) throws SQLException {
+        String query = "SELECT Slot_id FROM parked_vehicle UNION ALL SELECT Slot_id FROM spare_parked_vehicle";
+        long[] words = new long[(TOTAL_SLOTS >> 6) + 1];
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(query)) {
+            while (rs.next()) {
+                int slotId = rs.getInt(1);
+                if (slotId >= 1 && slotId <= TOTAL_SLOTS) {
+                    words[slotId >> 6] |= 1L << slotId;
+                }
+            }
+        }
+        bitmap.load(words);
+        rebuildTrees();
+    }
+
+    public boolean isOccupied(int slotId) {
+        return bitmap.isSet(slotId);
+    }
+
+    public int occupiedCount(int fromSlot, int toSlot) {
+        return bitmap.count(fromSlot, toSlot);
+    }
+
+    /**
+     * @return the lowest free slot in [fromSlot, toSlot], or -1 if the range is full.
+     */
+    public int nextFreeSlot(int fromSlot, int toSlot) {
+        return bitmap.nextClear(fromSlot, toSlot);
+    }
+
+    /**
+     * Finds the free slot in [fromSlot, toSlot] that is closest to the anchor, searching
+     * each wing/guest block's segment tree in O(log n). The answer is a hint: another
+     * thread may claim the slot before the caller does, so use {@link #claimNearest} to
+     * actually take one.
+     * @return the slot number, or -1 if the range is full.
+     */
+    public int nearestFreeSlot(int anchor, int fromSlot, int toSlot) {
+        int best = -1;
+        for (FreeSlotSegmentTree block : blocks) {
+            int lo = Math.max(fromSlot, block.getFirstSlot());
+            int hi = Math.min(toSlot, block.getLastSlot());
+            if (lo > hi) {
+                continue;
+            }
+            int above;
+            int below;
+            synchronized (block) {
+                if (block.freeCount() == 0) {
+                    continue;
+                }
+                above = block.firstFreeAtOrAfter(Math.max(anchor, lo));
+                below = block.lastFreeAtOrBefore(Math.min(anchor, hi));
+            }
+            if (above > hi) {
+                above = -1;
+            }
+            if (below < lo) {
+                below = -1;
+            }
+            best = closer(anchor, best, closer(anchor, below, above));
+        }
+        return best;
+    }
+
+    /**
+     * Atomically claims one specific slot.
+     * @return true if the caller now owns the slot, false if it was already taken.
+     */
+    public boolean tryClaim(int slotId) {
+        claims.increment();
+        boolean won = bitmap.set(slotId);
+        if (!won) {
+            claimConflicts.increment();
+        }
+        syncTree(slotId);
+        return won;
+    }
+
+    /**
+     * Claims the free slot nearest the anchor in [fromSlot, toSlot], retrying with the next
+     * candidate whenever another thread wins the race for the same slot.
+     * @return the claimed slot, or -1 if the range is full.
+     */
+    public int claimNearest(int anchor, int fromSlot, int toSlot) {
+        while (true) {
+            int candidate = nearestFreeSlot(anchor, fromSlot, toSlot);
+            if (candidate < 0) {
+                return -1;
+            }
+            if (tryClaim(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Gives back a slot: either the vehicle left (after the delete was committed) or a claim
+     * was abandoned because its insert failed.
+     */
+    public void release(int slotId) {
+        bitmap.clear(slotId);
+        syncTree(slotId);
+    }
+
+    /**
+     * Corrects bits that disagree with the database's occupied slots (actualWords, one bit per
+     * slot as in SlotBitmap), e.g. a slot another terminal took or freed, or a claim whose insert
+     * lost to another terminal. A slot is only corrected once two passes in a row have seen the
+     * same difference, so a claim of this process that has not committed yet is left alone.
+     * @return how many slots were corrected.
+     */
+    synchronized int reconcile(long[] actualWords) {
+        long[] current = bitmap.toWords();
+        long[] mismatched = new long[current.length];
+        int fixed = 0;
+        for (int i = 0; i < current.length; i++) {
+            long actual = i < actualWords.length ? actualWords[i] : 0L;
+            mismatched[i] = current[i] ^ actual;
+            long confirmed = mismatched[i] & suspects[i];
+            mismatched[i] &= ~confirmed;
+            while (confirmed != 0) {
+                int bit = Long.numberOfTrailingZeros(confirmed);
+                confirmed &= confirmed - 1;
+                int slotId = (i << 6) | bit;
+                if (slotId < 1 || slotId > TOTAL_SLOTS) {
+                    continue;
+                }
+                if ((actual & (1L << bit)) != 0) {
+                    bitmap.set(slotId);
+                } else {
+                    bitmap.clear(slotId);
+                }
+                syncTree(slotId);
+                fixed++;
+            }
+        }
+        suspects = mismatched;
+        reconciled.add(fixed);
+        return fixed;
+    }
+
+    public long getReconciledCount() {
+        return reconciled.sum();
+    }
+
+    public long getClaimCount() {
+        return claims.sum();
+    }
+
+    public long getClaimConflictCount() {
+        return claimConflicts.sum();
+    }
+
+    // Copies the slot's current bit into its tree. Reading the bit under the tree's lock means
+    // the last sync to run always leaves the tree matching the bitmap, whatever the interleaving.
+    private void syncTree(int slotId) {
+        FreeSlotSegmentTree block = blockFor(slotId);
+        synchronized (block) {
+            block.setOccupied(slotId, bitmap.isSet(slotId));
+        }
+    }
+
+    private void rebuildTrees() {
+        for (FreeSlotSegmentTree block : blocks) {
+            synchronized (block) {
+                block.reset();
+                for (int slot = block.getFirstSlot(); slot <= block.getLastSlot(); slot++) {
+                    if (bitmap.isSet(slot)) {
+                        block.setOccupied(slot, true);
+                    }
+                }
+            }
+        }
+    }
+
+    private FreeSlotSegmentTree blockFor(int slotId) {
+        for (FreeSlotSegmentTree block : blocks) {
+            if (block.contains(slotId)) {
+                return block;
+            }
+        }
+        throw new IllegalArgumentException("Slot " + slotId + " does not belong to any parking block.");
+    }
+
+    // Picks whichever candidate is nearer the anchor; -1 means "no candidate". Ties go to the higher slot.
+    private static int closer(int anchor, int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        int distanceA = Math.abs(a - anchor);
+        int distanceB = Math.abs(b - anchor);
+        if (distanceA != distanceB) {
+            return distanceA < distanceB ? a : b;
+        }
+        return Math.max(a, b);
+    }
+}
@@ -0,0 +1,484 @@
+package services;
+
+import dao.ParkingDAO;
+import database.DatabaseManager;
+import ds.LongIntHashMap;
+import ds.LongObjectHashMap;
+import ds.PlateCode;
+import journal.EventJournal;
+import journal.JournalEvent;
+import model.Vehicle;
+import model.WaitingListEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Warm start for a restarted terminal. The in-memory occupancy state (PlateDirectory's
+ * plate -> slot and plate -> owner maps, OccupancyCounters and the GuestWaitingList) is written
+ * to one compact binary file every INTERVAL_MILLIS and on exit. At start-up the file is read, the
+ * {@link EventJournal} events recorded after it are replayed on top, and the result is checked
+ * against the database in a single round trip before it is used:
+ *
+ *  - the parked vehicles and the vehicle owners are compared by row count and an XOR of
+ *    CRC32(plate@slot) / CRC32(plate@resident_id), computed by MySQL and here. Only plates of the
+ *    LLDDLLDDDD form count, as PlateDirectory cannot hold any others;
+ *  - SlotOccupancy's bitmap is not stored but rebuilt from the verified plate -> slot map, plus
+ *    the slots of parked vehicles with other plates, read in the same round trip. A stale bit in
+ *    the live bitmap therefore never reaches the snapshot;
+ *  - the occupancy counts are read in the same round trip and used as they are, since wing
+ *    counts follow the owners' wings, which the journal does not track;
+ *  - the waiting list is brought up to date from its high-water mark (GuestWaitingList.sync).
+ *
+ * If anything does not match (another terminal changed things, or the file is missing or
+ * damaged) nothing is installed and everything loads from the database on first use as before.
+ */
+public final class StateSnapshot {
+
+    private static final Path FILE = Paths.get(System.getProperty("aptparkx.snapshot.file", "aptparkx-state.snap"));
+    private static final long INTERVAL_MILLIS = Long.getLong("aptparkx.snapshot.intervalMillis", 300_000L);
+
+    private static final int MAGIC = 0x41505331; // "APS1"
+    private static final int VERSION = 2;
+
+    // The plates PlateCode can encode; case-sensitive, like PlateCode.
+    private static final String TRACKED_PLATE = "REGEXP_LIKE(vehicle_number, '^[A-Z]{2}[0-9]{2}[A-Z]{2}[0-9]{4}$', 'c')";
+    private static final String ALL_PARKED = "(SELECT vehicle_number, Slot_id FROM parked_vehicle UNION ALL SELECT vehicle_number, Slot_id FROM spare_parked_vehicle) ap";
+    private static final String PARKED_FINGERPRINT_QUERY = "SELECT COUNT(*), COALESCE(BIT_XOR(CRC32(CONCAT(vehicle_number, '@', Slot_id))), 0) " +
+            "FROM " + ALL_PARKED + " WHERE " + TRACKED_PLATE;
+    private static final String OWNER_FINGERPRINT_QUERY = "SELECT COUNT(*), COALESCE(BIT_XOR(CRC32(CONCAT(vehicle_number, '@', resident_id))), 0) " +
+            "FROM vehicle WHERE resident_id IS NOT NULL AND " + TRACKED_PLATE;
+    private static final String UNTRACKED_SLOTS_QUERY = "SELECT Slot_id FROM " + ALL_PARKED + " WHERE NOT " + TRACKED_PLATE;
+
+    private static final StateSnapshot INSTANCE = new StateSnapshot();
+
+    // A point-in-time copy of what the last restore and the last write did.
+    public static final class Stats {
+        public final boolean warmStart;
+        public final String restoreNote;
+        public final double restoreMillis;
+        public final long snapshotsWritten;
+        public final long lastWriteBytes;
+        public final double lastWriteMillis;
+
+        Stats(boolean warmStart, String restoreNote, double restoreMillis, long snapshotsWritten, long lastWriteBytes, double lastWriteMillis) {
+            this.warmStart = warmStart;
+            this.restoreNote = restoreNote;
+            this.restoreMillis = restoreMillis;
+            this.snapshotsWritten = snapshotsWritten;
+            this.lastWriteBytes = lastWriteBytes;
+            this.lastWriteMillis = lastWriteMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s start in %.1fms (%s), written=%d, lastBytes=%d, lastWrite=%.1fms",
+                    warmStart ? "warm" : "cold", restoreMillis, restoreNote, snapshotsWritten, lastWriteBytes, lastWriteMillis);
+        }
+    }
+
+    // Everything the file holds. Plates are kept as PlateCodes, as PlateDirectory does.
+    private static final class State {
+        long createdAtMillis;
+        long journalSequence;
+        LongIntHashMap parkedSlots;
+        LongObjectHashMap<String> owners;
+        int[] counts;
+        int waitlistHighWaterMark;
+        List<WaitingListEntry> waitlist;
+    }
+
+    private ScheduledExecutorService writer;
+
+    // Guarded by this.
+    private boolean warmStart;
+    private String restoreNote = "not attempted";
+    private double restoreMillis;
+    private long snapshotsWritten;
+    private long lastWriteBytes;
+    private double lastWriteMillis;
+
+    private StateSnapshot() {
+    }
+
+    public static StateSnapshot getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Restores the in-memory state from the snapshot file and the journal, if they still match
+     * the database. Call once at start-up, before anything else loads that state. Never throws.
+     * @return true if the state was installed; false means it will load from the database instead.
+     */
+    public boolean warmStart() {
+        long start = System.nanoTime();
+        String note;
+        boolean installed = false;
+        try {
+            State state = read(FILE);
+            int[] replayed = {0};
+            EventJournal.getInstance().replayAfter(state.journalSequence, event -> {
+                apply(state, event);
+                replayed[0]++;
+            });
+            note = install(state);
+            if (note == null) {
+                installed = true;
+                note = String.format("snapshot of %s + %d journal events", new Timestamp(state.createdAtMillis), replayed[0]);
+            }
+        } catch (NoSuchFileException e) {
+            note = "no snapshot yet";
+        } catch (IOException | SQLException | RuntimeException e) {
+            note = "snapshot not used: " + e.getMessage();
+        }
+        synchronized (this) {
+            warmStart = installed;
+            restoreNote = note;
+            restoreMillis = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        return installed;
+    }
+
+    /**
+     * Starts writing a snapshot every INTERVAL_MILLIS in the background.
+     */
+    public synchronized void start() {
+        if (writer != null || INTERVAL_MILLIS <= 0) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aptparkx-state-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::writeQuietly, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background writer and writes one last snapshot. Called on shutdown, before the
+     * database connections are closed.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (writer != null) {
+                writer.shutdownNow();
+                writer = null;
+            }
+        }
+        writeQuietly();
+    }
+
+    /**
+     * Captures the current state and replaces the snapshot file with it. The file is written
+     * next to the old one, forced to disk and then moved over it, so a crash leaves one or the other.
+     */
+    public void write() throws IOException, SQLException {
+        long start = System.nanoTime();
+        byte[] bytes = encode(capture());
+        Path temp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            snapshotsWritten++;
+            lastWriteBytes = bytes.length;
+            lastWriteMillis = (System.nanoTime() - start) / 1_000_000.0;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(warmStart, restoreNote, restoreMillis, snapshotsWritten, lastWriteBytes, lastWriteMillis);
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | SQLException | RuntimeException e) {
+            System.err.println("Could not write the state snapshot: " + e.getMessage());
+        }
+    }
+
+    // The journal position is read first: every event after it is replayed on restore, and every
+    // event up to it had already changed the state captured below.
+    private static State capture() throws SQLException {
+        State state = new State();
+        state.createdAtMillis = System.currentTimeMillis();
+        state.journalSequence = EventJournal.getInstance().lastSequence();
+        state.parkedSlots = new LongIntHashMap(ParkingService.SPARE_END_SLOT, PlateDirectory.NOT_PARKED);
+        state.owners = new LongObjectHashMap<>(4 * ParkingService.SPARE_END_SLOT);
+        PlateDirectory.getInstance().forEachEntry(state.parkedSlots::put, state.owners::put);
+        state.counts = OccupancyCounters.getInstance().snapshotCounts();
+        state.waitlist = new ArrayList<>();
+        state.waitlistHighWaterMark = GuestWaitingList.getInstance().snapshotInto(state.waitlist);
+        return state;
+    }
+
+    // Replays one journal event onto the restored state. Every change is absolute (set, remove),
+    // so an event whose effect the snapshot already has is harmless.
+    private static void apply(State state, JournalEvent event) {
+        long code = PlateCode.encode(event.vehicleNumber);
+        boolean guestSlot = event.slotId >= ParkingService.SPARE_START_SLOT;
+        switch (event.type) {
+            case PARK:
+                if (code != PlateCode.INVALID) {
+                    state.parkedSlots.put(code, event.slotId);
+                    if (event.residentId != null) {
+                        state.owners.put(code, event.residentId);
+                    }
+                }
+                break;
+            case UNPARK:
+                if (code != PlateCode.INVALID) {
+                    if (state.parkedSlots.get(code) == event.slotId) {
+                        state.parkedSlots.remove(code);
+                    }
+                    if (guestSlot) {
+                        state.owners.remove(code); // guest vehicles are deleted when they leave
+                    }
+                }
+                break;
+            case REGISTER:
+                if (code != PlateCode.INVALID && event.residentId != null) {
+                    state.owners.put(code, event.residentId);
+                }
+                break;
+            case REMOVE:
+                if (code != PlateCode.INVALID) {
+                    state.owners.remove(code);
+                    state.parkedSlots.remove(code);
+                }
+                break;
+            case DEQUEUE:
+                state.waitlist.removeIf(entry -> entry.getWaitlistId() == event.waitlistId);
+                break;
+            case ENQUEUE:
+                break; // above the snapshot's high-water mark, so the waiting list sync fetches it
+        }
+    }
+
+    // Checks the restored state against the database and installs it.
+    // @return null if it was installed, otherwise why not.
+    private static String install(State state) throws SQLException {
+        long[] parked = new long[2];
+        state.parkedSlots.forEach((code, slot) -> parked[1] ^= fingerprint(code, Integer.toString(slot)));
+        parked[0] = state.parkedSlots.size();
+        long[] owners = new long[2];
+        state.owners.forEach((code, residentId) -> owners[1] ^= fingerprint(code, residentId));
+        owners[0] = state.owners.size();
+
+        try (Connection conn = DatabaseManager.getMultiStatementConnection();
+             Statement st = conn.createStatement()) {
+            // One round trip for all six fixed queries.
+            st.execute(PARKED_FINGERPRINT_QUERY + "; " + OWNER_FINGERPRINT_QUERY + "; " + UNTRACKED_SLOTS_QUERY + "; "
+                    + OccupancyCounters.countQueries() + "; " + ParkingDAO.WAITING_LIST_MARK_QUERY);
+            long[] actualParked = readPair(st.getResultSet());
+            st.getMoreResults();
+            long[] actualOwners = readPair(st.getResultSet());
+            long[] slotWords = new long[(SlotOccupancy.TOTAL_SLOTS >> 6) + 1];
+            state.parkedSlots.forEach((code, slot) -> setBit(slotWords, slot));
+            st.getMoreResults();
+            try (ResultSet rs = st.getResultSet()) {
+                while (rs.next()) {
+                    setBit(slotWords, rs.getInt(1));
+                }
+            }
+            int[] counts = new int[state.counts.length];
+            st.getMoreResults();
+            try (ResultSet rs = st.getResultSet()) {
+                OccupancyCounters.readWingCounts(rs, counts);
+            }
+            st.getMoreResults();
+            try (ResultSet rs = st.getResultSet()) {
+                OccupancyCounters.readGuestCount(rs, counts);
+            }
+            st.getMoreResults();
+            long[] waitlistMark = readPair(st.getResultSet());
+
+            if (!Arrays.equals(parked, actualParked)) {
+                return String.format("parked vehicles changed since (%d in snapshot, %d now)", parked[0], actualParked[0]);
+            }
+            if (!Arrays.equals(owners, actualOwners)) {
+                return String.format("registered vehicles changed since (%d in snapshot, %d now)", owners[0], actualOwners[0]);
+            }
+
+            PlateDirectory plates = PlateDirectory.createDetached();
+            state.parkedSlots.forEach(plates::restoreParked);
+            state.owners.forEach(plates::restoreOwner);
+            // Each install fails if that state was loaded from the database already; the parts that
+            // did install were verified above, but a mix is not reported as a warm start.
+            List<String> alreadyLoaded = new ArrayList<>();
+            if (!PlateDirectory.install(plates)) {
+                alreadyLoaded.add("plate directory");
+            }
+            if (!SlotOccupancy.install(slotWords)) {
+                alreadyLoaded.add("slot occupancy");
+            }
+            if (!OccupancyCounters.install(counts)) {
+                alreadyLoaded.add("occupancy counters");
+            }
+            if (!GuestWaitingList.install(state.waitlist, state.waitlistHighWaterMark, conn,
+                    new int[]{(int) waitlistMark[0], (int) waitlistMark[1]})) {
+                alreadyLoaded.add("waiting list");
+            }
+            return alreadyLoaded.isEmpty() ? null : "partly restored, already loaded from the database: " + String.join(", ", alreadyLoaded);
+        }
+    }
+
+    private static long[] readPair(ResultSet rs) throws SQLException {
+        try (ResultSet row = rs) {
+            row.next();
+            return new long[]{row.getLong(1), row.getLong(2)};
+        }
+    }
+
+    // Same as MySQL's CRC32(CONCAT(vehicle_number, '@', value)).
+    private static long fingerprint(long plateCode, String value) {
+        CRC32 crc = new CRC32();
+        crc.update((PlateCode.decode(plateCode) + "@" + value).getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static void setBit(long[] words, int slot) {
+        if (slot >= 1 && (slot >> 6) < words.length) {
+            words[slot >> 6] |= 1L << slot;
+        }
+    }
+
+    // Layout: magic, version, then the State fields in order, then a CRC32C of everything before it.
+    private static byte[] encode(State state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(state.createdAtMillis);
+        out.writeLong(state.journalSequence);
+        out.writeInt(state.parkedSlots.size());
+        IOException[] failure = {null};
+        state.parkedSlots.forEach((code, slot) -> {
+            try {
+                out.writeLong(code);
+                out.writeInt(slot);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        out.writeInt(state.owners.size());
+        state.owners.forEach((code, residentId) -> {
+            try {
+                out.writeLong(code);
+                out.writeUTF(residentId);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        out.writeInt(state.counts.length);
+        for (int count : state.counts) {
+            out.writeInt(count);
+        }
+        out.writeInt(state.waitlistHighWaterMark);
+        out.writeInt(state.waitlist.size());
+        for (WaitingListEntry entry : state.waitlist) {
+            Vehicle vehicle = entry.getVehicle();
+            out.writeInt(entry.getWaitlistId());
+            writeNullable(out, vehicle.getVehicleNumber());
+            writeNullable(out, vehicle.getResidentId());
+            writeNullable(out, vehicle.getVehicleType());
+            writeNullable(out, vehicle.getVehicleBrand());
+            writeNullable(out, vehicle.getOwnerType());
+            out.writeLong(entry.getTimeAdded() == null ? -1 : entry.getTimeAdded().getTime());
+            writeNullable(out, entry.getSubscriptionTier());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static State read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 16) {
+            throw new IOException("snapshot file is truncated");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong()) {
+            throw new IOException("snapshot file is damaged");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("not a snapshot file, or from another version");
+        }
+        State state = new State();
+        state.createdAtMillis = in.readLong();
+        state.journalSequence = in.readLong();
+        int parkedCount = in.readInt();
+        state.parkedSlots = new LongIntHashMap(Math.max(parkedCount, ParkingService.SPARE_END_SLOT), PlateDirectory.NOT_PARKED);
+        for (int i = 0; i < parkedCount; i++) {
+            state.parkedSlots.put(in.readLong(), in.readInt());
+        }
+        int ownerCount = in.readInt();
+        state.owners = new LongObjectHashMap<>(Math.max(ownerCount, 4 * ParkingService.SPARE_END_SLOT));
+        for (int i = 0; i < ownerCount; i++) {
+            state.owners.put(in.readLong(), in.readUTF());
+        }
+        state.counts = new int[in.readInt()];
+        for (int i = 0; i < state.counts.length; i++) {
+            state.counts[i] = in.readInt();
+        }
+        state.waitlistHighWaterMark = in.readInt();
+        int waitlistSize = in.readInt();
+        state.waitlist = new ArrayList<>(waitlistSize);
+        for (int i = 0; i < waitlistSize; i++) {
+            int waitlistId = in.readInt();
+            Vehicle vehicle = new Vehicle(readNullable(in), readNullable(in), readNullable(in), readNullable(in), readNullable(in));
+            long added = in.readLong();
+            state.waitlist.add(new WaitingListEntry(waitlistId, vehicle, added < 0 ? null : new Timestamp(added), readNullable(in)));
+        }
+        return state;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
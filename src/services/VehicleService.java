@@ -1,29 +1,35 @@
 package services;
 
+import dao.ParkingDAO;
 import dao.ResidentDAO;
 import dao.VehicleDAO;
 import database.DatabaseManager;
 import database.TransactionManager;
+import engine.WaitlistDispatcher;
+import journal.EventJournal;
 import model.Resident;
 import model.Vehicle;
+import model.WaitingListEntry;
 import ui.InputHandler;
+import ui.TableRenderer;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Scanner;
 
 public final class VehicleService {
     private static final Scanner scanner = new Scanner(System.in);
-    private final VehicleDAO vehicleDAO;
-    private final ResidentDAO residentDAO;
+    private static final TableRenderer.Layout RESIDENT_VEHICLES_LAYOUT = new TableRenderer.Layout(105,
+            new String[]{"Sr.", "Vehicle Number", "Brand", "Type", "Owner Type", "Is Parked?", "Parking Location"}, 4, 15, 12, 12, 10, 12, 0);
+    private static final TableRenderer.Layout ALL_VEHICLES_LAYOUT = new TableRenderer.Layout(71,
+            new String[]{"Resident ID", "Vehicle Number", "Vehicle Type", "Vehicle Brand"}, 12, 18, 15, 15);
 
     public VehicleService() {
-        this.vehicleDAO = new VehicleDAO();
-        this.residentDAO = new ResidentDAO();
     }
 
     private static class VehicleWithParkingStatus {
@@ -43,21 +49,18 @@ public final class VehicleService {
         String title = actorRole.equals("ADMIN") ? "--- Add New Vehicle for Resident " + residentId + " ---" : "--- Add New Vehicle to Your Profile ---";
         System.out.println("\n" + title);
 
-        Connection conn = null;
         try {
-            conn = DatabaseManager.getConnection();
-            TransactionManager.beginTransaction(conn);
-            VehicleDAO vehicleDAOForTx = new VehicleDAO(conn);
-            ResidentDAO residentDAOForTx = new ResidentDAO(conn);
-
-            Resident resident = residentDAOForTx.getResidentById(residentId);
-            if (resident == null) {
-                System.out.println("Error: Resident with ID '" + residentId + "' not found.");
-                TransactionManager.rollbackTransaction(conn);
-                return;
+            // Gather and validate the input first, with no transaction open while the user types.
+            Resident resident;
+            int[] vehicleCounts;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                resident = new ResidentDAO(conn).getResidentById(residentId);
+                if (resident == null) {
+                    System.out.println("Error: Resident with ID '" + residentId + "' not found.");
+                    return;
+                }
+                vehicleCounts = new VehicleDAO(conn).getResidentVehicleCounts(residentId);
             }
-
-            int[] vehicleCounts = vehicleDAOForTx.getResidentVehicleCounts(residentId);
             int fourWheelerCount = vehicleCounts[0];
             int twoWheelerCount = vehicleCounts[1];
 
@@ -65,42 +68,61 @@ public final class VehicleService {
             System.out.printf("%s subscription tier: %s%n", possessive, resident.getSubscriptionTier());
 
             String vehicleType = InputHandler.getValidVehicleTypeInput("Select Vehicle Type to Add");
-            int[] limits = getLimitsForTier(resident.getSubscriptionTier());
-            int fourWheelerLimit = limits[0];
-            int twoWheelerLimit = limits[1];
-
-            boolean canAdd = ("4-wheeler".equals(vehicleType) && fourWheelerCount < fourWheelerLimit) ||
-                    ("2-wheeler".equals(vehicleType) && twoWheelerCount < twoWheelerLimit);
-
-            if (canAdd) {
-                String vehicleNumber = getUniqueVehicleNumber(vehicleDAOForTx);
-                String vehicleBrand = InputHandler.getValidStringInput("Enter Vehicle Brand: ");
-                Vehicle newVehicle = new Vehicle(vehicleNumber, residentId, vehicleType, vehicleBrand, "Resident");
-
-                if (vehicleDAOForTx.addVehicle(newVehicle)) {
-                    residentDAOForTx.updateResidentVehicleCount(residentId, 1);
-                    System.out.printf("✓ Vehicle '%s' added successfully under the %s plan!%n", vehicleNumber, resident.getSubscriptionTier());
-                    TransactionManager.commitTransaction(conn);
-                } else {
-                    System.err.println("Failed to add the vehicle.");
-                    TransactionManager.rollbackTransaction(conn);
-                }
-            } else {
+            if (!isWithinLimit(resident.getSubscriptionTier(), vehicleCounts, vehicleType)) {
                 System.out.printf("✗ Action Failed: %s has reached the vehicle limit for the '%s' subscription plan.%n", possessive, resident.getSubscriptionTier());
                 System.out.println("To add more vehicles, please upgrade the subscription plan from the 'Manage Subscription' menu.");
-                TransactionManager.rollbackTransaction(conn);
+                return;
             }
+            String vehicleNumber = getUniqueVehicleNumber(new ArrayList<>());
+            String vehicleBrand = InputHandler.getValidStringInput("Enter Vehicle Brand: ");
+            Vehicle newVehicle = new Vehicle(vehicleNumber, residentId, vehicleType, vehicleBrand, "Resident");
+            String[] tierHolder = new String[1];
+
+            // Short commit phase: re-check the plan limit and the plate, since another session may have
+            // added a vehicle in the meantime.
+            // Null once the vehicle is saved, otherwise why it was not. Printed after the transaction
+            // so a retried attempt doesn't print twice.
+            String rejection = TransactionManager.runInTransaction(conn -> {
+                ResidentDAO residentDAOForTx = new ResidentDAO(conn);
+                VehicleDAO vehicleDAO = new VehicleDAO(conn);
+                // Locking the resident row makes a second admin adding a vehicle for the same
+                // resident wait here, so both can't pass the limit check on the same count.
+                Resident current = residentDAOForTx.lockResident(residentId);
+                if (current == null) {
+                    return "Error: Resident with ID '" + residentId + "' was removed in the meantime.";
+                }
+                if (!isWithinLimit(current.getSubscriptionTier(), vehicleDAO.getResidentVehicleCounts(residentId), vehicleType)) {
+                    return String.format("✗ Action Failed: %s has reached the vehicle limit for the '%s' subscription plan.", possessive, current.getSubscriptionTier());
+                }
+                if (vehicleDAO.vehicleExists(vehicleNumber)) {
+                    return "Error: Vehicle number '" + vehicleNumber + "' was registered by someone else in the meantime.";
+                }
+                if (!vehicleDAO.addVehicle(newVehicle)) {
+                    return "Failed to add the vehicle.";
+                }
+                residentDAOForTx.updateResidentVehicleCount(residentId, 1);
+                tierHolder[0] = current.getSubscriptionTier();
+                return null;
+            });
+            if (rejection != null) {
+                System.out.println(rejection);
+                return;
+            }
+            PlateDirectory.getInstance().vehicleRegistered(vehicleNumber, residentId);
+            EventJournal.getInstance().registered(vehicleNumber, residentId);
+            System.out.printf("✓ Vehicle '%s' added successfully under the %s plan!%n", vehicleNumber, tierHolder[0]);
         } catch (SQLException e) {
             System.err.println("Database error while adding vehicle: " + e.getMessage());
-            TransactionManager.rollbackTransaction(conn);
-        } finally {
-            TransactionManager.endTransaction(conn);
         }
     }
 
-    public void addVehiclesForNewResident(String residentId, Connection conn) throws SQLException {
-        VehicleDAO vehicleDAOForTx = new VehicleDAO(conn);
-        ResidentDAO residentDAOForTx = new ResidentDAO(conn);
+    /**
+     * Asks which vehicles a new resident starts with. Nothing is written yet: the returned vehicles
+     * have no resident ID and are saved by {@link #addVehiclesForNewResident} once the resident exists.
+     */
+    public List<Vehicle> collectVehiclesForNewResident() throws SQLException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        List<String> chosenNumbers = new ArrayList<>();
 
         while (true) {
             System.out.print("Do you want to add vehicles for this new resident now? (y/n): ");
@@ -110,67 +132,82 @@ public final class VehicleService {
             }
             if ("n".equals(choice)) {
                 System.out.println("Vehicle addition skipped. You can add them later.");
-                return;
+                return vehicles;
             }
             System.out.println("Invalid input. Please enter 'y' for yes or 'n' for no.");
         }
 
         System.out.println("\nA new resident (Silver plan) can have one 4-wheeler and up to two 2-wheelers.");
-        int[] counts = vehicleDAOForTx.getResidentVehicleCounts(residentId);
 
-        // Logic to add the 4-wheeler with a validation loop
-        if (counts[0] < 1) {
+        // Ask for the 4-wheeler with a validation loop
+        while (true) {
+            System.out.print("Add a 4-wheeler? (y/n): ");
+            String addFourWheeler = scanner.nextLine().trim().toLowerCase();
+            if ("y".equals(addFourWheeler)) {
+                System.out.println("\n-> Adding 4-wheeler...");
+                String vehicleNumber = getUniqueVehicleNumber(chosenNumbers);
+                String vehicleBrand = InputHandler.getValidStringInput("Enter Vehicle Brand: ");
+                vehicles.add(new Vehicle(vehicleNumber, null, "4-wheeler", vehicleBrand, "Resident"));
+                break;
+            }
+            if ("n".equals(addFourWheeler)) {
+                break;
+            }
+            System.out.println("Invalid input. Please enter 'y' or 'n'.");
+        }
+
+        // Ask for up to two 2-wheelers with a validation loop
+        for (int i = 0; i < 2; i++) {
+            boolean stopAsking = false;
             while (true) {
-                System.out.print("Add a 4-wheeler? (y/n): ");
-                String addFourWheeler = scanner.nextLine().trim().toLowerCase();
-                if ("y".equals(addFourWheeler)) {
-                    System.out.println("\n-> Adding 4-wheeler...");
-                    String vehicleNumber = getUniqueVehicleNumber(vehicleDAOForTx);
+                System.out.print("Add a 2-wheeler? (y/n): ");
+                String addTwoWheeler = scanner.nextLine().trim().toLowerCase();
+                if ("y".equals(addTwoWheeler)) {
+                    System.out.println("\n-> Adding 2-wheeler " + (i + 1) + "...");
+                    String vehicleNumber = getUniqueVehicleNumber(chosenNumbers);
                     String vehicleBrand = InputHandler.getValidStringInput("Enter Vehicle Brand: ");
-                    Vehicle newVehicle = new Vehicle(vehicleNumber, residentId, "4-wheeler", vehicleBrand, "Resident");
-                    if (vehicleDAOForTx.addVehicle(newVehicle)) {
-                        residentDAOForTx.updateResidentVehicleCount(residentId, 1);
-                        System.out.println("4-wheeler '" + vehicleNumber + "' added.");
-                    }
+                    vehicles.add(new Vehicle(vehicleNumber, null, "2-wheeler", vehicleBrand, "Resident"));
                     break;
                 }
-                if ("n".equals(addFourWheeler)) {
+                if ("n".equals(addTwoWheeler)) {
+                    stopAsking = true;
                     break;
                 }
                 System.out.println("Invalid input. Please enter 'y' or 'n'.");
             }
+            if (stopAsking) {
+                break;
+            }
         }
+        return vehicles;
+    }
 
-        // Logic to add up to two 2-wheelers with a validation loop
-        for (int i = 0; i < 2; i++) {
-            counts = vehicleDAOForTx.getResidentVehicleCounts(residentId);
-            if (counts[1] < 2) {
-                boolean stopAsking = false;
-                while (true) {
-                    System.out.print("Add a 2-wheeler? (y/n): ");
-                    String addTwoWheeler = scanner.nextLine().trim().toLowerCase();
-                    if ("y".equals(addTwoWheeler)) {
-                        System.out.println("\n-> Adding 2-wheeler " + (i + 1) + "...");
-                        String vehicleNumber = getUniqueVehicleNumber(vehicleDAOForTx);
-                        String vehicleBrand = InputHandler.getValidStringInput("Enter Vehicle Brand: ");
-                        Vehicle newVehicle = new Vehicle(vehicleNumber, residentId, "2-wheeler", vehicleBrand, "Resident");
-                        if (vehicleDAOForTx.addVehicle(newVehicle)) {
-                            residentDAOForTx.updateResidentVehicleCount(residentId, 1);
-                            System.out.println("2-wheeler '" + vehicleNumber + "' added.");
-                        }
-                        break;
-                    }
-                    if ("n".equals(addTwoWheeler)) {
-                        stopAsking = true;
-                        break;
-                    }
-                    System.out.println("Invalid input. Please enter 'y' or 'n'.");
-                }
-                if (stopAsking) {
-                    break;
-                }
+    /**
+     * Saves the vehicles gathered by {@link #collectVehiclesForNewResident} inside the caller's transaction.
+     * A plate that someone else registered in the meantime is skipped with a message.
+     * @return the vehicles that were saved.
+     */
+    public List<Vehicle> addVehiclesForNewResident(String residentId, List<Vehicle> vehicles, Connection conn) throws SQLException {
+        VehicleDAO vehicleDAOForTx = new VehicleDAO(conn);
+        ResidentDAO residentDAOForTx = new ResidentDAO(conn);
+        List<Vehicle> added = new ArrayList<>();
+        for (Vehicle draft : vehicles) {
+            if (vehicleDAOForTx.vehicleExists(draft.getVehicleNumber())) {
+                continue; // registered by someone else in the meantime
+            }
+            Vehicle newVehicle = new Vehicle(draft.getVehicleNumber(), residentId, draft.getVehicleType(), draft.getVehicleBrand(), "Resident");
+            if (vehicleDAOForTx.addVehicle(newVehicle)) {
+                residentDAOForTx.updateResidentVehicleCount(residentId, 1);
+                added.add(newVehicle);
             }
         }
+        return added;
+    }
+
+    private boolean isWithinLimit(String tier, int[] vehicleCounts, String vehicleType) {
+        int[] limits = getLimitsForTier(tier);
+        return ("4-wheeler".equals(vehicleType) && vehicleCounts[0] < limits[0]) ||
+                ("2-wheeler".equals(vehicleType) && vehicleCounts[1] < limits[1]);
     }
 
     private int[] getLimitsForTier(String tier) {
@@ -181,15 +218,25 @@ public final class VehicleService {
         };
     }
 
-    private String getUniqueVehicleNumber(VehicleDAO vehicleDAO) throws SQLException {
+    // Keeps asking until the number is neither in the database nor already picked in this session.
+    private String getUniqueVehicleNumber(List<String> chosenNumbers) throws SQLException {
         String vehicleNumber;
         while (true) {
             vehicleNumber = InputHandler.getValidVehicleNumberInput("Enter Vehicle Number: ");
 
-            if (vehicleDAO.vehicleExists(vehicleNumber)) {
+            // Only plates the directory knows (or cannot encode) need a round trip; the commit
+            // phase re-checks every plate anyway.
+            boolean exists = chosenNumbers.contains(vehicleNumber);
+            if (!exists && PlateDirectory.getInstance().mightBeRegistered(vehicleNumber)) {
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    exists = new VehicleDAO(conn).vehicleExists(vehicleNumber);
+                }
+            }
+            if (exists) {
                 System.out.println("Error: Vehicle number '" + vehicleNumber + "' already exists in the database.");
                 continue;
             }
+            chosenNumbers.add(vehicleNumber);
             return vehicleNumber;
         }
     }
@@ -198,8 +245,8 @@ public final class VehicleService {
         System.out.println("\n--- Find All Vehicles by Resident ID ---");
         String residentId = InputHandler.getValidStringInput("Enter the Resident ID to search for: ").toUpperCase();
 
-        try {
-            if (residentDAO.getResidentById(residentId) == null) {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (new ResidentDAO(conn).getResidentById(residentId) == null) {
                 System.out.println("Error: Resident with ID '" + residentId + "' not found.");
                 return;
             }
@@ -217,7 +264,7 @@ public final class VehicleService {
                     "LEFT JOIN spare_parked_vehicle spv ON v.vehicle_number = spv.vehicle_number " +
                     "WHERE v.resident_id = ?";
 
-            try (PreparedStatement ps = DatabaseManager.getConnection().prepareStatement(query)) {
+            try (PreparedStatement ps = conn.prepareStatement(query)) {
                 ps.setString(1, residentId);
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
@@ -235,27 +282,18 @@ public final class VehicleService {
             }
 
             System.out.println("\n--- Vehicles Registered to " + residentId + " ---");
-            System.out.println("---------------------------------------------------------------------------------------------------------");
-            System.out.printf("%-4s | %-15s | %-12s | %-12s | %-10s | %-12s | %s%n", "Sr.", "Vehicle Number", "Brand", "Type", "Owner Type", "Is Parked?", "Parking Location");
-            System.out.println("---------------------------------------------------------------------------------------------------------");
-
+            TableRenderer table = new TableRenderer(RESIDENT_VEHICLES_LAYOUT).header();
             if (vehicleList.isEmpty()) {
-                System.out.println("No vehicles found for this resident.");
+                table.line("No vehicles found for this resident.");
             } else {
                 int serial = 1;
                 for (VehicleWithParkingStatus item : vehicleList) {
-                    System.out.printf("%-4d | %-15s | %-12s | %-12s | %-10s | %-12s | %s%n",
-                            serial++,
-                            item.vehicle.getVehicleNumber(),
-                            item.vehicle.getVehicleBrand(),
-                            item.vehicle.getVehicleType(),
-                            item.vehicle.getOwnerType(),
-                            item.isParked,
-                            item.parkingLocation
-                    );
+                    table.cell(serial++).cell(item.vehicle.getVehicleNumber()).cell(item.vehicle.getVehicleBrand())
+                            .cell(item.vehicle.getVehicleType()).cell(item.vehicle.getOwnerType())
+                            .cell(item.isParked).cell(item.parkingLocation).endRow();
                 }
             }
-            System.out.println("---------------------------------------------------------------------------------------------------------");
+            table.rule().flush();
 
         } catch (SQLException e) {
             System.err.println("Database error while fetching vehicle details: " + e.getMessage());
@@ -265,13 +303,14 @@ public final class VehicleService {
     public void searchVehicle() {
         System.out.println("\n--- Search for a Vehicle ---");
         String vehicleNumber = InputHandler.getValidStringInput("Enter the Vehicle Number to search: ").toUpperCase();
-        try {
-            Vehicle vehicle = vehicleDAO.getVehicleByNumber(vehicleNumber);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            VehicleDAO.VehicleOwner found = new VehicleDAO(conn).findVehicleWithOwner(vehicleNumber);
             System.out.println("\n--- Search Results ---");
-            if (vehicle == null) {
+            if (found == null) {
                 System.out.println("No vehicle found with the number '" + vehicleNumber + "'.");
             } else {
-                Resident owner = residentDAO.getResidentById(vehicle.getResidentId());
+                Vehicle vehicle = found.vehicle;
+                Resident owner = found.owner;
                 String ownerName = (owner != null) ? owner.getFirstName() + " " + owner.getLastName() : "N/A";
                 System.out.printf("Vehicle Number: %s%n", vehicle.getVehicleNumber());
                 System.out.printf("Type: %s, Brand: %s%n", vehicle.getVehicleType(), vehicle.getVehicleBrand());
@@ -319,25 +358,19 @@ public final class VehicleService {
 
             // Step 1: Check if the vehicle is parked and un-park it automatically
             int slotId = getSlotIdForVehicle(vehicleNumber, conn);
+            String ownerWing = null;
+            Timestamp timeIn = null;
             if (slotId != -1) {
                 System.out.println("Note: This vehicle is currently parked. It will be un-parked and archived automatically.");
-                String sourceTable = (slotId > 1200) ? "spare_parked_vehicle" : "parked_vehicle";
-
-                // Create history record
-                String archiveQuery = "INSERT INTO parking_records (Slot_id, vehicle_number, vehicle_brand, vehicle_type, time_out) VALUES(?, ?, ?, ?, NOW())";
-                try (PreparedStatement ps = conn.prepareStatement(archiveQuery)) {
-                    ps.setInt(1, slotId);
-                    ps.setString(2, vehicleNumber);
-                    ps.setString(3, vehicleToDelete.getVehicleBrand());
-                    ps.setString(4, vehicleToDelete.getVehicleType());
-                    ps.executeUpdate();
-                }
+                String sourceTable = ParkingDAO.tableForSlot(slotId, ParkingService.SPARE_START_SLOT);
 
-                // Delete from parking table
-                String deleteParkingQuery = "DELETE FROM " + sourceTable + " WHERE vehicle_number = ?";
-                try (PreparedStatement ps = conn.prepareStatement(deleteParkingQuery)) {
-                    ps.setString(1, vehicleNumber);
-                    ps.executeUpdate();
+                // Archive the stay and delete the parking row in one round trip.
+                ParkingDAO.ArchivedStay stay = new ParkingDAO(conn).archiveAndRemove(sourceTable, vehicleNumber, false);
+                if (stay != null) {
+                    ownerWing = stay.ownerWing;
+                    timeIn = stay.timeIn;
+                } else {
+                    slotId = -1; // Someone un-parked it in the meantime.
                 }
             }
 
@@ -349,14 +382,41 @@ public final class VehicleService {
                 residentDAOForTx.updateResidentVehicleCount(residentId, -1);
             }
 
-            TransactionManager.commitTransaction(conn);
+            OccupancyCounters counters = OccupancyCounters.getInstance();
+            counters.beginUpdate();
+            try {
+                TransactionManager.commitTransaction(conn);
+                if (slotId != -1) {
+                    counters.vehicleLeft(slotId, ownerWing);
+                }
+            } finally {
+                counters.endUpdate();
+            }
+            // A freed guest slot is handed to the waitlist dispatcher below instead of released.
+            if (slotId != -1 && slotId < ParkingService.SPARE_START_SLOT) {
+                SlotOccupancy.getInstance().release(slotId);
+            }
+            PlateDirectory.getInstance().vehicleRemoved(vehicleNumber);
+            EventJournal journal = EventJournal.getInstance();
+            if (slotId != -1) {
+                journal.unparked(vehicleNumber, slotId, residentId,
+                        slotId >= ParkingService.SPARE_START_SLOT ? null : ownerWing, timeIn);
+            }
+            journal.removed(vehicleNumber, residentId);
             System.out.println("✓ Vehicle '" + vehicleNumber + "' was successfully deleted from the system.");
+            if (slotId >= ParkingService.SPARE_START_SLOT) {
+                WaitingListEntry dispatched = WaitlistDispatcher.getInstance().onGuestSlotFreed(slotId);
+                if (dispatched != null) {
+                    System.out.printf("✓ Waiting guest %s was parked in the freed slot %d.%n", dispatched.getVehicle().getVehicleNumber(), slotId);
+                }
+            }
 
         } catch (SQLException e) {
             System.err.println("Database error during deletion: " + e.getMessage());
             TransactionManager.rollbackTransaction(conn);
         } finally {
             TransactionManager.endTransaction(conn);
+            DatabaseManager.releaseConnection(conn);
         }
     }
 
@@ -375,21 +435,18 @@ public final class VehicleService {
 
     public void viewAllVehicles(String sortBy) {
         System.out.println("\n--- All Vehicles (Sorted by " + sortBy.replace("_", " ") + ") ---");
-        try {
-            List<Vehicle> vehicles = vehicleDAO.getAllVehicles(sortBy);
-            System.out.println("-----------------------------------------------------------------------");
-            System.out.printf("%-12s | %-18s | %-15s | %-15s%n", "Resident ID", "Vehicle Number", "Vehicle Type", "Vehicle Brand");
-            System.out.println("-----------------------------------------------------------------------");
+        try (Connection conn = DatabaseManager.getConnection()) {
+            List<Vehicle> vehicles = new VehicleDAO(conn).getAllVehicles(sortBy);
+            TableRenderer table = new TableRenderer(ALL_VEHICLES_LAYOUT).header();
             if (vehicles.isEmpty()) {
-                System.out.println("No vehicles found.");
+                table.line("No vehicles found.");
             } else {
                 for (Vehicle vehicle : vehicles) {
-                    System.out.printf("%-12s | %-18s | %-15s | %-15s%n",
-                            vehicle.getResidentId(), vehicle.getVehicleNumber(),
-                            vehicle.getVehicleType(), vehicle.getVehicleBrand());
+                    table.cell(vehicle.getResidentId()).cell(vehicle.getVehicleNumber())
+                            .cell(vehicle.getVehicleType()).cell(vehicle.getVehicleBrand()).endRow();
                 }
             }
-            System.out.println("-----------------------------------------------------------------------");
+            table.rule().flush();
         } catch (SQLException e) {
             System.err.println("Database error while viewing vehicles: " + e.getMessage());
         }
@@ -1,12 +1,19 @@
 package ui;
 
+import dao.ResidentCache;
+import dao.VehicleOwnerCache;
+import engine.WaitlistDispatcher;
+import journal.EventJournal;
+import services.ExpiryScheduler;
 import services.ParkingService;
 import services.ResidentService;
+import services.StateSnapshot;
 import services.VehicleService;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Scanner;
 import database.DatabaseManager;
 import database.TransactionManager;
@@ -37,11 +44,12 @@ public class AdminUI {
             System.out.println("│ 4. View Available Parking Slots            │");
             System.out.println("│ 5. View Parking History                    │");
             System.out.println("│ 6. Change My Credentials                   │");
-            System.out.println("│ 7. Back to Main Menu                       │");
+            System.out.println("│ 7. System Diagnostics                      │");
+            System.out.println("│ 8. Back to Main Menu                       │");
             System.out.println("└────────────────────────────────────────────┘");
-            System.out.print("Enter your choice (1-7): ");
+            System.out.print("Enter your choice (1-8): ");
 
-            int choice = InputHandler.getValidChoice(1, 7);
+            int choice = InputHandler.getValidChoice(1, 8);
 
             switch (choice) {
                 case 1: manageResidentsMenu(); break;
@@ -55,7 +63,8 @@ public class AdminUI {
                         running = false;
                     }
                     break;
-                case 7:
+                case 7: diagnosticsMenu(); break;
+                case 8:
                     System.out.println("Admin : " + this.username + "' logged out.");
                     running = false;
                     break;
@@ -63,6 +72,64 @@ public class AdminUI {
         }
     }
 
+    private void diagnosticsMenu() {
+        boolean running = true;
+        while (running) {
+            ResidentCache residentCache = ResidentCache.getInstance();
+            VehicleOwnerCache vehicleCache = VehicleOwnerCache.getInstance();
+            ExpiryScheduler expiry = ExpiryScheduler.getInstance();
+            System.out.println("\n┌────────────────────────────────────────────┐");
+            System.out.println("│             SYSTEM DIAGNOSTICS             │");
+            System.out.println("├────────────────────────────────────────────┤");
+            System.out.println("│ 1. Show Cache and Pool Statistics          │");
+            System.out.printf("│ 2. %-40s│%n", residentCache.isEnabled() ? "Bypass Lookup Caches" : "Re-enable Lookup Caches");
+            System.out.printf("│ 3. %-40s│%n", "View Alerts (" + expiry.getAlerts().size() + ")");
+            System.out.println("│ 4. Back                                    │");
+            System.out.println("└────────────────────────────────────────────┘");
+            System.out.print("Enter your choice (1-4): ");
+            int choice = InputHandler.getValidChoice(1, 4);
+
+            switch (choice) {
+                case 1:
+                    System.out.println("Resident cache:  " + residentCache.getStats());
+                    System.out.println("Vehicle cache:   " + vehicleCache.getStats());
+                    System.out.println("Connection pool: " + DatabaseManager.getPoolStats());
+                    System.out.println("Waitlist dispatch: " + WaitlistDispatcher.getInstance().getStats());
+                    System.out.println("Expiry timers:   " + expiry.getStats());
+                    System.out.println("Event journal:   " + EventJournal.getInstance().getStats());
+                    System.out.println("State snapshot:  " + StateSnapshot.getInstance().getStats());
+                    break;
+                case 2:
+                    boolean enable = !residentCache.isEnabled();
+                    residentCache.setEnabled(enable);
+                    vehicleCache.setEnabled(enable);
+                    System.out.println(enable
+                            ? "Resident and vehicle caches re-enabled."
+                            : "Resident and vehicle caches bypassed: every lookup now reads the database.");
+                    break;
+                case 3: viewAlerts(expiry); break;
+                case 4: running = false; break;
+            }
+        }
+    }
+
+    private void viewAlerts(ExpiryScheduler expiry) {
+        List<ExpiryScheduler.Alert> alerts = expiry.getAlerts();
+        if (alerts.isEmpty()) {
+            System.out.println("No alerts: no guest has overstayed and no waiting list entry has expired.");
+            return;
+        }
+        System.out.println("\n--- Alerts (newest first) ---");
+        for (ExpiryScheduler.Alert alert : alerts) {
+            System.out.println(alert);
+        }
+        String choice = InputHandler.getValidStringInput("Clear these alerts? (y/n): ").trim().toLowerCase();
+        if (choice.equals("y")) {
+            expiry.clearAlerts();
+            System.out.println("Alerts cleared.");
+        }
+    }
+
     private void manageResidentsMenu() {
         boolean running = true;
         while (running) {
@@ -136,10 +203,11 @@ public class AdminUI {
             System.out.println("│ 2. Guest Parking                           │");
             System.out.println("│ 3. All Parking (Resident + Guest)          │");
             System.out.println("│ 4. View Guest Parking Waiting List         │"); // NEW OPTION
-            System.out.println("│ 5. Back to Admin Menu                      │");
+            System.out.println("│ 5. Cancel a Waiting List Entry             │");
+            System.out.println("│ 6. Back to Admin Menu                      │");
             System.out.println("└────────────────────────────────────────────┘");
-            System.out.print("Enter your choice (1-5): ");
-            int choice = InputHandler.getValidChoice(1, 5);
+            System.out.print("Enter your choice (1-6): ");
+            int choice = InputHandler.getValidChoice(1, 6);
 
             switch (choice) {
                 case 1:
@@ -155,6 +223,9 @@ public class AdminUI {
                     parkingService.viewGuestWaitingList();
                     break;
                 case 5:
+                    parkingService.cancelGuestWaitingListEntry();
+                    break;
+                case 6:
                     running = false;
                     break;
             }
@@ -195,10 +266,11 @@ public class AdminUI {
             System.out.println("│ 2. Guest Parking History                   │");
             System.out.println("│ 3. All Parking History                     │");
             System.out.println("│ 4. Generate Report of All Parking History  │");
-            System.out.println("│ 5. Back to Admin Menu                      │");
+            System.out.println("│ 5. Export Parking History (CSV / JSON)     │");
+            System.out.println("│ 6. Back to Admin Menu                      │");
             System.out.println("└────────────────────────────────────────────┘");
-            System.out.print("Enter your choice (1-5): ");
-            int choice = InputHandler.getValidChoice(1, 5);
+            System.out.print("Enter your choice (1-6): ");
+            int choice = InputHandler.getValidChoice(1, 6);
 
             switch (choice) {
                 case 1:
@@ -214,6 +286,9 @@ public class AdminUI {
                     parkingService.generateParkingHistoryReport();
                     break;
                 case 5:
+                    parkingService.exportParkingHistory();
+                    break;
+                case 6:
                     running = false;
                     break;
             }
@@ -267,6 +342,7 @@ public class AdminUI {
             return false;
         } finally {
             TransactionManager.endTransaction(con);
+            DatabaseManager.releaseConnection(con);
         }
     }
 
@@ -1,7 +1,10 @@
 package ui;
 
 import dao.ResidentDAO; // We need this to check for phone number existence
+import database.DatabaseManager;
+import services.PhoneDirectory;
 
+import java.sql.Connection;
 import java.util.InputMismatchException;
 import java.util.Scanner;
 import java.sql.SQLException;
@@ -97,8 +100,8 @@ public final class InputHandler {
             }
 
             try {
-                ResidentDAO residentDAO = new ResidentDAO();
-                if (residentDAO.phoneNumberExists(newNumber)) {
+                // Only numbers the directory has seen need the database to confirm.
+                if (PhoneDirectory.getInstance().mightBeInUse(newNumber) && phoneNumberInDatabase(newNumber)) {
                     System.out.println("Error: This phone number is already registered to another resident.");
                     continue;
                 }
@@ -111,6 +114,12 @@ public final class InputHandler {
         }
     }
 
+    private static boolean phoneNumberInDatabase(String phoneNumber) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return new ResidentDAO(conn).phoneNumberExists(phoneNumber);
+        }
+    }
+
     public static String getValidWingInput() {
         String input;
         while (true) {
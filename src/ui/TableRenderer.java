@@ -0,0 +1,155 @@
+package ui;
+
+import java.io.PrintStream;
+
+/**
+ * Writes fixed-width console tables without String.format. A {@link Layout} is built once per
+ * table (usually as a static constant) and pre-renders the header and the dashed rule; rows are
+ * then padded cell by cell into one reused StringBuilder that is written to the stream in
+ * blocks of about FLUSH_THRESHOLD characters. Cells are padded like "%-Ns": never cut off,
+ * "null" for null.
+ *
+ * Usage:
+ *   TableRenderer table = new TableRenderer(LAYOUT).header();
+ *   table.cell(serial).cell(name).endRow();
+ *   table.rule().flush();
+ */
+public final class TableRenderer {
+
+    private static final int FLUSH_THRESHOLD = 1 << 15;
+    private static final String SEPARATOR = " | ";
+
+    /**
+     * Column widths and headings of one table. A width of 0 means the column is not padded
+     * (only useful for the last column).
+     */
+    public static final class Layout {
+        private final int[] widths;
+        private final String rule;
+        private final String header;
+
+        public Layout(int ruleLength, String[] headings, int... widths) {
+            if (headings.length != widths.length) {
+                throw new IllegalArgumentException("Need one width per heading");
+            }
+            this.widths = widths.clone();
+            this.rule = "-".repeat(ruleLength);
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < headings.length; i++) {
+                if (i > 0) {
+                    line.append(SEPARATOR);
+                }
+                int start = line.length();
+                line.append(headings[i]);
+                pad(line, start, widths[i]);
+            }
+            this.header = line.toString();
+        }
+
+        public int columnCount() {
+            return widths.length;
+        }
+    }
+
+    private final Layout layout;
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 512);
+    private int column = 0;
+
+    public TableRenderer(Layout layout) {
+        this(layout, System.out);
+    }
+
+    public TableRenderer(Layout layout, PrintStream out) {
+        this.layout = layout;
+        this.out = out;
+    }
+
+    // Rule, headings, rule.
+    public TableRenderer header() {
+        buffer.append(layout.rule).append('\n').append(layout.header).append('\n').append(layout.rule).append('\n');
+        return this;
+    }
+
+    public TableRenderer rule() {
+        return line(layout.rule);
+    }
+
+    // A free-form line, e.g. "No vehicles found."
+    public TableRenderer line(String text) {
+        buffer.append(text).append('\n');
+        return this;
+    }
+
+    public TableRenderer cell(String value) {
+        int start = beginCell();
+        buffer.append(value);
+        return endCell(start);
+    }
+
+    public TableRenderer cell(long value) {
+        int start = beginCell();
+        buffer.append(value);
+        return endCell(start);
+    }
+
+    public TableRenderer cell(Object value) {
+        int start = beginCell();
+        buffer.append(value);
+        return endCell(start);
+    }
+
+    /**
+     * Writes a fixed-point value stored in hundredths (paise, centi-hours) with two decimals,
+     * the same text "%.2f" gives for the decimal value.
+     */
+    public TableRenderer cellHundredths(long value) {
+        int start = beginCell();
+        long abs = Math.abs(value);
+        long fraction = abs % 100;
+        if (value < 0) {
+            buffer.append('-');
+        }
+        buffer.append(abs / 100).append(fraction < 10 ? ".0" : ".").append(fraction);
+        return endCell(start);
+    }
+
+    public void endRow() {
+        buffer.append('\n');
+        column = 0;
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes whatever is buffered. Call it when the table is done, before printing anything else.
+     */
+    public void flush() {
+        if (buffer.length() > 0) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+    }
+
+    private int beginCell() {
+        if (column > 0) {
+            buffer.append(SEPARATOR);
+        }
+        return buffer.length();
+    }
+
+    private TableRenderer endCell(int start) {
+        pad(buffer, start, layout.widths[column]);
+        column++;
+        return this;
+    }
+
+    // Pads the text appended since 'start' with spaces up to 'width'.
+    private static void pad(StringBuilder line, int start, int width) {
+        for (int i = line.length() - start; i < width; i++) {
+            line.append(' ');
+        }
+    }
+}